@@ -0,0 +1,33 @@
+/**
+ * Copyright 2014-2017 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable;
+
+import java.util.List;
+
+public interface BatchContainerContext extends ContainerContext {
+
+	/* the key of the batch which the confirm(positive)/cancel of the invocation can join, or null if not batchable. */
+	public String getBatchKey(CompensableInvocation compensable, boolean positive);
+
+	public int getBatchSize(String batchKey);
+
+	/* confirms the invocations, which have the same batch key, in one local transaction; false if no batch target. */
+	public boolean confirm(List<CompensableInvocation> compensables) throws RuntimeException;
+
+	/* cancels the invocations, which have the same batch key, in one local transaction; false if no batch target. */
+	public boolean cancel(List<CompensableInvocation> compensables) throws RuntimeException;
+
+}
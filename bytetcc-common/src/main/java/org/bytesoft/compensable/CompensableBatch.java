@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014-2017 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opt-in batch contract: marks a method of a confirm/cancel bean (or of a simplified compensable service) which
+ * confirms/cancels several branches in one local transaction. The annotated method takes a single java.util.List
+ * parameter, each element of which is the Object[] arguments of one invocation of the method named by value(). It must
+ * either complete all the branches or throw; when it throws, the branches are confirmed/cancelled one by one.
+ * <p>
+ * Limits: only the branches of the same global transaction are batched, so it pays off for transactions with many
+ * branches of the same service, not for many transactions of one branch each. And the batches are completed before the
+ * other branches of the transaction, so the branches are no longer confirmed/cancelled strictly in reverse try order.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD })
+public @interface CompensableBatch {
+
+	/* the name of the confirm/cancel method whose invocations are batched by the annotated method. */
+	public String value();
+
+	/* the max number of the branches confirmed/cancelled in one batch. */
+	public int maxSize() default 100;
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2014-2017 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Entry of the compensable service index generated at compile time by the bytetcc-processor module. Each entry of the
+ * index resource is a property: class name = interfaceClass,simplified,confirmableKey,cancellableKey. The classes
+ * listed have been validated by the processor.
+ */
+public final class CompensableIndex {
+	public static final String RESOURCE_LOCATION = "META-INF/bytetcc/compensable.index";
+
+	private final String className;
+	private final String interfaceClass;
+	private final boolean simplified;
+	private final String confirmableKey;
+	private final String cancellableKey;
+
+	public CompensableIndex(String className, String interfaceClass, boolean simplified, String confirmableKey,
+			String cancellableKey) {
+		this.className = className;
+		this.interfaceClass = interfaceClass;
+		this.simplified = simplified;
+		this.confirmableKey = confirmableKey == null ? "" : confirmableKey;
+		this.cancellableKey = cancellableKey == null ? "" : cancellableKey;
+	}
+
+	public String format() {
+		return String.format("%s,%s,%s,%s", this.interfaceClass, this.simplified, this.confirmableKey,
+				this.cancellableKey);
+	}
+
+	public static CompensableIndex parse(String className, String value) throws IllegalStateException {
+		String[] values = value.split(",", -1);
+		if (values.length < 4) {
+			throw new IllegalStateException(String.format("Invalid compensable index: %s=%s", className, value));
+		}
+		return new CompensableIndex(className, values[0], Boolean.valueOf(values[1]), values[2], values[3]);
+	}
+
+	/* the index entries of all the resources visible to the class loader, keyed by class name. */
+	public static Map<String, CompensableIndex> load(ClassLoader classLoader) throws IllegalStateException {
+		Map<String, CompensableIndex> indexMap = new HashMap<String, CompensableIndex>();
+		try {
+			Enumeration<URL> resources = classLoader.getResources(RESOURCE_LOCATION);
+			while (resources.hasMoreElements()) {
+				URL resource = resources.nextElement();
+				Properties properties = new Properties();
+				InputStream input = resource.openStream();
+				try {
+					properties.load(input);
+				} finally {
+					input.close();
+				}
+
+				for (Iterator<String> itr = properties.stringPropertyNames().iterator(); itr.hasNext();) {
+					String className = itr.next();
+					indexMap.put(className, parse(className, properties.getProperty(className)));
+				}
+			}
+		} catch (IOException ex) {
+			throw new IllegalStateException(String.format("Error occurred while loading %s.", RESOURCE_LOCATION), ex);
+		}
+		return indexMap;
+	}
+
+	/* the class path roots (jar or directory) which carry an index, that is, which were compiled with the processor. */
+	public static Set<String> getIndexedRoots(ClassLoader classLoader) throws IllegalStateException {
+		Set<String> roots = new HashSet<String>();
+		try {
+			Enumeration<URL> resources = classLoader.getResources(RESOURCE_LOCATION);
+			while (resources.hasMoreElements()) {
+				String location = resources.nextElement().toExternalForm();
+				roots.add(location.substring(0, location.length() - RESOURCE_LOCATION.length()));
+			}
+		} catch (IOException ex) {
+			throw new IllegalStateException(String.format("Error occurred while loading %s.", RESOURCE_LOCATION), ex);
+		}
+		return roots;
+	}
+
+	/* whether the class file is located in one of the specified roots, it is looked up without loading the class. */
+	public static boolean isIndexedClass(ClassLoader classLoader, String className, Set<String> roots) {
+		if (roots.isEmpty()) {
+			return false;
+		}
+
+		String classFile = className.replace('.', '/') + ".class";
+		URL resource = classLoader.getResource(classFile);
+		String location = resource == null ? null : resource.toExternalForm();
+		return location != null && location.endsWith(classFile)
+				&& roots.contains(location.substring(0, location.length() - classFile.length()));
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public String getInterfaceClass() {
+		return interfaceClass;
+	}
+
+	public boolean isSimplified() {
+		return simplified;
+	}
+
+	public String getConfirmableKey() {
+		return confirmableKey;
+	}
+
+	public String getCancellableKey() {
+		return cancellableKey;
+	}
+
+}
@@ -40,6 +40,7 @@ import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionContext;
 import org.bytesoft.transaction.TransactionException;
 import org.bytesoft.transaction.TransactionLock;
+import org.bytesoft.transaction.TransactionRecovery;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
@@ -154,7 +155,7 @@ public class CompensableCoordinator implements RemoteCoordinator, CompensableBea
 	}
 
 	public void commit(Xid xid, boolean onePhase) throws XAException {
-		this.checkParticipantReadyIfNecessary();
+		this.checkParticipantReadyIfNecessary(xid);
 
 		if (xid == null) {
 			throw new XAException(XAException.XAER_INVAL);
@@ -265,7 +266,7 @@ public class CompensableCoordinator implements RemoteCoordinator, CompensableBea
 	}
 
 	public void forget(Xid xid) throws XAException {
-		this.checkParticipantReadyIfNecessary();
+		this.checkParticipantReadyIfNecessary(xid);
 
 		if (xid == null) {
 			throw new XAException(XAException.XAER_INVAL);
@@ -345,7 +346,7 @@ public class CompensableCoordinator implements RemoteCoordinator, CompensableBea
 	}
 
 	public void rollback(Xid xid) throws XAException {
-		this.checkParticipantReadyIfNecessary();
+		this.checkParticipantReadyIfNecessary(xid);
 
 		if (xid == null) {
 			throw new XAException(XAException.XAER_INVAL);
@@ -437,6 +438,27 @@ public class CompensableCoordinator implements RemoteCoordinator, CompensableBea
 		}
 	}
 
+	/**
+	 * While the startup recovery is running in background, a request is served as soon as the transaction it touches has
+	 * been recovered (or found not to need recovery), instead of waiting for the whole recovery.
+	 */
+	private void checkParticipantReadyIfNecessary(Xid xid) throws XAException {
+		if (this.ready) {
+			return;
+		}
+
+		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		if (xid != null && TransactionRecoveryImpl.class.isInstance(compensableRecovery)) {
+			XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+			TransactionXid globalXid = xidFactory.createGlobalXid(xid.getGlobalTransactionId());
+			if (((TransactionRecoveryImpl) compensableRecovery).loadTransactionIfNecessary(globalXid)) {
+				return;
+			} // end-if (loadTransactionIfNecessary(globalXid))
+		}
+
+		this.checkParticipantReady();
+	}
+
 	private void checkParticipantReady() throws XAException {
 		try {
 			this.lock.lock();
@@ -18,13 +18,22 @@ package org.bytesoft.bytetcc;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -43,6 +52,8 @@ import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AdmissionController;
+import org.bytesoft.compensable.BatchContainerContext;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableInvocation;
 import org.bytesoft.compensable.CompensableTransaction;
@@ -51,6 +62,7 @@ import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.CommitRequiredException;
 import org.bytesoft.transaction.RollbackRequiredException;
 import org.bytesoft.transaction.Transaction;
@@ -74,6 +86,10 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		implements CompensableTransaction, CompensableRolledbackMarker {
 	static final Logger logger = LoggerFactory.getLogger(CompensableTransactionImpl.class);
 
+	static final int REMOTE_OPERATION_COMMIT = 1;
+	static final int REMOTE_OPERATION_ROLLBACK = 2;
+	static final int REMOTE_OPERATION_FORGET = 3;
+
 	private final TransactionContext transactionContext;
 	private final List<CompensableArchive> archiveList = new ArrayList<CompensableArchive>();
 	private final Map<RemoteSvc, XAResourceArchive> resourceMap = new HashMap<RemoteSvc, XAResourceArchive>();
@@ -87,6 +103,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	private transient Boolean positive;
 	/* current compensable-archive in confirm/cancel phase. */
 	private transient CompensableArchive archive;
+	/* the archives completed by the current batch local transaction, the first one is this.archive. */
+	private transient List<CompensableArchive> batchArchives;
 
 	private transient final Map<Xid, List<CompensableArchive>> xidToArchivesMap = new HashMap<Xid, List<CompensableArchive>>();
 	private transient final Map<Xid, TransactionBranch> xidToBranchMap = new HashMap<Xid, TransactionBranch>();
@@ -243,12 +261,28 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean errorExists = false;
 
 		ContainerContext container = this.beanFactory.getContainerContext();
+		Set<Xid> usedXids = new HashSet<Xid>();
+		List<List<CompensableArchive>> batchList = this.getNativeParticipantBatches(container, true);
+		Set<CompensableArchive> pendingSet = Collections.newSetFromMap(new IdentityHashMap<CompensableArchive, Boolean>());
+		for (int i = 0; i < batchList.size(); i++) {
+			// the branches of a failed batch, which has not been committed, are confirmed one by one below
+			List<CompensableArchive> batch = batchList.get(i);
+			if (this.fireNativeParticipantBatch(container, batch, true, usedXids) == false) {
+				pendingSet.addAll(batch);
+			}
+		}
+
 		for (int i = this.archiveList.size() - 1; i >= 0; i--) {
 			CompensableArchive current = this.archiveList.get(i);
 			if (current.isConfirmed()) {
 				continue;
+			} else if (pendingSet.contains(current)) {
+				errorExists = true; // the status of its batch is unknown, leave it to recovery
+				continue;
 			}
 
+			this.renewCompensableXidIfNecessary(current, usedXids);
+
 			try {
 				this.positive = true;
 				this.archive = current;
@@ -284,6 +318,182 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 	}
 
+	/**
+	 * Groups the native branches, which are to be confirmed(positive)/cancelled by a batch-capable method of the same
+	 * bean, into batches of at least two branches each.
+	 */
+	private List<List<CompensableArchive>> getNativeParticipantBatches(ContainerContext container, boolean positive) {
+		List<List<CompensableArchive>> batchList = new ArrayList<List<CompensableArchive>>();
+		if (BatchContainerContext.class.isInstance(container) == false) {
+			return batchList;
+		}
+
+		BatchContainerContext batchContainer = (BatchContainerContext) container;
+		Map<String, List<CompensableArchive>> groupMap = new LinkedHashMap<String, List<CompensableArchive>>();
+		for (int i = this.archiveList.size() - 1; i >= 0; i--) {
+			CompensableArchive current = this.archiveList.get(i);
+			CompensableInvocation invocation = current.getCompensable();
+			if (positive && current.isConfirmed()) {
+				continue;
+			} else if (positive == false && (current.isTried() == false || current.isCancelled())) {
+				continue;
+			} else if (invocation == null) {
+				continue;
+			} else if (StringUtils.isBlank(positive ? invocation.getConfirmableKey() : invocation.getCancellableKey())) {
+				continue;
+			}
+
+			String batchKey = null;
+			try {
+				batchKey = batchContainer.getBatchKey(invocation, positive);
+			} catch (RuntimeException rex) {
+				logger.warn("{}| error occurred while resolving batch of service: {}",
+						ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), current, rex);
+			}
+
+			if (batchKey != null) {
+				List<CompensableArchive> group = groupMap.get(batchKey);
+				if (group == null) {
+					group = new ArrayList<CompensableArchive>();
+					groupMap.put(batchKey, group);
+				}
+				group.add(current);
+			}
+		}
+
+		for (Iterator<Map.Entry<String, List<CompensableArchive>>> itr = groupMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, List<CompensableArchive>> entry = itr.next();
+			List<CompensableArchive> group = entry.getValue();
+			int batchSize = Math.max(1, batchContainer.getBatchSize(entry.getKey()));
+			for (int i = 0; i < group.size(); i += batchSize) {
+				List<CompensableArchive> batch = group.subList(i, Math.min(group.size(), i + batchSize));
+				if (batch.size() > 1) {
+					batchList.add(new ArrayList<CompensableArchive>(batch));
+				} // end-if (batch.size() > 1)
+			}
+		}
+
+		return batchList;
+	}
+
+	/**
+	 * Completes the branches of the batch in one local transaction. All the branches of a batch share the compensable xid
+	 * of the first one, which is logged before the batch runs, so that recovery finds them completed or not together.
+	 *
+	 * @return false if the batch failed and it is unknown whether its local transaction has been committed.
+	 */
+	private boolean fireNativeParticipantBatch(ContainerContext container, List<CompensableArchive> batch, boolean positive,
+			Set<Xid> usedXids) {
+		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+		BatchContainerContext batchContainer = (BatchContainerContext) container;
+
+		CompensableArchive first = batch.get(0);
+		this.renewCompensableXidIfNecessary(first, usedXids);
+
+		List<CompensableInvocation> invocations = new ArrayList<CompensableInvocation>();
+		for (int i = 0; i < batch.size(); i++) {
+			CompensableArchive current = batch.get(i);
+			if (CommonUtils.equals(first.getCompensableXid(), current.getCompensableXid()) == false) {
+				current.setCompensableXid(first.getCompensableXid());
+				compensableLogger.updateCompensable(current);
+			}
+			invocations.add(current.getCompensable());
+		}
+
+		try {
+			this.positive = positive;
+			this.archive = first;
+			this.batchArchives = batch;
+			boolean batched = positive ? batchContainer.confirm(invocations) : batchContainer.cancel(invocations);
+			if (batched == false) {
+				logger.info("{}| the batch target is no longer available, completing the services one by one: {}",
+						ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), batch);
+			} // end-if (batched == false)
+			return true;
+		} catch (RuntimeException rex) {
+			logger.warn("{}| error occurred while {} services in batch: {}",
+					ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()),
+					positive ? "confirming" : "cancelling", batch, rex);
+		} finally {
+			this.batchArchives = null;
+			this.archive = null;
+			this.positive = null;
+		}
+
+		return this.recoverNativeParticipantBatch(batch, positive);
+	}
+
+	/**
+	 * The local transaction of a failed batch may have been committed (e.g. the exception is thrown after the commit), so
+	 * the shared compensable xid is probed before the branches are completed one by one.
+	 *
+	 * @return false if the status of the local transaction is unknown.
+	 */
+	private boolean recoverNativeParticipantBatch(List<CompensableArchive> batch, boolean positive) {
+		XAResourceDeserializer resourceDeserializer = this.beanFactory.getResourceDeserializer();
+		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+
+		CompensableArchive first = batch.get(0);
+		String identifier = first.getCompensableResourceKey();
+		if (StringUtils.isBlank(identifier)) {
+			return true; // no resource has been enlisted, so nothing has been committed
+		}
+
+		try {
+			XAResourceDescriptor descriptor = resourceDeserializer.deserialize(identifier);
+			RecoveredResource resource = (RecoveredResource) descriptor.getDelegate();
+			resource.recoverable(first.getCompensableXid());
+		} catch (XAException xaex) {
+			if (xaex.errorCode == XAException.XAER_NOTA) {
+				logger.info("{}| the batch is not committed, completing the services one by one: {}",
+						ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), batch);
+				return true;
+			}
+
+			logger.error("{}| the status of the batch is unknown, leave it to recovery: {}",
+					ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), batch, xaex);
+			return false;
+		} catch (RuntimeException rex) {
+			logger.error("{}| the status of the batch is unknown, leave it to recovery: {}",
+					ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), batch, rex);
+			return false;
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			CompensableArchive current = batch.get(i);
+			if (positive) {
+				current.setConfirmed(true);
+			} else {
+				current.setCancelled(true);
+			}
+			compensableLogger.updateCompensable(current);
+		}
+
+		logger.info("{}| the batch has been committed: {}",
+				ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), batch);
+		return true;
+	}
+
+	/**
+	 * Each local transaction of the current round must have its own xid. A compensable xid shared by a former batch,
+	 * whose branches are no longer completed together, is replaced before use; it has not been committed, otherwise
+	 * recovery would have marked the branches completed.
+	 */
+	private void renewCompensableXidIfNecessary(CompensableArchive archive, Set<Xid> usedXids) {
+		Xid compensableXid = archive.getCompensableXid();
+		if (compensableXid == null || usedXids.add(compensableXid)) {
+			return;
+		}
+
+		XidFactory transactionXidFactory = this.beanFactory.getTransactionXidFactory();
+		TransactionXid globalXid = transactionXidFactory.createGlobalXid();
+		TransactionXid branchXid = transactionXidFactory.createBranchXid(globalXid, compensableXid.getBranchQualifier());
+		archive.setCompensableXid(branchXid);
+		usedXids.add(branchXid);
+
+		this.beanFactory.getCompensableLogger().updateCompensable(archive);
+	}
+
 	private void fireRemoteParticipantConfirm()
 			throws HeuristicMixedException, HeuristicRollbackException, CommitRequiredException, SystemException {
 		boolean committedExists = false;
@@ -291,6 +501,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean unFinishExists = false;
 		boolean errorExists = false;
 
+		Map<XAResourceArchive, CompletableFuture<Void>> futures = this.fireRemoteResourcesAsync(REMOTE_OPERATION_COMMIT);
+
 		for (int i = 0; i < this.resourceList.size(); i++) {
 			XAResourceArchive current = this.resourceList.get(i);
 			if (current.isCommitted()) {
@@ -308,7 +520,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			TransactionXid branchXid = (TransactionXid) current.getXid();
 			TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
 			try {
-				current.commit(globalXid, true);
+				this.invokeRemoteResource(current, globalXid, REMOTE_OPERATION_COMMIT, futures.get(current));
 				committedExists = true;
 
 				current.setCommitted(true);
@@ -540,6 +752,17 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean errorExists = false;
 
 		ContainerContext container = this.beanFactory.getContainerContext();
+		Set<Xid> usedXids = new HashSet<Xid>();
+		List<List<CompensableArchive>> batchList = this.getNativeParticipantBatches(container, false);
+		Set<CompensableArchive> pendingSet = Collections.newSetFromMap(new IdentityHashMap<CompensableArchive, Boolean>());
+		for (int i = 0; i < batchList.size(); i++) {
+			// the branches of a failed batch, which has not been committed, are cancelled one by one below
+			List<CompensableArchive> batch = batchList.get(i);
+			if (this.fireNativeParticipantBatch(container, batch, false, usedXids) == false) {
+				pendingSet.addAll(batch);
+			}
+		}
+
 		for (int i = this.archiveList.size() - 1; i >= 0; i--) {
 			CompensableArchive current = this.archiveList.get(i);
 			if (current.isTried() == false) {
@@ -550,8 +773,13 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 				continue;
 			} else if (current.isCancelled()) {
 				continue;
+			} else if (pendingSet.contains(current)) {
+				errorExists = true; // the status of its batch is unknown, leave it to recovery
+				continue;
 			}
 
+			this.renewCompensableXidIfNecessary(current, usedXids);
+
 			try {
 				this.positive = false;
 				this.archive = current;
@@ -593,6 +821,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean unFinishExists = false;
 		boolean errorExists = false;
 
+		Map<XAResourceArchive, CompletableFuture<Void>> futures = this.fireRemoteResourcesAsync(REMOTE_OPERATION_ROLLBACK);
+
 		for (int i = 0; i < this.resourceList.size(); i++) {
 			XAResourceArchive current = this.resourceList.get(i);
 			if (current.isCommitted()) {
@@ -610,7 +840,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			TransactionXid branchXid = (TransactionXid) current.getXid();
 			TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
 			try {
-				current.rollback(globalXid);
+				this.invokeRemoteResource(current, globalXid, REMOTE_OPERATION_ROLLBACK, futures.get(current));
 				rolledbackExists = true;
 
 				current.setRolledback(true);
@@ -690,6 +920,158 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 	}
 
+	/**
+	 * Sends commit/rollback/forget at once to all the remote branches which are able to complete asynchronously, when
+	 * there are at least two of them to be completed; the outcomes are then collected in order by invokeRemoteResource.
+	 * A single branch is completed synchronously, which lets its requests be coalesced with those of other transactions.
+	 */
+	private Map<XAResourceArchive, CompletableFuture<Void>> fireRemoteResourcesAsync(int operation) {
+		Map<XAResourceArchive, CompletableFuture<Void>> futures = //
+				new IdentityHashMap<XAResourceArchive, CompletableFuture<Void>>();
+
+		List<XAResourceArchive> archives = new ArrayList<XAResourceArchive>();
+		for (int i = 0; i < this.resourceList.size(); i++) {
+			XAResourceArchive current = this.resourceList.get(i);
+			if (operation == REMOTE_OPERATION_FORGET ? current.isCompleted()
+					: (current.isCommitted() || current.isRolledback() || current.isReadonly())) {
+				continue;
+			}
+
+			XAResourceDescriptor descriptor = current.getDescriptor();
+			if (RemoteResourceDescriptor.class.isInstance(descriptor) && AsyncRemoteCoordinator.class
+					.isInstance(((RemoteResourceDescriptor) descriptor).getDelegate())) {
+				archives.add(current);
+			}
+		}
+
+		if (archives.size() < 2) {
+			return futures;
+		}
+
+		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+		for (int i = 0; i < archives.size(); i++) {
+			XAResourceArchive current = archives.get(i);
+			TransactionXid globalXid = xidFactory.createGlobalXid(current.getXid().getGlobalTransactionId());
+			futures.put(current, this.fireRemoteResourceAsync(current, globalXid, operation));
+		}
+		return futures;
+	}
+
+	private CompletableFuture<Void> fireRemoteResourceAsync(XAResourceArchive archive, Xid xid, int operation) {
+		RemoteResourceDescriptor descriptor = (RemoteResourceDescriptor) archive.getDescriptor();
+		AsyncRemoteCoordinator coordinator = (AsyncRemoteCoordinator) descriptor.getDelegate();
+
+		AdmissionController admissionController = this.beanFactory.getRemoteAdmissionController();
+		final String application = admissionController == null ? null
+				: CommonUtils.getApplication(descriptor.getIdentifier());
+		if (StringUtils.isNotBlank(application)) {
+			try {
+				admissionController.acquire(application);
+			} catch (XAException xaex) {
+				CompletableFuture<Void> future = new CompletableFuture<Void>();
+				future.completeExceptionally(xaex);
+				return future;
+			}
+		}
+
+		CompletableFuture<Void> future = null;
+		try {
+			switch (operation) {
+			case REMOTE_OPERATION_COMMIT:
+				future = coordinator.commitAsync(xid, true);
+				break;
+			case REMOTE_OPERATION_ROLLBACK:
+				future = coordinator.rollbackAsync(xid);
+				break;
+			default:
+				future = coordinator.forgetAsync(xid);
+			}
+		} catch (RuntimeException rex) {
+			future = new CompletableFuture<Void>();
+			future.completeExceptionally(rex);
+		}
+
+		if (StringUtils.isBlank(application)) {
+			return future;
+		}
+
+		final AdmissionController controller = admissionController;
+		return future.whenComplete(new BiConsumer<Void, Throwable>() {
+			public void accept(Void value, Throwable error) {
+				Throwable cause = CompletionException.class.isInstance(error) ? error.getCause() : error;
+				boolean unavailable = XAException.class.isInstance(cause)
+						&& ((XAException) cause).errorCode == XAException.XAER_RMFAIL;
+				controller.release(application, unavailable);
+			}
+		});
+	}
+
+	private void invokeRemoteResource(XAResourceArchive archive, Xid xid, int operation,
+			CompletableFuture<Void> future) throws XAException {
+		if (future == null) {
+			this.invokeRemoteResource(archive, xid, operation);
+			return;
+		}
+
+		try {
+			future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			XAException xaex = new XAException(XAException.XAER_RMFAIL); // outcome unknown, left to the recovery
+			xaex.initCause(ex);
+			throw xaex;
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (XAException.class.isInstance(cause)) {
+				throw (XAException) cause;
+			} else if (RuntimeException.class.isInstance(cause)) {
+				throw (RuntimeException) cause;
+			}
+
+			XAException xaex = new XAException(XAException.XAER_RMERR);
+			xaex.initCause(cause);
+			throw xaex;
+		}
+	}
+
+	/**
+	 * Sends commit/rollback/forget to a remote branch through the admission control of its application, if any.
+	 */
+	private void invokeRemoteResource(XAResourceArchive archive, Xid xid, int operation) throws XAException {
+		AdmissionController admissionController = this.beanFactory.getRemoteAdmissionController();
+		XAResourceDescriptor descriptor = archive.getDescriptor();
+		String application = RemoteResourceDescriptor.class.isInstance(descriptor)
+				? CommonUtils.getApplication(descriptor.getIdentifier()) : null;
+		if (admissionController == null || StringUtils.isBlank(application)) {
+			this.fireRemoteResource(archive, xid, operation);
+			return;
+		}
+
+		admissionController.acquire(application);
+		boolean unavailable = false;
+		try {
+			this.fireRemoteResource(archive, xid, operation);
+		} catch (XAException xaex) {
+			unavailable = xaex.errorCode == XAException.XAER_RMFAIL;
+			throw xaex;
+		} finally {
+			admissionController.release(application, unavailable);
+		}
+	}
+
+	private void fireRemoteResource(XAResourceArchive archive, Xid xid, int operation) throws XAException {
+		switch (operation) {
+		case REMOTE_OPERATION_COMMIT:
+			archive.commit(xid, true);
+			break;
+		case REMOTE_OPERATION_ROLLBACK:
+			archive.rollback(xid);
+			break;
+		default:
+			archive.forget(xid);
+		}
+	}
+
 	public boolean enlistResource(XAResource xaRes) throws RollbackException, IllegalStateException, SystemException {
 		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
 			throw new RollbackException();
@@ -909,9 +1291,17 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		} // end-if (CommonUtils.equals(expectXid, actualXid) == false)
 
 		String resourceKey = descriptor == null ? null : descriptor.getIdentifier();
-		// this.archive.setCompensableXid(xid); // preset the compensable-xid.
-		this.archive.setCompensableResourceKey(resourceKey);
-		this.beanFactory.getCompensableLogger().updateCompensable(this.archive);
+		List<CompensableArchive> completingList = this.getCompletingArchives();
+		for (int i = 0; i < completingList.size(); i++) {
+			CompensableArchive current = completingList.get(i);
+			// current.setCompensableXid(xid); // preset the compensable-xid.
+			current.setCompensableResourceKey(resourceKey);
+			this.beanFactory.getCompensableLogger().updateCompensable(current);
+		}
+	}
+
+	private List<CompensableArchive> getCompletingArchives() {
+		return this.batchArchives == null ? Collections.singletonList(this.archive) : this.batchArchives;
 	}
 
 	public void onDelistResource(Xid transactionXid, XAResource xares) {
@@ -982,28 +1372,32 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			throw new IllegalStateException("Illegal state: maybe the try phase operation has timed out.!");
 		} // end-if (CommonUtils.equals(expectXid, actualXid) == false)
 
-		if (this.positive == null) {
-			this.beanFactory.getCompensableLogger().updateCompensable(this.archive);
-			return;
-		}
+		List<CompensableArchive> completingList = this.getCompletingArchives();
+		for (int i = 0; i < completingList.size(); i++) {
+			CompensableArchive current = completingList.get(i);
+			if (this.positive == null) {
+				this.beanFactory.getCompensableLogger().updateCompensable(current);
+				continue;
+			}
 
-		if (this.positive) {
-			logger.info("{}| confirm: identifier= {}, resourceKey= {}, resourceXid= {}.",
-					ByteUtils.byteArrayToString(transactionContext.getXid().getGlobalTransactionId()),
-					ByteUtils.byteArrayToString(this.archive.getIdentifier().getGlobalTransactionId()),
-					this.archive.getCompensableResourceKey(), this.archive.getCompensableXid());
+			if (this.positive) {
+				logger.info("{}| confirm: identifier= {}, resourceKey= {}, resourceXid= {}.",
+						ByteUtils.byteArrayToString(transactionContext.getXid().getGlobalTransactionId()),
+						ByteUtils.byteArrayToString(current.getIdentifier().getGlobalTransactionId()),
+						current.getCompensableResourceKey(), current.getCompensableXid());
 
-			this.archive.setConfirmed(true);
-		} else {
-			logger.info("{}| cancel: identifier= {}, resourceKey= {}, resourceXid= {}.",
-					ByteUtils.byteArrayToString(transactionContext.getXid().getGlobalTransactionId()),
-					ByteUtils.byteArrayToString(this.archive.getIdentifier().getGlobalTransactionId()),
-					this.archive.getCompensableResourceKey(), this.archive.getCompensableXid());
+				current.setConfirmed(true);
+			} else {
+				logger.info("{}| cancel: identifier= {}, resourceKey= {}, resourceXid= {}.",
+						ByteUtils.byteArrayToString(transactionContext.getXid().getGlobalTransactionId()),
+						ByteUtils.byteArrayToString(current.getIdentifier().getGlobalTransactionId()),
+						current.getCompensableResourceKey(), current.getCompensableXid());
 
-			this.archive.setCancelled(true);
-		}
+				current.setCancelled(true);
+			}
 
-		this.beanFactory.getCompensableLogger().updateCompensable(this.archive);
+			this.beanFactory.getCompensableLogger().updateCompensable(current);
+		}
 	}
 
 	public void recoverIfNecessary() throws SystemException {
@@ -1177,6 +1571,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			}
 		}
 
+		Map<XAResourceArchive, CompletableFuture<Void>> futures = this.fireRemoteResourcesAsync(REMOTE_OPERATION_FORGET);
 		for (int i = 0; i < this.resourceList.size(); i++) {
 			XAResourceArchive current = this.resourceList.get(i);
 
@@ -1188,7 +1583,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			TransactionXid branchXid = (TransactionXid) current.getXid();
 			TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
 			try {
-				current.forget(globalXid);
+				this.invokeRemoteResource(current, globalXid, REMOTE_OPERATION_FORGET, futures.get(current));
 			} catch (XAException ex) {
 				switch (ex.errorCode) {
 				case XAException.XAER_NOTA:
@@ -18,6 +18,7 @@ package org.bytesoft.bytetcc;
 import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
 import org.bytesoft.bytetcc.supports.CompensableSynchronization;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
+import org.bytesoft.compensable.AdmissionController;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableContext;
 import org.bytesoft.compensable.CompensableManager;
@@ -57,6 +58,7 @@ public final class TransactionBeanFactoryImpl implements CompensableBeanFactory
 	private CompensableSynchronization compensableSynchronization;
 	private TransactionLock compensableLock;
 	private CompensableRolledbackMarker compensableRolledbackMarker;
+	private AdmissionController remoteAdmissionController;
 
 	private TransactionBeanFactoryImpl() {
 		if (instance != null) {
@@ -228,4 +230,12 @@ public final class TransactionBeanFactoryImpl implements CompensableBeanFactory
 		this.compensableRolledbackMarker = compensableRolledbackMarker;
 	}
 
+	public AdmissionController getRemoteAdmissionController() {
+		return remoteAdmissionController;
+	}
+
+	public void setRemoteAdmissionController(AdmissionController remoteAdmissionController) {
+		this.remoteAdmissionController = remoteAdmissionController;
+	}
+
 }
@@ -15,9 +15,21 @@
  */
 package org.bytesoft.bytetcc;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.Status;
 import javax.transaction.SystemException;
@@ -28,6 +40,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
+import org.bytesoft.bytetcc.supports.resource.LocalResourceProber;
+import org.bytesoft.bytetcc.supports.resource.LocalXADataSourceProber;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
@@ -37,6 +51,7 @@ import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
 import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.compensable.logging.IndexedCompensableLogger;
 import org.bytesoft.transaction.CommitRequiredException;
 import org.bytesoft.transaction.RollbackRequiredException;
 import org.bytesoft.transaction.Transaction;
@@ -69,6 +84,22 @@ public class TransactionRecoveryImpl
 
 	protected final Map<TransactionXid, Transaction> recovered = new HashMap<TransactionXid, Transaction>();
 
+	private TransactionRecoverySchedule recoverySchedule = new TransactionRecoverySchedule();
+	private int recoveryThreads = 4;
+	private int probeBatchSize = 200;
+	private LocalResourceProber resourceProber = new LocalXADataSourceProber();
+	private int recoveryChunkSize = 1000;
+	private boolean recoveryInBackground;
+	private volatile boolean recoveryIndexed;
+	private final Map<TransactionXid, Object> unrecovered = new ConcurrentHashMap<TransactionXid, Object>();
+	private ExecutorService recoveryExecutor;
+
+	private volatile int lastRecoveryTotal;
+	private volatile int lastRecoverySuccess;
+	private volatile int lastRecoveryFailure;
+	private volatile int lastRecoverySkipped;
+	private volatile long lastRecoveryMillis;
+
 	public void onRecovery(Transaction transaction) {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
 		TransactionXid xid = transactionContext.getXid();
@@ -81,7 +112,13 @@ public class TransactionRecoveryImpl
 
 	public void startRecovery() {
 		this.fireTransactionStartRecovery();
-		this.fireCompensableStartRecovery();
+
+		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+		if (this.recoveryInBackground && IndexedCompensableLogger.class.isInstance(compensableLogger)) {
+			this.fireCompensableStartRecoveryInBackground((IndexedCompensableLogger) compensableLogger);
+		} else {
+			this.fireCompensableStartRecovery();
+		}
 	}
 
 	protected void fireTransactionStartRecovery() {
@@ -89,44 +126,171 @@ public class TransactionRecoveryImpl
 		transactionRecovery.startRecovery();
 	}
 
+	/**
+	 * Lists the transactions to be recovered and replays their archives in a separate thread. Until it completes, only
+	 * the participant requests which touch one of the listed transactions have to wait for it, see
+	 * {@link #loadTransactionIfNecessary(TransactionXid)}.
+	 */
+	protected void fireCompensableStartRecoveryInBackground(IndexedCompensableLogger compensableLogger) {
+		Set<TransactionXid> xids = compensableLogger.getRecoverableXids();
+		for (Iterator<TransactionXid> itr = xids.iterator(); itr.hasNext();) {
+			this.unrecovered.put(itr.next(), new Object());
+		}
+		this.recoveryIndexed = true;
+
+		logger.info("compensable-recovery: {} transactions will be recovered in background.", xids.size());
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					fireCompensableStartRecovery();
+				} catch (RuntimeException rex) {
+					logger.error("Error occurred while recovering transactions in background.", rex);
+				}
+			}
+		}, "bytetcc-startup-recovery");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
 	protected void fireCompensableStartRecovery() {
-		final TransactionRepository transactionRepository = this.beanFactory.getCompensableRepository();
 		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
 
+		final List<CompensableTransactionImpl> compensableList = new ArrayList<CompensableTransactionImpl>();
 		compensableLogger.recover(new TransactionRecoveryCallback() {
 			public void recover(TransactionArchive archive) {
 				this.recover((org.bytesoft.compensable.archive.TransactionArchive) archive);
 			}
 
 			public void recover(org.bytesoft.compensable.archive.TransactionArchive archive) {
-				XidFactory transactionXidFactory = beanFactory.getTransactionXidFactory();
-
-				CompensableTransactionImpl transaction = reconstruct(archive);
+				CompensableTransactionImpl transaction = reconstructRecoveredTransaction(archive);
 				TransactionContext transactionContext = transaction.getTransactionContext();
 
-				TransactionXid compensableXid = transactionContext.getXid();
 				if (transactionContext.isCompensable() == false) {
-					TransactionXid transactionXid = transactionXidFactory
-							.createGlobalXid(compensableXid.getGlobalTransactionId());
-					Transaction tx = recovered.get(transactionXid);
-					if (tx != null) {
-						tx.setTransactionalExtra(transaction);
-						transaction.setTransactionalExtra(tx); // TODO different thread
-					}
+					putRecoveredTransaction(transaction, null);
 				} else {
-					recoverStatusIfNecessary(transaction);
-				} // end-if (transactionContext.isCoordinator())
+					compensableList.add(transaction);
+				} // end-if (transactionContext.isCompensable() == false)
 
-				transactionRepository.putTransaction(compensableXid, transaction);
-				transactionRepository.putErrorTransaction(compensableXid, transaction);
+				if (compensableList.size() >= recoveryChunkSize) {
+					putRecoveredTransactions(compensableList);
+					compensableList.clear();
+				} // end-if (compensableList.size() >= recoveryChunkSize)
 			}
 		});
 
+		this.putRecoveredTransactions(compensableList);
+		this.unrecovered.clear();
+
 		CompensableCoordinator compensableCoordinator = //
 				(CompensableCoordinator) this.beanFactory.getCompensableNativeParticipant();
 		compensableCoordinator.markParticipantReady();
 	}
 
+	/**
+	 * Loads the specified transaction from the compensable log if it is still waiting for the background recovery.
+	 *
+	 * @return false if the transaction can not be served until the startup recovery completes.
+	 */
+	public boolean loadTransactionIfNecessary(TransactionXid globalXid) {
+		if (this.recoveryIndexed == false) {
+			return false;
+		}
+
+		Object lock = this.unrecovered.get(globalXid);
+		if (lock == null) {
+			return true;
+		}
+
+		synchronized (lock) {
+			if (this.unrecovered.get(globalXid) != lock) {
+				return true; // recovered by another thread
+			}
+
+			try {
+				IndexedCompensableLogger compensableLogger = //
+						(IndexedCompensableLogger) this.beanFactory.getCompensableLogger();
+				org.bytesoft.compensable.archive.TransactionArchive archive = compensableLogger.recover(globalXid);
+				if (archive != null) {
+					CompensableTransactionImpl transaction = this.reconstructRecoveredTransaction(archive);
+					this.putRecoveredTransactionInternal(transaction, new HashMap<TransactionBranchKey, Boolean>());
+				} // end-if (archive != null)
+
+				this.unrecovered.remove(globalXid);
+				logger.debug("{}| compensable transaction recovered on demand.",
+						ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()));
+				return true;
+			} catch (RuntimeException rex) {
+				logger.error("{}| Error occurred while recovering transaction on demand.",
+						ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()), rex);
+				return false;
+			}
+		}
+	}
+
+	private CompensableTransactionImpl reconstructRecoveredTransaction(
+			org.bytesoft.compensable.archive.TransactionArchive archive) {
+		XidFactory transactionXidFactory = this.beanFactory.getTransactionXidFactory();
+
+		CompensableTransactionImpl transaction = this.reconstruct(archive);
+		TransactionContext transactionContext = transaction.getTransactionContext();
+
+		TransactionXid compensableXid = transactionContext.getXid();
+		if (transactionContext.isCompensable() == false) {
+			TransactionXid transactionXid = transactionXidFactory.createGlobalXid(compensableXid.getGlobalTransactionId());
+			Transaction tx = this.recovered.get(transactionXid);
+			if (tx != null) {
+				tx.setTransactionalExtra(transaction);
+				transaction.setTransactionalExtra(tx); // TODO different thread
+			}
+		} // end-if (transactionContext.isCompensable() == false)
+
+		return transaction;
+	}
+
+	private void putRecoveredTransactions(List<CompensableTransactionImpl> compensableList) {
+		Map<TransactionBranchKey, Boolean> triedMap = this.calculateCompensableTried(compensableList);
+		for (int i = 0; i < compensableList.size(); i++) {
+			CompensableTransactionImpl transaction = compensableList.get(i);
+			this.putRecoveredTransaction(transaction, triedMap);
+		}
+	}
+
+	private void putRecoveredTransaction(CompensableTransactionImpl transaction,
+			Map<TransactionBranchKey, Boolean> triedMap) {
+		if (this.recoveryIndexed == false) {
+			this.putRecoveredTransactionInternal(transaction, triedMap);
+			return;
+		}
+
+		TransactionXid compensableXid = transaction.getTransactionContext().getXid();
+		Object lock = this.unrecovered.get(compensableXid);
+		if (lock == null) {
+			return; // recovered on demand, or created after the recovery started
+		}
+
+		synchronized (lock) {
+			if (this.unrecovered.get(compensableXid) == lock) {
+				this.putRecoveredTransactionInternal(transaction, triedMap);
+				this.unrecovered.remove(compensableXid);
+			} // end-if (this.unrecovered.get(compensableXid) == lock)
+		}
+	}
+
+	private void putRecoveredTransactionInternal(CompensableTransactionImpl transaction,
+			Map<TransactionBranchKey, Boolean> triedMap) {
+		TransactionRepository transactionRepository = this.beanFactory.getCompensableRepository();
+		TransactionContext transactionContext = transaction.getTransactionContext();
+		TransactionXid compensableXid = transactionContext.getXid();
+
+		if (transactionContext.isCompensable()) {
+			this.recoverStatusIfNecessary(transaction, triedMap);
+		} // end-if (transactionContext.isCompensable())
+
+		transactionRepository.putTransaction(compensableXid, transaction);
+		transactionRepository.putErrorTransaction(compensableXid, transaction);
+	}
+
 	public CompensableTransactionImpl reconstruct(TransactionArchive transactionArchive) {
 		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
 
@@ -176,13 +340,16 @@ public class TransactionRecoveryImpl
 	}
 
 	public void recoverStatusIfNecessary(Transaction transaction) {
+		this.recoverStatusIfNecessary(transaction, new HashMap<TransactionBranchKey, Boolean>());
+	}
+
+	private void recoverStatusIfNecessary(Transaction transaction, Map<TransactionBranchKey, Boolean> triedMap) {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
 		CompensableTransactionImpl compensable = (CompensableTransactionImpl) transaction;
 		List<CompensableArchive> archiveList = compensable.getCompensableArchiveList();
 
 		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
 
-		Map<TransactionBranchKey, Boolean> triedMap = new HashMap<TransactionBranchKey, Boolean>();
 		int triedNumber = 0;
 		int unTriedNumber = 0;
 		int unknownNumber = 0;
@@ -251,6 +418,78 @@ public class TransactionRecoveryImpl
 
 	}
 
+	/**
+	 * Probes the untried branches of the recovered transactions in batches: the branches are grouped by resource key and
+	 * each group is checked by the LocalResourceProber with one call per chunk of xids. Branches which could not be
+	 * probed in batches are left out of the returned map and will be probed one by one.
+	 */
+	private Map<TransactionBranchKey, Boolean> calculateCompensableTried(List<CompensableTransactionImpl> transactions) {
+		Map<TransactionBranchKey, Boolean> triedMap = new HashMap<TransactionBranchKey, Boolean>();
+
+		Map<String, Set<Xid>> pendingMap = new HashMap<String, Set<Xid>>();
+		for (int i = 0; i < transactions.size(); i++) {
+			CompensableTransactionImpl transaction = transactions.get(i);
+			List<CompensableArchive> archiveList = transaction.getCompensableArchiveList();
+			for (int j = 0; j < archiveList.size(); j++) {
+				CompensableArchive archive = archiveList.get(j);
+				String resourceKey = archive.getTransactionResourceKey();
+				if (archive.isTried() || StringUtils.isBlank(resourceKey)) {
+					continue;
+				}
+
+				Set<Xid> xids = pendingMap.get(resourceKey);
+				if (xids == null) {
+					xids = new LinkedHashSet<Xid>();
+					pendingMap.put(resourceKey, xids);
+				}
+				xids.add(archive.getTransactionXid());
+			}
+		}
+
+		XAResourceDeserializer resourceDeserializer = this.beanFactory.getResourceDeserializer();
+		for (Iterator<Map.Entry<String, Set<Xid>>> itr = pendingMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Set<Xid>> entry = itr.next();
+			String resourceKey = entry.getKey();
+			List<Xid> xidList = new ArrayList<Xid>(entry.getValue());
+
+			XAResourceDescriptor descriptor = null;
+			try {
+				descriptor = resourceDeserializer.deserialize(resourceKey);
+			} catch (RuntimeException rex) {
+				logger.debug("Error occurred while deserializing resource({}).", resourceKey, rex);
+			}
+
+			if (descriptor == null || this.resourceProber == null) {
+				continue; // probe one by one
+			}
+
+			int batchSize = Math.max(1, this.probeBatchSize);
+			for (int i = 0; i < xidList.size(); i += batchSize) {
+				List<Xid> batchList = xidList.subList(i, Math.min(xidList.size(), i + batchSize));
+				boolean[] values = null;
+				try {
+					values = this.resourceProber.probeTried(descriptor, batchList);
+				} catch (RuntimeException ex) {
+					logger.debug("Error occurred while probing the trying branch transactions in batches.", ex);
+					continue;
+				}
+
+				if (values == null || values.length != batchList.size()) {
+					break; // probe one by one
+				}
+
+				for (int j = 0; j < batchList.size(); j++) {
+					TransactionBranchKey recordKey = new TransactionBranchKey();
+					recordKey.xid = batchList.get(j);
+					recordKey.resource = resourceKey;
+					triedMap.put(recordKey, values[j]);
+				}
+			}
+		}
+
+		return triedMap;
+	}
+
 	protected Boolean calculateCompensableTried(TransactionBranchKey recordKey) {
 		if (StringUtils.isBlank(recordKey.resource)) {
 			logger.warn(
@@ -289,49 +528,151 @@ public class TransactionRecoveryImpl
 		return null;
 	}
 
-	public synchronized void timingRecover() {
+	public void timingRecover() {
 		TransactionRepository transactionRepository = beanFactory.getCompensableRepository();
-		List<Transaction> transactions = transactionRepository.getErrorTransactionList();
-		int total = transactions == null ? 0 : transactions.size(), value = 0;
-		for (int i = 0; transactions != null && i < transactions.size(); i++) {
-			Transaction transaction = transactions.get(i);
+		List<Transaction> errorTransactions = new ArrayList<Transaction>();
+		List<Transaction> transactionList = transactionRepository.getErrorTransactionList();
+		for (int i = 0; transactionList != null && i < transactionList.size(); i++) {
+			Transaction transaction = transactionList.get(i);
+			if (this.isRecoveryAssigned(transaction)) {
+				errorTransactions.add(transaction);
+			} // end-if (this.isRecoveryAssigned(transaction))
+		}
+
+		List<Transaction> transactions = this.recoverySchedule.getDueTransactions(errorTransactions);
+		int total = errorTransactions.size();
+
+		long created = System.currentTimeMillis();
+		final AtomicInteger success = new AtomicInteger();
+		final AtomicInteger failure = new AtomicInteger();
+		int skipped = total - transactions.size();
+
+		ExecutorService executor = this.getRecoveryExecutor();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < transactions.size(); i++) {
+			final Transaction transaction = transactions.get(i);
 			org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
-			TransactionXid xid = transactionContext.getXid();
+			final TransactionXid xid = transactionContext.getXid();
+
+			Runnable task = new Runnable() {
+				public void run() {
+					boolean recovered = false;
+					try {
+						recovered = recoverTransactionQuietly(transaction);
+					} finally {
+						if (recovered) {
+							success.incrementAndGet();
+							recoverySchedule.success(xid);
+						} else {
+							failure.incrementAndGet();
+							recoverySchedule.failure(xid);
+						}
+					}
+				}
+			};
+
+			if (executor == null) {
+				task.run();
+			} else {
+				try {
+					futures.add(executor.submit(task));
+				} catch (RejectedExecutionException rex) {
+					this.recoverySchedule.failure(xid);
+					skipped++;
+				}
+			}
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			Future<?> future = futures.get(i);
 			try {
-				this.recoverTransactionIfNecessary(transaction);
-			} catch (CommitRequiredException ex) {
-				logger.debug("{}| recover: branch={}, message= commit-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()));
-				continue;
-			} catch (RollbackRequiredException ex) {
-				logger.debug("{}| recover: branch={}, message= rollback-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()));
-				continue;
-			} catch (SystemException ex) {
-				logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-				continue;
-			} catch (RuntimeException ex) {
-				logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-				continue;
+				future.get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException ex) {
+				logger.error("Error occurred while recovering transaction.", ex.getCause());
 			}
 		}
-		logger.debug("transaction-recovery: total= {}, success= {}", total, value);
+
+		this.lastRecoveryTotal = total;
+		this.lastRecoverySuccess = success.get();
+		this.lastRecoveryFailure = failure.get();
+		this.lastRecoverySkipped = skipped;
+		this.lastRecoveryMillis = System.currentTimeMillis() - created;
+
+		if (total > 0) {
+			logger.info("transaction-recovery: total= {}, success= {}, failure= {}, skipped= {}, elapsed= {} ms", total,
+					success.get(), failure.get(), skipped, this.lastRecoveryMillis);
+		} else {
+			logger.debug("transaction-recovery: total= {}, success= {}", total, success.get());
+		}
+	}
+
+	/* the coordinator is locked by recoverCoordinator, only while it is being completed, as before. */
+	private boolean recoverTransactionQuietly(Transaction transaction) {
+		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
+		TransactionXid xid = transactionContext.getXid();
+
+		try {
+			this.recoverTransaction(transaction);
+			return true;
+		} catch (CommitRequiredException ex) {
+			logger.debug("{}| recover: branch={}, message= commit-required",
+					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()));
+			return false;
+		} catch (RollbackRequiredException ex) {
+			logger.debug("{}| recover: branch={}, message= rollback-required",
+					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()));
+			return false;
+		} catch (SystemException ex) {
+			logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+			return false;
+		} catch (RuntimeException ex) {
+			logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+			return false;
+		}
+	}
+
+	private synchronized ExecutorService getRecoveryExecutor() {
+		if (this.recoveryThreads <= 1) {
+			return null;
+		} else if (this.recoveryExecutor == null) {
+			this.recoveryExecutor = Executors.newFixedThreadPool(this.recoveryThreads, new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, String.format("bytetcc-recovery-%s", index.incrementAndGet()));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.recoveryExecutor;
 	}
 
 	public void recoverTransactionIfNecessary(Transaction transaction)
 			throws CommitRequiredException, RollbackRequiredException, SystemException {
+		if (this.isRecoveryRequired(transaction)) {
+			this.recoverTransaction(transaction);
+		} // end-if (this.isRecoveryRequired(transaction))
+
+	}
+
+	/* whether the transaction is to be recovered by the current instance. */
+	protected boolean isRecoveryAssigned(Transaction transaction) {
+		return true;
+	}
+
+	protected boolean isRecoveryRequired(Transaction transaction) {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
 		int recoveredTimes = transactionContext.getRecoveredTimes() > 10 ? 10 : transactionContext.getRecoveredTimes();
 		long recoverMillis = transactionContext.getCreatedTime() + SECOND_MILLIS * 60L * (long) Math.pow(2, recoveredTimes);
-
-		if (System.currentTimeMillis() > recoverMillis) {
-			this.recoverTransaction(transaction);
-		} // end-if (System.currentTimeMillis() > recoverMillis)
-
+		return System.currentTimeMillis() > recoverMillis;
 	}
 
 	public void recoverTransaction(Transaction transaction)
@@ -433,6 +774,78 @@ public class TransactionRecoveryImpl
 
 	}
 
+	public int getRecoveryThreads() {
+		return recoveryThreads;
+	}
+
+	public void setRecoveryThreads(int recoveryThreads) {
+		this.recoveryThreads = recoveryThreads;
+	}
+
+	public int getRecoveryChunkSize() {
+		return recoveryChunkSize;
+	}
+
+	public void setRecoveryChunkSize(int recoveryChunkSize) {
+		this.recoveryChunkSize = recoveryChunkSize;
+	}
+
+	public boolean isRecoveryInBackground() {
+		return recoveryInBackground;
+	}
+
+	public void setRecoveryInBackground(boolean recoveryInBackground) {
+		this.recoveryInBackground = recoveryInBackground;
+	}
+
+	public int getUnrecoveredCount() {
+		return this.unrecovered.size();
+	}
+
+	public LocalResourceProber getResourceProber() {
+		return resourceProber;
+	}
+
+	public void setResourceProber(LocalResourceProber resourceProber) {
+		this.resourceProber = resourceProber;
+	}
+
+	public int getProbeBatchSize() {
+		return probeBatchSize;
+	}
+
+	public void setProbeBatchSize(int probeBatchSize) {
+		this.probeBatchSize = probeBatchSize;
+	}
+
+	public TransactionRecoverySchedule getRecoverySchedule() {
+		return recoverySchedule;
+	}
+
+	public void setRecoverySchedule(TransactionRecoverySchedule recoverySchedule) {
+		this.recoverySchedule = recoverySchedule;
+	}
+
+	public int getLastRecoveryTotal() {
+		return lastRecoveryTotal;
+	}
+
+	public int getLastRecoverySuccess() {
+		return lastRecoverySuccess;
+	}
+
+	public int getLastRecoveryFailure() {
+		return lastRecoveryFailure;
+	}
+
+	public int getLastRecoverySkipped() {
+		return lastRecoverySkipped;
+	}
+
+	public long getLastRecoveryMillis() {
+		return lastRecoveryMillis;
+	}
+
 	public boolean isStatefully() {
 		return statefully;
 	}
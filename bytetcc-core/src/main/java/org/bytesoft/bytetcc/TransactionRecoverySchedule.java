@@ -0,0 +1,196 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+/**
+ * Due-time schedule of the error transactions: a min-heap keyed on the next attempt time of each transaction. The first
+ * attempt is due at createdTime + 60s * 2^recoveredTimes, as before; after each failed attempt the transaction is pushed
+ * back exponentially (with jitter).
+ */
+public class TransactionRecoverySchedule {
+
+	private long initialDelayMillis = 1000L * 60;
+	private long baseDelayMillis = 1000L * 5;
+	private long maxDelayMillis = 1000L * 60 * 60;
+	private double jitterRatio = 0.2;
+
+	private final Random random = new Random();
+	private final Map<TransactionXid, ScheduleEntry> entries = new HashMap<TransactionXid, ScheduleEntry>();
+	private final PriorityQueue<ScheduleEntry> queue = new PriorityQueue<ScheduleEntry>(64, new Comparator<ScheduleEntry>() {
+		public int compare(ScheduleEntry o1, ScheduleEntry o2) {
+			return o1.dueAt < o2.dueAt ? -1 : (o1.dueAt == o2.dueAt ? 0 : 1);
+		}
+	});
+
+	/**
+	 * Merges the current error transactions into the schedule and returns those which are due, the earliest first. The
+	 * returned transactions stay out of the schedule until either {@link #success(TransactionXid)} or
+	 * {@link #failure(TransactionXid)} is invoked for them.
+	 */
+	public synchronized List<Transaction> getDueTransactions(List<Transaction> transactions) {
+		long current = System.currentTimeMillis();
+
+		Set<TransactionXid> xids = new HashSet<TransactionXid>();
+		for (int i = 0; transactions != null && i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			TransactionContext transactionContext = transaction.getTransactionContext();
+			TransactionXid xid = transactionContext.getXid();
+			xids.add(xid);
+
+			ScheduleEntry entry = this.entries.get(xid);
+			if (entry == null) {
+				entry = new ScheduleEntry();
+				entry.xid = xid;
+				entry.attempts = transactionContext.getRecoveredTimes();
+				entry.dueAt = this.getInitialDueTime(transactionContext);
+				this.entries.put(xid, entry);
+				this.queue.offer(entry);
+			}
+			entry.transaction = transaction;
+		}
+
+		Set<ScheduleEntry> completed = new HashSet<ScheduleEntry>();
+		for (Iterator<Map.Entry<TransactionXid, ScheduleEntry>> itr = this.entries.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<TransactionXid, ScheduleEntry> element = itr.next();
+			ScheduleEntry entry = element.getValue();
+			if (xids.contains(element.getKey()) == false && entry.running == false) {
+				itr.remove(); // completed
+				completed.add(entry);
+			}
+		}
+		if (completed.isEmpty() == false) {
+			this.queue.removeAll(completed); // release the transactions instead of keeping them until they are due
+		}
+
+		List<Transaction> dueList = new ArrayList<Transaction>();
+		while (this.queue.isEmpty() == false && this.queue.peek().dueAt <= current) {
+			ScheduleEntry entry = this.queue.poll();
+			if (this.entries.get(entry.xid) != entry) {
+				continue; // removed
+			}
+
+			entry.running = true;
+			dueList.add(entry.transaction);
+		}
+		return dueList;
+	}
+
+	public synchronized void success(TransactionXid xid) {
+		this.entries.remove(xid);
+	}
+
+	public synchronized void failure(TransactionXid xid) {
+		ScheduleEntry original = this.entries.get(xid);
+		if (original == null) {
+			return;
+		}
+
+		ScheduleEntry entry = new ScheduleEntry();
+		entry.xid = xid;
+		entry.transaction = original.transaction;
+		entry.attempts = original.attempts + 1;
+		entry.dueAt = System.currentTimeMillis() + this.getDelayMillis(entry.attempts);
+		this.entries.put(xid, entry);
+		this.queue.offer(entry);
+	}
+
+	private long getInitialDueTime(TransactionContext transactionContext) {
+		int recoveredTimes = Math.min(transactionContext.getRecoveredTimes(), 10);
+		return transactionContext.getCreatedTime() + this.initialDelayMillis * (long) Math.pow(2, recoveredTimes);
+	}
+
+	private long getDelayMillis(int attempts) {
+		double delay = this.baseDelayMillis * Math.pow(2, Math.min(attempts, 30));
+		double jitter = 1 - this.jitterRatio + 2 * this.jitterRatio * this.random.nextDouble();
+		return (long) (Math.min(delay, this.maxDelayMillis) * jitter);
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/* the number of the scheduled transactions which are due at the specified time, not including the running ones. */
+	public synchronized int getDueCount(long time) {
+		int count = 0;
+		for (Iterator<ScheduleEntry> itr = this.entries.values().iterator(); itr.hasNext();) {
+			ScheduleEntry entry = itr.next();
+			if (entry.running == false && entry.dueAt <= time) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public synchronized long getNextDueTime() {
+		return this.queue.isEmpty() ? -1 : this.queue.peek().dueAt;
+	}
+
+	static class ScheduleEntry {
+		TransactionXid xid;
+		Transaction transaction;
+		int attempts;
+		long dueAt;
+		boolean running;
+	}
+
+	public long getInitialDelayMillis() {
+		return initialDelayMillis;
+	}
+
+	public void setInitialDelayMillis(long initialDelayMillis) {
+		this.initialDelayMillis = initialDelayMillis;
+	}
+
+	public long getBaseDelayMillis() {
+		return baseDelayMillis;
+	}
+
+	public void setBaseDelayMillis(long baseDelayMillis) {
+		this.baseDelayMillis = baseDelayMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	public double getJitterRatio() {
+		return jitterRatio;
+	}
+
+	public void setJitterRatio(double jitterRatio) {
+		this.jitterRatio = jitterRatio;
+	}
+
+}
@@ -17,10 +17,17 @@ package org.bytesoft.bytetcc.logging;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.transaction.xa.Xid;
 
@@ -32,7 +39,7 @@ import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
-import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.compensable.logging.IndexedCompensableLogger;
 import org.bytesoft.transaction.archive.XAResourceArchive;
 import org.bytesoft.transaction.logging.ArchiveDeserializer;
 import org.bytesoft.transaction.logging.LoggingFlushable;
@@ -46,19 +53,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SampleCompensableLogger extends VirtualLoggingSystemImpl
-		implements CompensableLogger, LoggingFlushable, CompensableBeanFactoryAware, CompensableEndpointAware {
+		implements IndexedCompensableLogger, LoggingFlushable, CompensableBeanFactoryAware, CompensableEndpointAware {
 	static final Logger logger = LoggerFactory.getLogger(SampleCompensableLogger.class);
 
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private String endpoint;
+	/* the number of the transactions whose archives are read by one traversal in recover(callback). */
+	private int recoverBatchSize = 1000;
+
+	/* the writers share the read lock, a traversal holds the write lock so that it sees a stable logging file. */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/* the global xids of the transactions in the logging file, built by the first traversal and kept by the writers. */
+	private volatile Set<TransactionXid> recoverableXids;
 
 	public void createTransaction(TransactionArchive archive) {
 		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
 
 		try {
 			byte[] byteArray = deserializer.serialize((TransactionXid) archive.getXid(), archive);
-			this.create(archive.getXid(), byteArray);
+			this.createRecord(archive.getXid(), byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while creating transaction-archive.", rex);
 		}
@@ -69,7 +83,7 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 
 		try {
 			byte[] byteArray = deserializer.serialize((TransactionXid) archive.getXid(), archive);
-			this.modify(archive.getXid(), byteArray);
+			this.modifyRecord(archive.getXid(), byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while modifying transaction-archive.", rex);
 		}
@@ -77,7 +91,7 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 
 	public void deleteTransaction(TransactionArchive archive) {
 		try {
-			this.delete(archive.getXid());
+			this.deleteRecord(archive.getXid());
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while deleting transaction-archive.", rex);
 		}
@@ -88,7 +102,7 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 
 		try {
 			byte[] byteArray = deserializer.serialize((TransactionXid) archive.getXid(), archive);
-			this.create(archive.getXid(), byteArray);
+			this.createRecord(archive.getXid(), byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while modifying resource-archive.", rex);
 		}
@@ -99,7 +113,7 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 
 		try {
 			byte[] byteArray = deserializer.serialize((TransactionXid) archive.getXid(), archive);
-			this.modify(archive.getXid(), byteArray);
+			this.modifyRecord(archive.getXid(), byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while modifying resource-archive.", rex);
 		}
@@ -114,7 +128,7 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 		try {
 			TransactionXid xid = (TransactionXid) archive.getIdentifier();
 			byte[] byteArray = deserializer.serialize(xid, archive);
-			this.create(xid, byteArray);
+			this.createRecord(xid, byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while creating compensable-archive.", rex);
 		}
@@ -126,12 +140,55 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 		try {
 			TransactionXid xid = (TransactionXid) archive.getIdentifier();
 			byte[] byteArray = deserializer.serialize(xid, archive);
-			this.modify(xid, byteArray);
+			this.modifyRecord(xid, byteArray);
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while modifying compensable-archive.", rex);
 		}
 	}
 
+	private void createRecord(Xid xid, byte[] byteArray) {
+		this.lock.readLock().lock();
+		try {
+			this.create(xid, byteArray);
+			this.addRecoverableXid(xid);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private void modifyRecord(Xid xid, byte[] byteArray) {
+		this.lock.readLock().lock();
+		try {
+			this.modify(xid, byteArray);
+			this.addRecoverableXid(xid);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private void deleteRecord(Xid xid) {
+		this.lock.readLock().lock();
+		try {
+			this.delete(xid);
+
+			Set<TransactionXid> xids = this.recoverableXids;
+			if (xids != null) {
+				XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+				xids.remove(xidFactory.createGlobalXid(xid.getGlobalTransactionId()));
+			} // end-if (xids != null)
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private void addRecoverableXid(Xid xid) {
+		Set<TransactionXid> xids = this.recoverableXids;
+		if (xids != null) {
+			XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+			xids.add(xidFactory.createGlobalXid(xid.getGlobalTransactionId()));
+		} // end-if (xids != null)
+	}
+
 	public List<VirtualLoggingRecord> compressIfNecessary(List<VirtualLoggingRecord> recordList) {
 		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
 		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
@@ -234,111 +291,175 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 		return resultList;
 	}
 
+	/**
+	 * Reads the archives recoverBatchSize transactions at a time, so that only the archives of one batch are held in
+	 * memory; each batch costs one traversal of the logging files.
+	 */
 	public void recover(TransactionRecoveryCallback callback) {
+		List<TransactionXid> xidList = new ArrayList<TransactionXid>(this.getRecoverableXids());
+		int batchSize = Math.max(1, this.recoverBatchSize);
+		for (int index = 0; index < xidList.size(); index += batchSize) {
+			List<TransactionXid> batchList = xidList.subList(index, Math.min(xidList.size(), index + batchSize));
+			Map<TransactionXid, TransactionArchive> xidMap = this.recoverArchives(batchList);
+
+			for (Iterator<TransactionArchive> itr = xidMap.values().iterator(); itr.hasNext();) {
+				TransactionArchive archive = itr.next();
+				if (archive == null) {
+					continue;
+				}
 
-		final Map<Xid, TransactionArchive> xidMap = new HashMap<Xid, TransactionArchive>();
-		final ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+				try {
+					callback.recover(archive);
+				} catch (RuntimeException rex) {
+					logger.error("Error occurred while recovering transaction(xid= {}).", archive.getXid(), rex);
+				}
+			}
+		}
+
+	}
+
+	public Set<TransactionXid> getRecoverableXids() {
+		Set<TransactionXid> xids = this.recoverableXids;
+		if (xids == null) {
+			xids = this.initRecoverableXids();
+		}
+		return new HashSet<TransactionXid>(xids);
+	}
+
+	/**
+	 * Reads the archive of a single transaction, which costs one traversal of the logging files, or none if the
+	 * transaction is not in the logging files.
+	 */
+	public TransactionArchive recover(TransactionXid globalXid) {
+		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+		TransactionXid xid = xidFactory.createGlobalXid(globalXid.getGlobalTransactionId());
+		if (this.getRecoverableXids().contains(xid) == false) {
+			return null;
+		}
+
+		Map<TransactionXid, TransactionArchive> xidMap = this.recoverArchives(Collections.singletonList(xid));
+		return xidMap.get(xid);
+	}
+
+	/* the first traversal builds the index, which the writers keep up to date afterwards. */
+	private Set<TransactionXid> initRecoverableXids() {
 		final XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
 
-		this.traversal(new VirtualLoggingListener() {
-			public void recvOperation(VirtualLoggingRecord action) {
-				Xid xid = action.getIdentifier();
-				int operator = action.getOperator();
-				if (VirtualLoggingSystem.OPERATOR_DELETE == operator) {
-					xidMap.remove(xid);
-				} else if (xidMap.containsKey(xid) == false) {
-					xidMap.put(xid, null);
-				}
+		this.lock.writeLock().lock();
+		try {
+			if (this.recoverableXids != null) {
+				return this.recoverableXids;
 			}
-		});
 
-		this.traversal(new VirtualLoggingListener() {
-			public void recvOperation(VirtualLoggingRecord action) {
-				Xid xid = action.getIdentifier();
-				if (xidMap.containsKey(xid)) {
-					this.execOperation(action);
+			final Set<TransactionXid> xids = //
+					Collections.newSetFromMap(new ConcurrentHashMap<TransactionXid, Boolean>());
+			this.traversal(new VirtualLoggingListener() {
+				public void recvOperation(VirtualLoggingRecord action) {
+					Xid identifier = action.getIdentifier();
+					TransactionXid xid = xidFactory.createGlobalXid(identifier.getGlobalTransactionId());
+					if (VirtualLoggingSystem.OPERATOR_DELETE == action.getOperator()) {
+						xids.remove(xid);
+					} else {
+						xids.add(xid);
+					}
 				}
-			}
+			});
 
-			public void execOperation(VirtualLoggingRecord action) {
-				Xid identifier = action.getIdentifier();
+			this.recoverableXids = xids;
+			return xids;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
 
-				TransactionXid xid = xidFactory.createGlobalXid(identifier.getGlobalTransactionId());
+	private Map<TransactionXid, TransactionArchive> recoverArchives(Collection<TransactionXid> xids) {
+		final Map<TransactionXid, TransactionArchive> xidMap = new HashMap<TransactionXid, TransactionArchive>();
+		for (Iterator<TransactionXid> itr = xids.iterator(); itr.hasNext();) {
+			xidMap.put(itr.next(), null);
+		}
 
-				Object obj = deserializer.deserialize(xid, action.getValue());
-				if (TransactionArchive.class.isInstance(obj)) {
-					TransactionArchive archive = (TransactionArchive) obj;
-					xidMap.put(identifier, archive);
-				} else if (XAResourceArchive.class.isInstance(obj)) {
-					TransactionArchive archive = xidMap.get(identifier);
-					if (archive == null) {
-						logger.error("Error occurred while recovering resource archive: {}", obj);
-						return;
-					}
+		if (xidMap.isEmpty()) {
+			return xidMap;
+		}
 
-					XAResourceArchive resourceArchive = (XAResourceArchive) obj;
-					boolean matched = false;
+		final ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		final XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
 
-					List<XAResourceArchive> remoteResources = archive.getRemoteResources();
-					for (int i = 0; matched == false && remoteResources != null && i < remoteResources.size(); i++) {
-						XAResourceArchive element = remoteResources.get(i);
-						if (resourceArchive.getXid().equals(element.getXid())) {
-							matched = true;
-							remoteResources.set(i, resourceArchive);
-						}
+		this.lock.writeLock().lock();
+		try {
+			this.traversal(new VirtualLoggingListener() {
+				public void recvOperation(VirtualLoggingRecord action) {
+					Xid identifier = action.getIdentifier();
+					TransactionXid xid = xidFactory.createGlobalXid(identifier.getGlobalTransactionId());
+					if (xidMap.containsKey(xid) == false) {
+						return; // ignore
+					} else if (VirtualLoggingSystem.OPERATOR_DELETE == action.getOperator()) {
+						xidMap.put(xid, null);
+					} else {
+						this.execOperation(xid, action);
 					}
+				}
 
-					if (matched == false) {
-						remoteResources.add(resourceArchive);
-					}
+				public void execOperation(TransactionXid xid, VirtualLoggingRecord action) {
+					Object obj = deserializer.deserialize(xid, action.getValue());
+					if (TransactionArchive.class.isInstance(obj)) {
+						TransactionArchive archive = (TransactionArchive) obj;
+						xidMap.put(xid, archive);
+					} else if (XAResourceArchive.class.isInstance(obj)) {
+						TransactionArchive archive = xidMap.get(xid);
+						if (archive == null) {
+							logger.error("Error occurred while recovering resource archive: {}", obj);
+							return;
+						}
 
-				} else if (CompensableArchive.class.isInstance(obj)) {
-					TransactionArchive archive = xidMap.get(identifier);
-					if (archive == null) {
-						logger.error("Error occurred while recovering compensable archive: {}", obj);
-						return;
-					}
+						XAResourceArchive resourceArchive = (XAResourceArchive) obj;
+						boolean matched = false;
 
-					List<CompensableArchive> compensables = archive.getCompensableResourceList();
-					CompensableArchive resourceArchive = (CompensableArchive) obj;
-
-					// if (VirtualLoggingSystem.OPERATOR_CREATE == action.getOperator()) {
-					// compensables.add(resourceArchive);
-					// } else {
-					boolean matched = false;
-					for (int i = 0; matched == false && compensables != null && i < compensables.size(); i++) {
-						CompensableArchive element = compensables.get(i);
-						if (resourceArchive.getIdentifier().equals(element.getIdentifier())) {
-							matched = true;
-							compensables.set(i, resourceArchive);
+						List<XAResourceArchive> remoteResources = archive.getRemoteResources();
+						for (int i = 0; matched == false && remoteResources != null && i < remoteResources.size(); i++) {
+							XAResourceArchive element = remoteResources.get(i);
+							if (resourceArchive.getXid().equals(element.getXid())) {
+								matched = true;
+								remoteResources.set(i, resourceArchive);
+							}
 						}
-					}
 
-					if (matched == false) {
-						compensables.add(resourceArchive);
-					}
+						if (matched == false) {
+							remoteResources.add(resourceArchive);
+						}
 
-					// }
+					} else if (CompensableArchive.class.isInstance(obj)) {
+						TransactionArchive archive = xidMap.get(xid);
+						if (archive == null) {
+							logger.error("Error occurred while recovering compensable archive: {}", obj);
+							return;
+						}
 
-				}
+						List<CompensableArchive> compensables = archive.getCompensableResourceList();
+						CompensableArchive resourceArchive = (CompensableArchive) obj;
 
-			}
-		});
+						boolean matched = false;
+						for (int i = 0; matched == false && compensables != null && i < compensables.size(); i++) {
+							CompensableArchive element = compensables.get(i);
+							if (resourceArchive.getIdentifier().equals(element.getIdentifier())) {
+								matched = true;
+								compensables.set(i, resourceArchive);
+							}
+						}
+
+						if (matched == false) {
+							compensables.add(resourceArchive);
+						}
+
+					}
 
-		for (Iterator<Map.Entry<Xid, TransactionArchive>> itr = xidMap.entrySet().iterator(); itr.hasNext();) {
-			Map.Entry<Xid, TransactionArchive> entry = itr.next();
-			TransactionArchive archive = entry.getValue();
-			if (archive == null) {
-				continue;
-			} else {
-				try {
-					callback.recover(archive);
-				} catch (RuntimeException rex) {
-					logger.error("Error occurred while recovering transaction(xid= {}).", archive.getXid(), rex);
 				}
-			}
+			});
+		} finally {
+			this.lock.writeLock().unlock();
 		}
 
+		return xidMap;
 	}
 
 	public File getDefaultDirectory() {
@@ -370,6 +491,14 @@ public class SampleCompensableLogger extends VirtualLoggingSystemImpl
 		return "org.bytesoft.bytetcc.logging.sample";
 	}
 
+	public int getRecoverBatchSize() {
+		return recoverBatchSize;
+	}
+
+	public void setRecoverBatchSize(int recoverBatchSize) {
+		this.recoverBatchSize = recoverBatchSize;
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
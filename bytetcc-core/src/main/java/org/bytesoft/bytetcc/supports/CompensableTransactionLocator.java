@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionException;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+/**
+ * Lookup of a transaction for decisions which depend only on its immutable attributes (e.g. the coordinator which
+ * propagated it), and which may therefore be answered from a cache. The returned transaction is a private copy whose
+ * state may be out of date; it must not be used to commit, roll back or forget the transaction.
+ */
+public interface CompensableTransactionLocator {
+
+	public Transaction locateTransaction(TransactionXid xid) throws TransactionException;
+
+}
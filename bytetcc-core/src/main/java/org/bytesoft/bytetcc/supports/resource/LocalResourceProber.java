@@ -0,0 +1,33 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.resource;
+
+import java.util.List;
+
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+
+/**
+ * Probes in batches whether the trying branches have been committed by a local resource. The resources which can not
+ * be probed in batches are probed one by one through RecoveredResource.recoverable.
+ */
+public interface LocalResourceProber {
+
+	/* whether each of the branches has been tried, in the same order; null if the resource can not be probed in batches. */
+	public boolean[] probeTried(XAResourceDescriptor descriptor, List<Xid> xidList) throws RuntimeException;
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.resource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytejta.supports.jdbc.LocalXADataSource;
+import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Probes the branches of a LocalXADataSource with one query per batch against the table in which bytejta records the
+ * committed local branches (gxid, bxid). The table name and the column names are those of bytejta 0.5 and can be
+ * configured; another layout requires another LocalResourceProber.
+ */
+public class LocalXADataSourceProber implements LocalResourceProber {
+	static final Logger logger = LoggerFactory.getLogger(LocalXADataSourceProber.class);
+
+	private String tableName = "bytejta";
+	private String globalColumn = "gxid";
+	private String branchColumn = "bxid";
+
+	public boolean[] probeTried(XAResourceDescriptor descriptor, List<Xid> xidList) throws RuntimeException {
+		Object delegate = LocalXAResourceDescriptor.class.isInstance(descriptor)
+				? ((LocalXAResourceDescriptor) descriptor).getDelegate() : null;
+		DataSource dataSource = LocalXADataSource.class.isInstance(delegate)
+				? ((LocalXADataSource) delegate).getDataSource() : null;
+		if (dataSource == null) {
+			return null;
+		}
+
+		Set<String> existsSet = null;
+		try {
+			existsSet = this.selectTriedBranches(dataSource, xidList);
+		} catch (SQLException ex) {
+			throw new IllegalStateException(
+					String.format("Error occurred while probing the trying branches of resource %s.", descriptor), ex);
+		}
+
+		boolean[] values = new boolean[xidList.size()];
+		for (int i = 0; i < xidList.size(); i++) {
+			values[i] = existsSet.contains(this.getBranchIdentifier(xidList.get(i)));
+		}
+		return values;
+	}
+
+	private Set<String> selectTriedBranches(DataSource dataSource, List<Xid> xidList) throws SQLException {
+		StringBuilder ber = new StringBuilder();
+		ber.append("select ").append(this.globalColumn).append(", ").append(this.branchColumn);
+		ber.append(" from ").append(this.tableName).append(" where ").append(this.globalColumn).append(" in (");
+		for (int i = 0; i < xidList.size(); i++) {
+			ber.append(i == 0 ? "?" : ", ?");
+		}
+		ber.append(")");
+
+		Set<String> existsSet = new HashSet<String>();
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = dataSource.getConnection();
+			stmt = conn.prepareStatement(ber.toString());
+			for (int i = 0; i < xidList.size(); i++) {
+				Xid xid = xidList.get(i);
+				stmt.setString(i + 1, ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			}
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				existsSet.add(rs.getString(1) + ":" + rs.getString(2));
+			}
+		} finally {
+			this.closeQuietly(rs);
+			this.closeQuietly(stmt);
+			this.closeQuietly(conn);
+		}
+		return existsSet;
+	}
+
+	/* the same (gxid, bxid) as the one recorded by the local resource of bytejta. */
+	private String getBranchIdentifier(Xid xid) {
+		String gxid = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+		byte[] branchQualifier = xid.getBranchQualifier();
+		String bxid = branchQualifier == null || branchQualifier.length == 0 ? gxid
+				: ByteUtils.byteArrayToString(branchQualifier);
+		return gxid + ":" + bxid;
+	}
+
+	private void closeQuietly(AutoCloseable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (Exception ex) {
+				logger.debug(ex.getMessage(), ex);
+			}
+		}
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public void setTableName(String tableName) {
+		this.tableName = tableName;
+	}
+
+	public String getGlobalColumn() {
+		return globalColumn;
+	}
+
+	public void setGlobalColumn(String globalColumn) {
+		this.globalColumn = globalColumn;
+	}
+
+	public String getBranchColumn() {
+		return branchColumn;
+	}
+
+	public void setBranchColumn(String branchColumn) {
+		this.branchColumn = branchColumn;
+	}
+
+}
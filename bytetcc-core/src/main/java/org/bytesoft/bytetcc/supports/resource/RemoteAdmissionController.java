@@ -0,0 +1,263 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.resource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.xa.XAException;
+
+import org.bytesoft.compensable.AdmissionController;
+
+/**
+ * Admission control of the commit/rollback/forget requests sent to the remote participants, shared by the live
+ * transactions and the recovery. Every remote application gets a token bucket (requests per second) and a concurrency
+ * limit, both adjusted AIMD-style: increased additively while the application answers, cut by decreaseFactor when it
+ * reports XAER_RMFAIL, at most once per decreaseWindowMillis so that the failures of the requests already in flight
+ * count as a single congestion signal. A request which is not admitted within acquireTimeoutMillis fails with
+ * XAER_RMFAIL, so that it is retried later as any other unreachable branch. Disabled by default: set enabled to true to
+ * throttle the requests.
+ */
+public class RemoteAdmissionController implements AdmissionController {
+
+	private boolean enabled = false;
+	private double initialRate = 100;
+	private double minRate = 1;
+	private double maxRate = 1000;
+	private double rateIncrement = 10;
+	private int initialConcurrency = 16;
+	private int minConcurrency = 1;
+	private int maxConcurrency = 64;
+	private double decreaseFactor = 0.5;
+	private long decreaseWindowMillis = 1000L;
+	private long acquireTimeoutMillis = 3000L;
+
+	private final Map<String, ApplicationLimiter> limiters = new ConcurrentHashMap<String, ApplicationLimiter>();
+
+	public void acquire(String application) throws XAException {
+		if (this.enabled == false) {
+			return;
+		}
+
+		ApplicationLimiter limiter = this.getApplicationLimiter(application);
+		try {
+			if (limiter.acquire(this.acquireTimeoutMillis) == false) {
+				throw new XAException(XAException.XAER_RMFAIL);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new XAException(XAException.XAER_RMFAIL);
+		}
+	}
+
+	public void release(String application, boolean unavailable) {
+		if (this.enabled == false) {
+			return;
+		}
+
+		this.getApplicationLimiter(application).release(unavailable);
+	}
+
+	private ApplicationLimiter getApplicationLimiter(String application) {
+		ApplicationLimiter limiter = this.limiters.get(application);
+		if (limiter == null) {
+			ApplicationLimiter created = new ApplicationLimiter();
+			limiter = this.limiters.putIfAbsent(application, created);
+			limiter = limiter == null ? created : limiter;
+		}
+		return limiter;
+	}
+
+	public double getRate(String application) {
+		ApplicationLimiter limiter = this.limiters.get(application);
+		return limiter == null ? this.initialRate : limiter.getRate();
+	}
+
+	public int getConcurrencyLimit(String application) {
+		ApplicationLimiter limiter = this.limiters.get(application);
+		return limiter == null ? this.initialConcurrency : limiter.getConcurrencyLimit();
+	}
+
+	public int getInFlight(String application) {
+		ApplicationLimiter limiter = this.limiters.get(application);
+		return limiter == null ? 0 : limiter.getInFlight();
+	}
+
+	public long getRejectedCount(String application) {
+		ApplicationLimiter limiter = this.limiters.get(application);
+		return limiter == null ? 0 : limiter.rejected.get();
+	}
+
+	class ApplicationLimiter {
+		private double rate = initialRate;
+		private double concurrency = initialConcurrency;
+		private double tokens = Math.max(1, initialRate);
+		private long refilledAt = System.currentTimeMillis();
+		private long decreasedAt;
+		private int inFlight;
+		private final AtomicLong rejected = new AtomicLong();
+
+		synchronized boolean acquire(long timeoutMillis) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while (true) {
+				long current = System.currentTimeMillis();
+				this.refill(current);
+
+				if (this.inFlight < (int) this.concurrency && this.tokens >= 1) {
+					this.tokens -= 1;
+					this.inFlight++;
+					return true;
+				} else if (current >= deadline) {
+					this.rejected.incrementAndGet();
+					return false;
+				}
+
+				long waitMillis = deadline - current;
+				if (this.tokens < 1) {
+					waitMillis = Math.min(waitMillis, (long) Math.ceil((1 - this.tokens) * 1000 / this.rate));
+				}
+				this.wait(Math.max(1, waitMillis));
+			}
+		}
+
+		synchronized void release(boolean unavailable) {
+			this.inFlight = Math.max(0, this.inFlight - 1);
+			long current = System.currentTimeMillis();
+			if (unavailable == false) {
+				// about +1 concurrency and +rateIncrement per window of successful requests
+				this.concurrency = Math.min(maxConcurrency, this.concurrency + 1 / this.concurrency);
+				this.rate = Math.min(maxRate, this.rate + rateIncrement / Math.max(1, this.concurrency));
+			} else if (current - this.decreasedAt >= decreaseWindowMillis) {
+				this.decreasedAt = current;
+				this.concurrency = Math.max(minConcurrency, this.concurrency * decreaseFactor);
+				this.rate = Math.max(minRate, this.rate * decreaseFactor);
+				this.tokens = Math.min(this.tokens, Math.max(1, this.rate));
+			} // else already decreased for the requests sent before the last decrease
+			this.notifyAll();
+		}
+
+		private void refill(long current) {
+			double elapsed = (current - this.refilledAt) / 1000.0;
+			this.tokens = Math.min(Math.max(1, this.rate), this.tokens + elapsed * this.rate);
+			this.refilledAt = current;
+		}
+
+		synchronized double getRate() {
+			return this.rate;
+		}
+
+		synchronized int getConcurrencyLimit() {
+			return (int) this.concurrency;
+		}
+
+		synchronized int getInFlight() {
+			return this.inFlight;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public double getInitialRate() {
+		return initialRate;
+	}
+
+	public void setInitialRate(double initialRate) {
+		this.initialRate = initialRate;
+	}
+
+	public double getMinRate() {
+		return minRate;
+	}
+
+	public void setMinRate(double minRate) {
+		this.minRate = minRate;
+	}
+
+	public double getMaxRate() {
+		return maxRate;
+	}
+
+	public void setMaxRate(double maxRate) {
+		this.maxRate = maxRate;
+	}
+
+	public double getRateIncrement() {
+		return rateIncrement;
+	}
+
+	public void setRateIncrement(double rateIncrement) {
+		this.rateIncrement = rateIncrement;
+	}
+
+	public int getInitialConcurrency() {
+		return initialConcurrency;
+	}
+
+	public void setInitialConcurrency(int initialConcurrency) {
+		this.initialConcurrency = initialConcurrency;
+	}
+
+	public int getMinConcurrency() {
+		return minConcurrency;
+	}
+
+	public void setMinConcurrency(int minConcurrency) {
+		this.minConcurrency = minConcurrency;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public double getDecreaseFactor() {
+		return decreaseFactor;
+	}
+
+	public void setDecreaseFactor(double decreaseFactor) {
+		this.decreaseFactor = decreaseFactor;
+	}
+
+	public long getDecreaseWindowMillis() {
+		return decreaseWindowMillis;
+	}
+
+	public void setDecreaseWindowMillis(long decreaseWindowMillis) {
+		this.decreaseWindowMillis = decreaseWindowMillis;
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		if (acquireTimeoutMillis < 0) {
+			throw new IllegalArgumentException(String.format("Illegal acquireTimeoutMillis: %s", acquireTimeoutMillis));
+		}
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+}
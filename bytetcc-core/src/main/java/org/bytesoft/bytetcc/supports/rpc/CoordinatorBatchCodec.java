@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.transaction.xa.XidFactory;
+
+/**
+ * Binary body of the batch coordinator requests: the global transaction ids of the request, and the XA outcome (XA_OK
+ * or the XAException error code) of each of them, in the same order, for the response.
+ */
+public final class CoordinatorBatchCodec {
+	public static final String CONTENT_TYPE = "application/octet-stream";
+
+	static final byte FORMAT_XIDS = 0x1;
+	static final byte FORMAT_CODES = 0x2;
+
+	private CoordinatorBatchCodec() {
+	}
+
+	public static byte[] encodeXids(List<Xid> xids) {
+		int length = 1 + 5;
+		for (int i = 0; i < xids.size(); i++) {
+			length += 5 + xids.get(i).getGlobalTransactionId().length;
+		}
+
+		byte[] byteArray = new byte[length];
+		byteArray[0] = FORMAT_XIDS;
+		int position = TransactionContextCodec.writeVarLong(byteArray, 1, xids.size());
+		for (int i = 0; i < xids.size(); i++) {
+			byte[] globalTransactionId = xids.get(i).getGlobalTransactionId();
+			position = TransactionContextCodec.writeVarLong(byteArray, position, globalTransactionId.length);
+			System.arraycopy(globalTransactionId, 0, byteArray, position, globalTransactionId.length);
+			position += globalTransactionId.length;
+		}
+
+		byte[] resultArray = new byte[position];
+		System.arraycopy(byteArray, 0, resultArray, 0, position);
+		return resultArray;
+	}
+
+	public static List<Xid> decodeXids(byte[] byteArray, XidFactory xidFactory) throws IOException {
+		if (byteArray == null || byteArray.length == 0 || byteArray[0] != FORMAT_XIDS) {
+			throw new IOException("Unsupported batch request!");
+		}
+
+		try {
+			long[] values = new long[1];
+			int position = TransactionContextCodec.readVarLong(byteArray, 1, values, 0);
+			int size = (int) values[0];
+			if (size < 0 || size > byteArray.length) {
+				throw new IOException("Malformed batch request!");
+			}
+
+			List<Xid> xids = new ArrayList<Xid>(size);
+			for (int i = 0; i < size; i++) {
+				position = TransactionContextCodec.readVarLong(byteArray, position, values, 0);
+				int length = (int) values[0];
+				if (length <= 0 || length > Xid.MAXGTRIDSIZE || position + length > byteArray.length) {
+					throw new IOException("Malformed batch request!");
+				}
+
+				byte[] globalTransactionId = new byte[length];
+				System.arraycopy(byteArray, position, globalTransactionId, 0, length);
+				position += length;
+				xids.add(xidFactory.createGlobalXid(globalTransactionId));
+			}
+			return xids;
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Incomplete batch request!", ex);
+		}
+	}
+
+	public static byte[] encodeCodes(int[] codes) {
+		byte[] byteArray = new byte[1 + 5 + codes.length * 5];
+		byteArray[0] = FORMAT_CODES;
+		int position = TransactionContextCodec.writeVarLong(byteArray, 1, codes.length);
+		for (int i = 0; i < codes.length; i++) {
+			position = TransactionContextCodec.writeVarLong(byteArray, position, codes[i] & 0xFFFFFFFFL);
+		}
+
+		byte[] resultArray = new byte[position];
+		System.arraycopy(byteArray, 0, resultArray, 0, position);
+		return resultArray;
+	}
+
+	public static int[] decodeCodes(byte[] byteArray) throws IOException {
+		if (byteArray == null || byteArray.length == 0 || byteArray[0] != FORMAT_CODES) {
+			throw new IOException("Unsupported batch response!");
+		}
+
+		try {
+			long[] values = new long[1];
+			int position = TransactionContextCodec.readVarLong(byteArray, 1, values, 0);
+			int size = (int) values[0];
+			if (size < 0 || size > byteArray.length) {
+				throw new IOException("Malformed batch response!");
+			}
+
+			int[] codes = new int[size];
+			for (int i = 0; i < size; i++) {
+				position = TransactionContextCodec.readVarLong(byteArray, position, values, 0);
+				codes[i] = (int) values[0];
+			}
+			return codes;
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Incomplete batch response!", ex);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.TransactionParticipant;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server side of the batch coordinator requests, shared by the http coordinator controllers.
+ */
+public final class CoordinatorBatchHandler {
+	static final Logger logger = LoggerFactory.getLogger(CoordinatorBatchHandler.class);
+
+	/* the outcome of the transactions which were not completed, since the time budget of the request had run out. */
+	public static final int CODE_UNPROCESSED = XAException.XA_RETRY;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 1000L * 10;
+
+	private CoordinatorBatchHandler() {
+	}
+
+	public static boolean isBatchMethod(String methodName) {
+		return "commit".equals(methodName) || "rollback".equals(methodName) || "forget".equals(methodName);
+	}
+
+	public static List<Xid> createXids(String[] identifiers, XidFactory xidFactory) {
+		List<Xid> xids = new ArrayList<Xid>(identifiers.length);
+		for (int i = 0; i < identifiers.length; i++) {
+			byte[] byteArray = ByteUtils.stringToByteArray(identifiers[i]);
+			xids.add(xidFactory.createGlobalXid(byteArray));
+		}
+		return xids;
+	}
+
+	/**
+	 * Completes the transactions one by one, the outcome of each is either XA_OK or the error code of its failure. Once
+	 * timeoutMillis (DEFAULT_TIMEOUT_MILLIS if not positive) has elapsed, the remaining transactions are left alone and
+	 * reported as CODE_UNPROCESSED, so that the response arrives before the client gives up on the request.
+	 */
+	public static int[] completeBatch(TransactionParticipant coordinator, String methodName, boolean onePhase,
+			List<Xid> xids, long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + (timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS);
+		int[] codes = new int[xids.size()];
+		for (int i = 0; i < xids.size(); i++) {
+			Xid xid = xids.get(i);
+			if (System.currentTimeMillis() >= deadline) {
+				logger.warn("Batch request({}) timed out, {} of {} transactions were not completed.", methodName,
+						xids.size() - i, xids.size());
+				Arrays.fill(codes, i, codes.length, CODE_UNPROCESSED);
+				break;
+			}
+
+			try {
+				if ("commit".equals(methodName)) {
+					coordinator.commit(xid, onePhase);
+				} else if ("rollback".equals(methodName)) {
+					coordinator.rollback(xid);
+				} else {
+					coordinator.forget(xid);
+				}
+				codes[i] = XAResource.XA_OK;
+			} catch (XAException ex) {
+				logger.error("Error occurred while completing({}) transaction: {}.", methodName,
+						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()), ex);
+				codes[i] = ex.errorCode;
+			} catch (RuntimeException ex) {
+				logger.error("Error occurred while completing({}) transaction: {}.", methodName,
+						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()), ex);
+				codes[i] = XAException.XAER_RMERR;
+			}
+		}
+		return codes;
+	}
+
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the concurrent commit/rollback/forget requests sent to the same remote participant. Up to
+ * maxConcurrentFlushes callers send their own requests; while they are in flight, the requests of the other callers
+ * are queued, and once one of them completes, the first queued caller sends the queued requests in one batch request,
+ * and so on. A lone call is sent exactly as before. If a batch request fails as a whole (e.g. a read timeout), the
+ * outcome of its members is unknown, so each caller sends its own request again. The participant is given
+ * batchTimeoutMillis, which should stay well below the read timeout, to process a batch; the members it could not get
+ * to are reported as unprocessed, and only those are sent again.
+ */
+public final class RemoteCoordinatorBatcher {
+	static final Logger logger = LoggerFactory.getLogger(RemoteCoordinatorBatcher.class);
+	private static final RemoteCoordinatorBatcher instance = new RemoteCoordinatorBatcher();
+
+	private volatile boolean enabled = true;
+	private volatile int maxBatchSize = 256;
+	private volatile int maxConcurrentFlushes = 4;
+	private volatile long unsupportedRetryMillis = 1000L * 60 * 5;
+	private volatile long batchTimeoutMillis = CoordinatorBatchHandler.DEFAULT_TIMEOUT_MILLIS;
+
+	private final ConcurrentMap<String, BatchGroup> groups = new ConcurrentHashMap<String, BatchGroup>();
+	private final Map<String, Long> unsupportedMap = new ConcurrentHashMap<String, Long>();
+
+	private RemoteCoordinatorBatcher() {
+		if (instance != null) {
+			throw new IllegalStateException();
+		}
+	}
+
+	public static RemoteCoordinatorBatcher getInstance() {
+		return instance;
+	}
+
+	public interface BatchInvoker {
+
+		public void invoke(String method, boolean onePhase, Xid xid) throws XAException;
+
+		/* the XA outcome of each xid, in the same order; null if the participant does not support batch requests. */
+		public int[] invokeBatch(String method, boolean onePhase, List<Xid> xids, long timeoutMillis)
+				throws XAException;
+
+	}
+
+	public void execute(String identifier, String method, boolean onePhase, Xid xid, BatchInvoker invoker)
+			throws XAException {
+		if (this.enabled == false || identifier == null || this.isBatchSupported(identifier) == false) {
+			invoker.invoke(method, onePhase, xid);
+			return;
+		}
+
+		String groupKey = String.format("%s/%s/%s", identifier, method, onePhase);
+		BatchGroup group = this.groups.get(groupKey);
+		if (group == null) {
+			BatchGroup created = new BatchGroup();
+			BatchGroup existed = this.groups.putIfAbsent(groupKey, created);
+			group = existed == null ? created : existed;
+		}
+
+		BatchEntry entry = new BatchEntry();
+		entry.xid = xid;
+
+		boolean interrupted = false;
+		synchronized (group) {
+			group.pending.add(entry);
+			if (group.flushers < this.maxConcurrentFlushes) {
+				group.flushers++;
+				entry.leader = true;
+			}
+		}
+
+		while (true) {
+			List<BatchEntry> batch = null;
+			synchronized (group) {
+				while (entry.completed == false && entry.leader == false) {
+					try {
+						group.wait();
+					} catch (InterruptedException ex) {
+						interrupted = true; // the request has been queued, its outcome is still required
+					}
+				}
+
+				if (entry.leader) {
+					entry.leader = false;
+					batch = new ArrayList<BatchEntry>();
+					while (group.pending.isEmpty() == false && batch.size() < this.maxBatchSize) {
+						batch.add(group.pending.removeFirst());
+					}
+					if (batch.isEmpty()) {
+						group.flushers--; // the entry has been taken by another flush
+					}
+				}
+			}
+
+			if (batch == null) {
+				break;
+			} else if (batch.isEmpty()) {
+				continue;
+			}
+
+			try {
+				this.flush(identifier, method, onePhase, batch, invoker);
+			} finally {
+				synchronized (group) {
+					for (int i = 0; i < batch.size(); i++) {
+						batch.get(i).completed = true;
+					}
+
+					BatchEntry successor = null;
+					Iterator<BatchEntry> itr = group.pending.iterator();
+					while (successor == null && itr.hasNext()) {
+						BatchEntry element = itr.next();
+						successor = element.leader ? null : element;
+					}
+
+					if (successor == null) {
+						group.flushers--;
+					} else {
+						successor.leader = true;
+					}
+					group.notifyAll();
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (entry.fallback) {
+			invoker.invoke(method, onePhase, xid);
+		} else if (entry.error != null) {
+			throw entry.error;
+		}
+	}
+
+	private void flush(String identifier, String method, boolean onePhase, List<BatchEntry> batch, BatchInvoker invoker) {
+		if (batch.size() == 1) {
+			BatchEntry entry = batch.get(0);
+			try {
+				invoker.invoke(method, onePhase, entry.xid);
+			} catch (XAException ex) {
+				entry.error = ex;
+			} catch (RuntimeException ex) {
+				XAException error = new XAException(XAException.XAER_RMERR);
+				error.initCause(ex);
+				entry.error = error;
+			}
+			return;
+		}
+
+		List<Xid> xids = new ArrayList<Xid>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			xids.add(batch.get(i).xid);
+		}
+
+		int[] codes = null;
+		try {
+			codes = invoker.invokeBatch(method, onePhase, xids, this.batchTimeoutMillis);
+		} catch (Exception ex) {
+			logger.warn("Error occurred while sending batch request to {}, sending them individually.", identifier, ex);
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).fallback = true;
+			}
+			return;
+		}
+
+		if (codes == null) {
+			logger.info("Participant {} does not support batch requests, sending them individually.", identifier);
+			this.unsupportedMap.put(identifier, System.currentTimeMillis() + this.unsupportedRetryMillis);
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).fallback = true;
+			}
+		} else if (codes.length != batch.size()) {
+			logger.error("Participant {} returned {} outcomes for a batch of {} requests.", identifier, codes.length,
+					batch.size());
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).fallback = true;
+			}
+		} else {
+			for (int i = 0; i < batch.size(); i++) {
+				BatchEntry entry = batch.get(i);
+				if (codes[i] == CoordinatorBatchHandler.CODE_UNPROCESSED) {
+					entry.fallback = true; // not attempted by the participant
+				} else {
+					entry.error = codes[i] == XAResource.XA_OK ? null : new XAException(codes[i]);
+				}
+			}
+		}
+	}
+
+	private boolean isBatchSupported(String identifier) {
+		Long retryAt = this.unsupportedMap.get(identifier);
+		if (retryAt == null) {
+			return true;
+		} else if (System.currentTimeMillis() < retryAt) {
+			return false;
+		}
+
+		this.unsupportedMap.remove(identifier);
+		return true;
+	}
+
+	static class BatchGroup {
+		final LinkedList<BatchEntry> pending = new LinkedList<BatchEntry>();
+		int flushers;
+	}
+
+	static class BatchEntry {
+		Xid xid;
+		boolean leader;
+		boolean completed;
+		boolean fallback;
+		XAException error;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public int getMaxConcurrentFlushes() {
+		return maxConcurrentFlushes;
+	}
+
+	public void setMaxConcurrentFlushes(int maxConcurrentFlushes) {
+		this.maxConcurrentFlushes = maxConcurrentFlushes;
+	}
+
+	public long getBatchTimeoutMillis() {
+		return batchTimeoutMillis;
+	}
+
+	public void setBatchTimeoutMillis(long batchTimeoutMillis) {
+		this.batchTimeoutMillis = batchTimeoutMillis;
+	}
+
+	public long getUnsupportedRetryMillis() {
+		return unsupportedRetryMillis;
+	}
+
+	public void setUnsupportedRetryMillis(long unsupportedRetryMillis) {
+		this.unsupportedRetryMillis = unsupportedRetryMillis;
+	}
+
+}
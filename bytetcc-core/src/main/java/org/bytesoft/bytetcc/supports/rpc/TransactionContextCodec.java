@@ -0,0 +1,363 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.TransactionContext;
+import org.bytesoft.transaction.remote.RemoteAddr;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+
+/**
+ * Compact binary encoding of the propagated transaction context, which replaces the java serialization on the rpc path:
+ * 
+ * <pre>
+ * version(1) | flags(1) | formatId(4) | gtrid-length(1) | gtrid | bqual-length(1) | bqual | createdTime(varint) | expiredTime(varint)
+ * </pre>
+ * 
+ * The version byte never equals the first byte of a java serialization stream (0xAC), so that the decoder accepts both.
+ * A node only sends the compact encoding to the peers which have announced to support it, see
+ * {@link #isCompactSupported(String)}.
+ * <p>
+ * Since version 2 a response may carry the delta against the context of the request instead, which is a single
+ * "unchanged" marker in most cases:
+ * 
+ * <pre>
+ * version(1) | mask(1) | [flags(1)] | [expiredTime(varint)]
+ * </pre>
+ */
+public final class TransactionContextCodec {
+	/* the highest version this node is able to decode, announced to the peers. */
+	public static final byte VERSION = 0x2;
+
+	static final byte FORMAT_FULL = 0x1;
+	static final byte FORMAT_DELTA = 0x2;
+
+	static final int DELTA_FLAGS = 0x1;
+	static final int DELTA_EXPIRED_TIME = 0x2;
+
+	static final int FLAG_COMPENSABLE = 0x1;
+	static final int FLAG_STATEFULLY = 0x2;
+
+	static final int STREAM_MAGIC = 0xAC;
+	static final int MAX_ENCODED_LENGTH = 1 + 1 + 4 + (1 + 255) * 2 + 10 * 2;
+
+	/* a peer is forgotten unless it announces the codec again within PEER_EXPIRED_MILLIS. */
+	static final long PEER_EXPIRED_MILLIS = 1000L * 60 * 10;
+	static final int MAX_PEERS = 1024 * 4;
+
+	private static final Map<String, Long> peerMap = new ConcurrentHashMap<String, Long>();
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		protected byte[] initialValue() {
+			return new byte[MAX_ENCODED_LENGTH];
+		}
+	};
+
+	private TransactionContextCodec() {
+	}
+
+	public static byte[] serialize(TransactionContext transactionContext, boolean compact) throws IOException {
+		return compact ? encode(transactionContext) : SerializeUtils.serializeObject(transactionContext);
+	}
+
+	public static TransactionContext deserialize(byte[] byteArray, XidFactory xidFactory) throws IOException {
+		return deserialize(byteArray, null, xidFactory);
+	}
+
+	/* the base is the context sent with the request, which a delta response is applied to. */
+	public static TransactionContext deserialize(byte[] byteArray, TransactionContext base, XidFactory xidFactory)
+			throws IOException {
+		if (byteArray == null || byteArray.length == 0) {
+			return null;
+		} else if ((byteArray[0] & 0xFF) == STREAM_MAGIC) {
+			return (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		} else if (byteArray[0] == FORMAT_DELTA) {
+			return decodeDelta(byteArray, base);
+		} else {
+			return decode(byteArray, xidFactory);
+		}
+	}
+
+	/* the context of the response, as the delta against the context of the request if the peer supports it. */
+	public static byte[] serialize(TransactionContext transactionContext, TransactionContext base, String version)
+			throws IOException {
+		if (base != null && isDeltaSupported(version)) {
+			return encodeDelta(transactionContext, base);
+		}
+		return serialize(transactionContext, isVersionSupported(version));
+	}
+
+	/* the created time is not tracked, it is reset by every clone of the context and is never used by the consumer. */
+	public static byte[] encodeDelta(TransactionContext transactionContext, TransactionContext base) {
+		int flags = getFlags(transactionContext);
+		long expiredTime = transactionContext.getExpiredTime();
+
+		int mask = (flags != getFlags(base) ? DELTA_FLAGS : 0)
+				| (expiredTime != base.getExpiredTime() ? DELTA_EXPIRED_TIME : 0);
+
+		byte[] byteArray = new byte[1 + 1 + 1 + 10];
+		int position = 0;
+		byteArray[position++] = FORMAT_DELTA;
+		byteArray[position++] = (byte) mask;
+		if ((mask & DELTA_FLAGS) != 0) {
+			byteArray[position++] = (byte) flags;
+		}
+		if ((mask & DELTA_EXPIRED_TIME) != 0) {
+			position = writeVarLong(byteArray, position, expiredTime);
+		}
+		return Arrays.copyOf(byteArray, position);
+	}
+
+	public static TransactionContext decodeDelta(byte[] byteArray, TransactionContext base) throws IOException {
+		if (base == null) {
+			throw new IOException("The transaction context of the request is required to apply the delta!");
+		}
+
+		try {
+			int position = 1;
+			int mask = byteArray[position++] & 0xFF;
+
+			TransactionContext transactionContext = new TransactionContext();
+			transactionContext.setXid(base.getXid());
+			transactionContext.setCreatedTime(base.getCreatedTime());
+			transactionContext.setExpiredTime(base.getExpiredTime());
+			transactionContext.setCompensable(base.isCompensable());
+			transactionContext.setStatefully(base.isStatefully());
+
+			if ((mask & DELTA_FLAGS) != 0) {
+				int flags = byteArray[position++] & 0xFF;
+				transactionContext.setCompensable((flags & FLAG_COMPENSABLE) != 0);
+				transactionContext.setStatefully((flags & FLAG_STATEFULLY) != 0);
+			}
+			if ((mask & DELTA_EXPIRED_TIME) != 0) {
+				long[] values = new long[1];
+				position = readVarLong(byteArray, position, values, 0);
+				transactionContext.setExpiredTime(values[0]);
+			}
+			return transactionContext;
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Incomplete transaction context!", ex);
+		}
+	}
+
+	private static int getFlags(TransactionContext transactionContext) {
+		return (transactionContext.isCompensable() ? FLAG_COMPENSABLE : 0)
+				| (transactionContext.isStatefully() ? FLAG_STATEFULLY : 0);
+	}
+
+	public static byte[] encode(TransactionContext transactionContext) {
+		byte[] byteArray = new byte[MAX_ENCODED_LENGTH];
+		int length = encode(transactionContext, byteArray);
+		return Arrays.copyOf(byteArray, length);
+	}
+
+	/* the compact encoding as base64 text, for the transports which only carry string attachments. */
+	public static String encodeToString(TransactionContext transactionContext) {
+		byte[] byteArray = buffers.get();
+		int length = encode(transactionContext, byteArray);
+		ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(byteArray, 0, length));
+		return new String(encoded.array(), 0, encoded.remaining(), StandardCharsets.ISO_8859_1);
+	}
+
+	public static TransactionContext decodeFromString(String text, XidFactory xidFactory) throws IOException {
+		try {
+			return decode(Base64.getDecoder().decode(text), xidFactory);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Malformed transaction context!", ex);
+		}
+	}
+
+	/* encodes into the specified array, which must be at least MAX_ENCODED_LENGTH long, returns the length. */
+	static int encode(TransactionContext transactionContext, byte[] byteArray) {
+		TransactionXid xid = transactionContext.getXid();
+		byte[] globalTransactionId = xid.getGlobalTransactionId();
+		byte[] branchQualifier = xid.getBranchQualifier();
+		branchQualifier = branchQualifier == null ? new byte[0] : branchQualifier;
+
+		int flags = getFlags(transactionContext);
+
+		int position = 0;
+		byteArray[position++] = FORMAT_FULL;
+		byteArray[position++] = (byte) flags;
+		position = writeInt(byteArray, position, xid.getFormatId());
+		byteArray[position++] = (byte) globalTransactionId.length;
+		System.arraycopy(globalTransactionId, 0, byteArray, position, globalTransactionId.length);
+		position += globalTransactionId.length;
+		byteArray[position++] = (byte) branchQualifier.length;
+		System.arraycopy(branchQualifier, 0, byteArray, position, branchQualifier.length);
+		position += branchQualifier.length;
+		position = writeVarLong(byteArray, position, transactionContext.getCreatedTime());
+		position = writeVarLong(byteArray, position, transactionContext.getExpiredTime());
+
+		return position;
+	}
+
+	public static TransactionContext decode(byte[] byteArray, XidFactory xidFactory) throws IOException {
+		try {
+			int position = 0;
+			byte version = byteArray[position++];
+			if (version != FORMAT_FULL) {
+				throw new IOException(String.format("Unsupported transaction context version: %s!", version));
+			}
+
+			int flags = byteArray[position++] & 0xFF;
+			int formatId = readInt(byteArray, position);
+			position += 4;
+			byte[] globalTransactionId = new byte[byteArray[position++] & 0xFF];
+			System.arraycopy(byteArray, position, globalTransactionId, 0, globalTransactionId.length);
+			position += globalTransactionId.length;
+			byte[] branchQualifier = new byte[byteArray[position++] & 0xFF];
+			System.arraycopy(byteArray, position, branchQualifier, 0, branchQualifier.length);
+			position += branchQualifier.length;
+
+			long[] values = new long[2];
+			position = readVarLong(byteArray, position, values, 0);
+			position = readVarLong(byteArray, position, values, 1);
+
+			TransactionXid globalXid = xidFactory.createGlobalXid(globalTransactionId);
+			TransactionXid xid = branchQualifier.length == 0 ? globalXid
+					: xidFactory.createBranchXid(globalXid, branchQualifier);
+			if (xid.getFormatId() != formatId) {
+				throw new IOException(String.format("Unsupported xid format: %s!", formatId));
+			}
+
+			TransactionContext transactionContext = new TransactionContext();
+			transactionContext.setXid(xid);
+			transactionContext.setCompensable((flags & FLAG_COMPENSABLE) != 0);
+			transactionContext.setStatefully((flags & FLAG_STATEFULLY) != 0);
+			transactionContext.setCreatedTime(values[0]);
+			transactionContext.setExpiredTime(values[1]);
+			return transactionContext;
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Incomplete transaction context!", ex);
+		}
+	}
+
+	private static int writeInt(byte[] byteArray, int position, int value) {
+		byteArray[position] = (byte) (value >>> 24);
+		byteArray[position + 1] = (byte) (value >>> 16);
+		byteArray[position + 2] = (byte) (value >>> 8);
+		byteArray[position + 3] = (byte) value;
+		return position + 4;
+	}
+
+	private static int readInt(byte[] byteArray, int position) {
+		return ((byteArray[position] & 0xFF) << 24) | ((byteArray[position + 1] & 0xFF) << 16)
+				| ((byteArray[position + 2] & 0xFF) << 8) | (byteArray[position + 3] & 0xFF);
+	}
+
+	static int writeVarLong(byte[] byteArray, int position, long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0) {
+			byteArray[position++] = (byte) ((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		byteArray[position++] = (byte) remaining;
+		return position;
+	}
+
+	/* reads a varint into values[index], returns the position following it. */
+	static int readVarLong(byte[] byteArray, int position, long[] values, int index) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte element = byteArray[position++];
+			value |= (long) (element & 0x7F) << shift;
+			if ((element & 0x80) == 0) {
+				values[index] = value;
+				return position;
+			}
+		}
+		throw new IOException("Malformed varint!");
+	}
+
+	/* whether the codec version announced by a peer (null if none) is able to decode the compact encoding. */
+	public static boolean isVersionSupported(String version) {
+		return parseVersion(version) >= FORMAT_FULL;
+	}
+
+	public static boolean isDeltaSupported(String version) {
+		return parseVersion(version) >= FORMAT_DELTA;
+	}
+
+	private static int parseVersion(String version) {
+		String value = StringUtils.trimToNull(version);
+		if (value == null) {
+			return 0;
+		}
+
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
+	/* the peers are keyed by address, since the identifier of a target is not always known before the first response. */
+	public static String getPeerKey(String identifier) {
+		RemoteAddr remoteAddr = StringUtils.isBlank(identifier) ? null : CommonUtils.getRemoteAddr(identifier);
+		return remoteAddr == null ? null : getPeerKey(remoteAddr.getServerHost(), remoteAddr.getServerPort());
+	}
+
+	public static String getPeerKey(String host, int port) {
+		return StringUtils.isBlank(host) || port <= 0 ? null : host + ":" + port;
+	}
+
+	public static boolean isCompactSupported(String peerKey) {
+		Long expireAt = peerKey == null ? null : peerMap.get(peerKey);
+		return expireAt != null && expireAt > System.currentTimeMillis();
+	}
+
+	public static void setCompactSupported(String peerKey, boolean supported) {
+		if (peerKey == null) {
+			return;
+		} else if (supported == false) {
+			peerMap.remove(peerKey);
+			return;
+		}
+
+		long current = System.currentTimeMillis();
+		peerMap.put(peerKey, current + PEER_EXPIRED_MILLIS);
+		if (peerMap.size() > MAX_PEERS) {
+			evictPeers(current);
+		}
+	}
+
+	/* drops the expired peers, or all of them if there are still too many: they fall back to the full encoding. */
+	private static synchronized void evictPeers(long current) {
+		for (Iterator<Map.Entry<String, Long>> itr = peerMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Long> entry = itr.next();
+			if (entry.getValue() <= current) {
+				itr.remove();
+			}
+		}
+
+		if (peerMap.size() > MAX_PEERS) {
+			peerMap.clear();
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ package org.bytesoft.bytetcc.work;
 
 import javax.resource.spi.work.Work;
 
+import org.bytesoft.bytetcc.TransactionRecoveryImpl;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.transaction.TransactionRecovery;
@@ -29,13 +30,24 @@ public class CompensableWork implements Work, CompensableBeanFactoryAware {
 	static final long SECOND_MILLIS = 1000L;
 	private long stopTimeMillis = -1;
 	private long delayOfStoping = SECOND_MILLIS * 15;
+	/**
+	 * If specified, the initial delay of the recovery of an error transaction (the schedule's initialDelayMillis). It is
+	 * also the interval between the recovery rounds if the recovery has no schedule.
+	 */
 	private long recoveryInterval = SECOND_MILLIS * 60;
+	private boolean recoveryIntervalSpecified;
+	private final WorkCadence recoveryCadence = new WorkCadence(SECOND_MILLIS * 60, SECOND_MILLIS * 5, SECOND_MILLIS * 300);
+	private int lastRecoveryTotal;
 
 	private volatile boolean initialized = false;
 
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 
+	public CompensableWork() {
+		this.recoveryCadence.setFailureBackoff(false); // failed transactions are backed off one by one by the schedule
+	}
+
 	private void initializeIfNecessary() {
 		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
 		if (this.initialized == false) {
@@ -53,6 +65,10 @@ public class CompensableWork implements Work, CompensableBeanFactoryAware {
 
 	public void run() {
 		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		if (this.recoveryIntervalSpecified && TransactionRecoveryImpl.class.isInstance(compensableRecovery)) {
+			TransactionRecoveryImpl transactionRecovery = (TransactionRecoveryImpl) compensableRecovery;
+			transactionRecovery.getRecoverySchedule().setInitialDelayMillis(this.recoveryInterval);
+		} // end-if (this.recoveryIntervalSpecified && TransactionRecoveryImpl.class.isInstance(compensableRecovery))
 
 		this.initializeIfNecessary();
 
@@ -62,21 +78,50 @@ public class CompensableWork implements Work, CompensableBeanFactoryAware {
 
 			long current = System.currentTimeMillis();
 			if (current >= nextRecoveryTime) {
-				nextRecoveryTime = current + this.recoveryInterval;
-
+				long interval = this.recoveryInterval;
 				try {
 					compensableRecovery.timingRecover();
+					interval = this.calculateRecoveryInterval(compensableRecovery);
 				} catch (SecurityException rex) {
 					logger.debug("Only the master node can perform the recovery operation!");
 				} catch (RuntimeException rex) {
 					logger.error(rex.getMessage(), rex);
+					interval = this.recoveryCadence.getIntervalMillis();
 				}
+				nextRecoveryTime = System.currentTimeMillis() + interval;
 			}
 
 			this.waitForMillis(100L);
 		} // end-while (this.currentActive())
 	}
 
+	private long calculateRecoveryInterval(TransactionRecovery compensableRecovery) {
+		if (TransactionRecoveryImpl.class.isInstance(compensableRecovery) == false) {
+			return this.recoveryInterval;
+		}
+
+		TransactionRecoveryImpl transactionRecovery = (TransactionRecoveryImpl) compensableRecovery;
+		int total = transactionRecovery.getLastRecoveryTotal();
+		int growth = Math.max(0, total - this.lastRecoveryTotal);
+		this.lastRecoveryTotal = total;
+
+		long nextTime = System.currentTimeMillis() + this.recoveryCadence.getIntervalMillis();
+		int backlog = transactionRecovery.getRecoverySchedule().getDueCount(nextTime);
+
+		long interval = this.recoveryCadence.next(backlog, transactionRecovery.getLastRecoverySuccess(),
+				transactionRecovery.getLastRecoveryFailure(), growth);
+
+		long nextDueTime = transactionRecovery.getRecoverySchedule().getNextDueTime();
+		if (nextDueTime > 0) {
+			long dueInterval = nextDueTime - System.currentTimeMillis();
+			interval = Math.max(this.recoveryCadence.getMinIntervalMillis(), Math.min(interval, dueInterval));
+		} // end-if (nextDueTime > 0)
+
+		logger.debug("recovery-cadence: decision= {}, backlog= {}, growth= {}, interval= {} ms",
+				this.recoveryCadence.getLastDecision(), backlog, growth, interval);
+		return interval;
+	}
+
 	private void waitForMillis(long millis) {
 		try {
 			Thread.sleep(millis);
@@ -103,6 +148,27 @@ public class CompensableWork implements Work, CompensableBeanFactoryAware {
 
 	public void setRecoveryInterval(long recoveryInterval) {
 		this.recoveryInterval = recoveryInterval;
+		this.recoveryIntervalSpecified = true;
+	}
+
+	public long getMinRecoveryInterval() {
+		return this.recoveryCadence.getMinIntervalMillis();
+	}
+
+	public void setMinRecoveryInterval(long minRecoveryInterval) {
+		this.recoveryCadence.setMinIntervalMillis(minRecoveryInterval);
+	}
+
+	public long getMaxRecoveryInterval() {
+		return this.recoveryCadence.getMaxIntervalMillis();
+	}
+
+	public void setMaxRecoveryInterval(long maxRecoveryInterval) {
+		this.recoveryCadence.setMaxIntervalMillis(maxRecoveryInterval);
+	}
+
+	public WorkCadence getRecoveryCadence() {
+		return this.recoveryCadence;
 	}
 
 	public void setDelayOfStoping(long delayOfStoping) {
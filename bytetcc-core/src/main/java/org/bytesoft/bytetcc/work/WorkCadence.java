@@ -0,0 +1,167 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.work;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interval controller of a background work. After every round the work reports what it has measured, and the next
+ * interval is derived from it within [minIntervalMillis, maxIntervalMillis]:
+ * <ul>
+ * <li>mostly failures: back off, retrying an unavailable resource faster only adds load (unless failureBackoff is
+ * disabled, e.g. when the items are already backed off one by one);</li>
+ * <li>pending backlog or growing log: speed up;</li>
+ * <li>nothing to do: slow down.</li>
+ * </ul>
+ */
+public class WorkCadence {
+	public static final String DECISION_BACKOFF = "backoff";
+	public static final String DECISION_ACCELERATE = "accelerate";
+	public static final String DECISION_DECELERATE = "decelerate";
+	public static final String DECISION_HOLD = "hold";
+
+	private long minIntervalMillis;
+	private long maxIntervalMillis;
+	private double failureRatioThreshold = 0.5;
+	private boolean failureBackoff = true;
+
+	private volatile long intervalMillis;
+	private volatile String lastDecision = DECISION_HOLD;
+	private volatile long lastBacklog;
+	private volatile long lastGrowth;
+	private volatile double lastFailureRatio;
+
+	private final AtomicLong backoffCount = new AtomicLong();
+	private final AtomicLong accelerateCount = new AtomicLong();
+	private final AtomicLong decelerateCount = new AtomicLong();
+	private final AtomicLong holdCount = new AtomicLong();
+
+	public WorkCadence(long intervalMillis, long minIntervalMillis, long maxIntervalMillis) {
+		this.intervalMillis = intervalMillis;
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * @param backlog the number of items still waiting to be handled.
+	 * @param success the number of items handled successfully in this round.
+	 * @param failure the number of items failed in this round.
+	 * @param growth the number of items added since the previous round.
+	 * @return the interval before the next round.
+	 */
+	public synchronized long next(long backlog, long success, long failure, long growth) {
+		long handled = success + failure;
+		double failureRatio = handled == 0 ? 0 : (double) failure / handled;
+
+		long interval = this.intervalMillis;
+		String decision = null;
+		if (this.failureBackoff && failure > 0 && failureRatio >= this.failureRatioThreshold) {
+			interval = interval * 2;
+			decision = DECISION_BACKOFF;
+			this.backoffCount.incrementAndGet();
+		} else if (backlog > 0 || growth > 0) {
+			interval = interval / 2;
+			decision = DECISION_ACCELERATE;
+			this.accelerateCount.incrementAndGet();
+		} else if (handled == 0) {
+			interval = interval * 2;
+			decision = DECISION_DECELERATE;
+			this.decelerateCount.incrementAndGet();
+		} else {
+			decision = DECISION_HOLD;
+			this.holdCount.incrementAndGet();
+		}
+
+		this.intervalMillis = Math.max(this.minIntervalMillis, Math.min(interval, this.maxIntervalMillis));
+		this.lastDecision = decision;
+		this.lastBacklog = backlog;
+		this.lastGrowth = growth;
+		this.lastFailureRatio = failureRatio;
+
+		return this.intervalMillis;
+	}
+
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	public String getLastDecision() {
+		return lastDecision;
+	}
+
+	public long getLastBacklog() {
+		return lastBacklog;
+	}
+
+	public long getLastGrowth() {
+		return lastGrowth;
+	}
+
+	public double getLastFailureRatio() {
+		return lastFailureRatio;
+	}
+
+	public long getBackoffCount() {
+		return this.backoffCount.get();
+	}
+
+	public long getAccelerateCount() {
+		return this.accelerateCount.get();
+	}
+
+	public long getDecelerateCount() {
+		return this.decelerateCount.get();
+	}
+
+	public long getHoldCount() {
+		return this.holdCount.get();
+	}
+
+	public long getMinIntervalMillis() {
+		return minIntervalMillis;
+	}
+
+	public synchronized void setMinIntervalMillis(long minIntervalMillis) {
+		this.minIntervalMillis = minIntervalMillis;
+		this.intervalMillis = Math.max(this.intervalMillis, minIntervalMillis);
+	}
+
+	public long getMaxIntervalMillis() {
+		return maxIntervalMillis;
+	}
+
+	public synchronized void setMaxIntervalMillis(long maxIntervalMillis) {
+		this.maxIntervalMillis = maxIntervalMillis;
+		this.intervalMillis = Math.min(this.intervalMillis, maxIntervalMillis);
+	}
+
+	public double getFailureRatioThreshold() {
+		return failureRatioThreshold;
+	}
+
+	public void setFailureRatioThreshold(double failureRatioThreshold) {
+		this.failureRatioThreshold = failureRatioThreshold;
+	}
+
+	public boolean isFailureBackoff() {
+		return failureBackoff;
+	}
+
+	public void setFailureBackoff(boolean failureBackoff) {
+		this.failureBackoff = failureBackoff;
+	}
+
+}
@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
@@ -27,11 +29,9 @@ import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.transaction.xa.Xid;
 
@@ -53,8 +53,15 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 	static final int CONSTANTS_RES_ID_MAX_SIZE = 31;
 	static final int CONSTANTS_RECORD_SIZE = CONSTANTS_RES_ID_MAX_SIZE + XidFactory.GLOBAL_TRANSACTION_LENGTH
 			+ XidFactory.BRANCH_QUALIFIER_LENGTH;
+	static final int CONSTANTS_RECORD_UNIT = CONSTANTS_RECORD_SIZE + 1;
+	static final int CONSTANTS_RES_ID_OFFSET = 1 + XidFactory.GLOBAL_TRANSACTION_LENGTH + XidFactory.BRANCH_QUALIFIER_LENGTH;
+	static final int CONSTANTS_MIN_INCREMENT = CONSTANTS_RECORD_UNIT * 1024 * 4;
+	static final int CONSTANTS_MAX_INCREMENT = CONSTANTS_RECORD_UNIT * 1024 * 256;
+	/* a segment is mapped as a whole and addressed by int offsets, it must not grow beyond Integer.MAX_VALUE. */
+	static final int CONSTANTS_MAX_SEGMENT_SIZE = Integer.MAX_VALUE - CONSTANTS_MAX_INCREMENT;
 
 	private final String resourceName;
+	private final long sequence;
 
 	private CompensableBeanFactory beanFactory;
 	private String endpoint;
@@ -64,12 +71,36 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 	private RandomAccessFile raf;
 	private FileChannel channel;
 	private MappedByteBuffer header;
+	private MappedByteBuffer content;
 
-	private final List<CleanupRecord> recordList = new ArrayList<CleanupRecord>();
-	private final Map<String, Set<CleanupRecord>> recordMap = new HashMap<String, Set<CleanupRecord>>();
+	/* compact index of the records in [CONSTANTS_START_INDEX, endIndex): flag and resource index per record. */
+	private int recordCount;
+	private byte[] recordFlags = new byte[1024];
+	private int[] recordResources = new int[1024];
+	private int[] pendingCounts = new int[8];
+	private int pendingCount;
 
-	public CleanupFile(String resourceName) {
-		this.resourceName = resourceName;
+	private final List<String> resourceList = new ArrayList<String>();
+	private final List<byte[]> resourceKeyList = new ArrayList<byte[]>();
+	private final Map<String, Integer> resourceIndexMap = new HashMap<String, Integer>();
+
+	public CleanupFile(long sequence) {
+		this.sequence = sequence;
+		this.resourceName = String.format("cleanup-%s.log", sequence);
+	}
+
+	/* the sequence of the segment named cleanup-<sequence>.log, or -1 if the name does not match. */
+	static long parseSequence(String fileName) {
+		if (fileName.matches("cleanup-\\d{1,18}\\.log") == false) {
+			return -1;
+		}
+		return Long.parseLong(fileName.substring("cleanup-".length(), fileName.length() - ".log".length()));
+	}
+
+	static File getDefaultDirectory(String endpoint) {
+		String address = StringUtils.trimToEmpty(endpoint);
+		String dirName = address.replaceAll("[^a-zA-Z0-9]", "_");
+		return new File(String.format("bytetcc/%s", dirName));
 	}
 
 	public byte initialize(boolean master) {
@@ -91,6 +122,7 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 			this.raf.setLength(this.sizeOfRaf);
 			this.header = this.channel.map(MapMode.READ_WRITE, 0, CONSTANTS_START_INDEX);
 			this.header.put((ByteBuffer) byteBuffer.rewind());
+			this.content = this.channel.map(MapMode.READ_WRITE, 0, this.sizeOfRaf);
 
 			return masterFlag;
 		} catch (FileNotFoundException ex) {
@@ -102,9 +134,7 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 
 	private void initializeDirectoryIfNecessary() {
 		if (this.directory == null) {
-			String address = StringUtils.trimToEmpty(this.endpoint);
-			String dirName = address.replaceAll("[^a-zA-Z0-9]", "_");
-			this.directory = new File(String.format("bytetcc/%s", dirName));
+			this.directory = getDefaultDirectory(this.endpoint);
 		}
 
 		if (this.directory.exists() == false) {
@@ -217,128 +247,102 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		}
 	}
 
+	/**
+	 * Scans the mapped records in bulk. Only the flag and the resource index of each record are kept in memory, the xids
+	 * are read from the mapped file when the records are forgotten.
+	 */
 	public void startupRecover() throws RuntimeException {
-		XidFactory xidFactory = this.beanFactory.getTransactionXidFactory();
-
-		for (int current = CONSTANTS_START_INDEX; current < this.endIndex; current = current + CONSTANTS_RECORD_SIZE + 1) {
-			ByteBuffer buffer = ByteBuffer.allocate(1 + CONSTANTS_RECORD_SIZE);
-
-			try {
-				this.channel.position(current);
-				this.channel.read(buffer);
-				buffer.flip();
-			} catch (Exception ex) {
-				logger.error("Error occurred while accessing file {}!", this.resourceName, ex);
-				throw new IllegalStateException();
+		int total = (this.endIndex - CONSTANTS_START_INDEX) / CONSTANTS_RECORD_UNIT;
+		this.ensureRecordCapacity(total);
+
+		for (int index = 0; index < total; index++) {
+			int position = CONSTANTS_START_INDEX + index * CONSTANTS_RECORD_UNIT;
+			byte recordFlag = (byte) (this.content.get(position) & 0x1); // the forgotten flag is never persisted
+
+			this.recordFlags[index] = recordFlag;
+			if ((recordFlag & 0x1) == 0x1) {
+				int resourceIndex = this.getResourceIndex(position + CONSTANTS_RES_ID_OFFSET);
+				this.recordResources[index] = resourceIndex;
+				this.registerRecord(index);
+			} else {
+				this.recordResources[index] = -1;
 			}
-
-			byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
-			byte[] globalByteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
-			byte[] branchByteArray = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
-
-			byte recordFlag = buffer.get();
-			buffer.get(globalByteArray);
-			buffer.get(branchByteArray);
-			buffer.get(resourceByteArray);
-
-			TransactionXid globalXid = xidFactory.createGlobalXid(globalByteArray);
-			TransactionXid branchXid = xidFactory.createBranchXid(globalXid, branchByteArray);
-			String resourceId = StringUtils.trimToNull(new String(resourceByteArray));
-
-			CleanupRecord record = new CleanupRecord();
-			record.setStartIndex(current);
-			record.setXid(branchXid);
-			record.setRecordFlag(recordFlag);
-			record.setEnabled((recordFlag & 0x1) == 0x1);
-			record.setResource(resourceId);
-
-			this.recordList.add(record);
-			if (record.isEnabled()) {
-				this.registerRecord(record);
-			} // end-if (record.isEnabled())
 		}
+
+		this.recordCount = total;
 	}
 
 	public void timingCompress() throws RuntimeException {
-		LinkedList<CleanupRecord> removedList = new LinkedList<CleanupRecord>();
-
-		CleanupRecord lastEnabledRecord = null;
-		for (int current = CONSTANTS_START_INDEX; current < this.endIndex; current = current + CONSTANTS_RECORD_SIZE + 1) {
-			int index = (current - CONSTANTS_START_INDEX) / (CONSTANTS_RECORD_SIZE + 1);
-			CleanupRecord record = this.recordList.get(index);
-
-			int memoRecordFlag = record.getRecordFlag();
-			boolean memoEnabled = record.isEnabled();
-			boolean forgetFlag = (memoRecordFlag & 0x2) == 0x2;
-
-			if (memoEnabled && forgetFlag) {
-				this.delete(record); // change status & unRegister record
-				removedList.add(record);
+		int target = 0;
+		for (int index = 0; index < this.recordCount; index++) {
+			byte recordFlag = this.recordFlags[index];
+			boolean enabled = (recordFlag & 0x1) == 0x1;
+			boolean forgotten = (recordFlag & 0x2) == 0x2;
+
+			if (enabled && forgotten) {
+				this.delete(index);
 				continue;
-			} else if (memoEnabled == false) {
-				removedList.add(record);
-				this.unRegisterRecord(record); // unRegister record
+			} else if (enabled == false) {
 				continue;
 			}
 
-			CleanupRecord removedRecord = removedList.pollFirst();
-			if (removedRecord == null) {
-				lastEnabledRecord = record;
-				continue;
+			if (target != index) {
+				this.moveRecord(index, target);
 			}
 
-			removedRecord.setEnabled(record.isEnabled());
-			removedRecord.setRecordFlag(record.getRecordFlag());
-			removedRecord.setResource(record.getResource());
-			// removedRecord.setStartIndex(); // dont set startIndex
-			removedRecord.setXid(record.getXid());
-
-			this.forget(removedRecord);
-			this.delete(record);
-
-			removedList.add(record);
-
-			lastEnabledRecord = removedRecord;
+			target++;
 		} // end-for
 
-		int lastRecordEndIndex = lastEnabledRecord == null ? //
-				CONSTANTS_START_INDEX : lastEnabledRecord.getStartIndex() + CONSTANTS_RECORD_SIZE + 1;
-		this.updateEndIndex(lastRecordEndIndex);
+		this.updateEndIndex(CONSTANTS_START_INDEX + target * CONSTANTS_RECORD_UNIT);
+		this.truncate();
 	}
 
-	public void forget(CleanupRecord record) throws RuntimeException {
-		Xid xid = record.getXid();
-		String resourceId = record.getResource();
-
-		byte[] globalTransactionId = xid.getGlobalTransactionId();
-		byte[] branchQualifier = xid.getBranchQualifier();
-		byte[] keyByteArray = resourceId.getBytes();
-
-		byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
-		System.arraycopy(keyByteArray, 0, resourceByteArray, 0, keyByteArray.length);
-
-		ByteBuffer buffer = ByteBuffer.allocate(1 + CONSTANTS_RECORD_SIZE);
-		buffer.put((byte) record.getRecordFlag());
-
-		buffer.put(globalTransactionId);
-		buffer.put(branchQualifier);
-		buffer.put(resourceByteArray);
+	/* shrinks the file to the records left by the compression, the caller must make sure no one is reading it. */
+	private void truncate() {
+		if (this.endIndex == this.sizeOfRaf) {
+			return;
+		}
 
-		buffer.flip();
+		this.unmapQuietly(this.content);
+		this.content = null;
+		try {
+			this.raf.setLength(this.endIndex);
+			this.sizeOfRaf = this.endIndex;
+		} catch (IOException ex) {
+			logger.warn("Error occurred while truncating file: {}.", this.resourceName, ex);
+		} finally {
+			this.content = this.remap();
+		}
+	}
 
+	private MappedByteBuffer remap() {
 		try {
-			this.channel.position(record.getStartIndex());
-			buffer.rewind();
-			this.channel.write(buffer);
-			buffer.rewind();
-		} catch (Exception ex) {
+			return this.channel.map(MapMode.READ_WRITE, 0, this.sizeOfRaf);
+		} catch (IOException ex) {
 			throw new IllegalStateException(ex);
 		}
+	}
 
-		byte recordFlag = buffer.get();
-		buffer.rewind();
+	private void moveRecord(int source, int target) {
+		int sourcePosition = CONSTANTS_START_INDEX + source * CONSTANTS_RECORD_UNIT;
+		int targetPosition = CONSTANTS_START_INDEX + target * CONSTANTS_RECORD_UNIT;
 
-		this.registerRecord(buffer, recordFlag, record.getStartIndex());
+		ByteBuffer sourceBuffer = this.content.duplicate();
+		sourceBuffer.limit(sourcePosition + CONSTANTS_RECORD_UNIT);
+		sourceBuffer.position(sourcePosition + 1);
+
+		ByteBuffer targetBuffer = this.content.duplicate();
+		targetBuffer.position(targetPosition + 1);
+		targetBuffer.put(sourceBuffer);
+
+		// the target record is enabled before the source is deleted, forgetting a branch twice is harmless
+		this.content.put(targetPosition, this.recordFlags[source]);
+		this.content.put(sourcePosition, (byte) 0x0);
+
+		this.recordFlags[target] = this.recordFlags[source];
+		this.recordResources[target] = this.recordResources[source];
+		this.recordFlags[source] = 0x0;
+		this.recordResources[source] = -1;
 	}
 
 	public void forget(Xid xid, String resourceId) throws RuntimeException {
@@ -350,163 +354,253 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 			throw new IllegalStateException("The resource name is too long!");
 		}
 
-		byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
-		System.arraycopy(keyByteArray, 0, resourceByteArray, 0, keyByteArray.length);
-
-		ByteBuffer buffer = ByteBuffer.allocate(1 + CONSTANTS_RECORD_SIZE);
-		buffer.put((byte) 0x1);
-
-		buffer.put(globalTransactionId);
-		buffer.put(branchQualifier);
-		buffer.put(resourceByteArray);
-
-		buffer.flip();
+		int resourceIndex = this.getResourceIndex(resourceId);
 
-		this.invokeForget(xid, resourceId, buffer);
-	}
-
-	private void invokeForget(Xid xid, String resource, ByteBuffer buffer) throws IllegalStateException {
 		this.increaseCapacityIfNecessary();
 
-		int recordIndex = this.endIndex;
-		try {
-			this.channel.position(recordIndex);
-			buffer.rewind();
-			this.channel.write(buffer);
-			buffer.rewind();
-		} catch (Exception ex) {
-			throw new IllegalStateException(ex);
-		}
+		int position = this.endIndex;
+		int index = this.recordCount;
+		this.ensureRecordCapacity(index + 1);
 
-		byte recordFlag = buffer.get();
-		buffer.rewind();
+		ByteBuffer buffer = this.content.duplicate();
+		buffer.position(position + 1);
+		buffer.put(globalTransactionId);
+		buffer.put(branchQualifier);
+		buffer.put(this.resourceKeyList.get(resourceIndex));
+		this.content.put(position, (byte) 0x1);
 
-		this.registerRecord(buffer, recordFlag, recordIndex);
+		this.recordFlags[index] = 0x1;
+		this.recordResources[index] = resourceIndex;
+		this.registerRecord(index);
 
-		this.updateEndIndex(buffer.capacity() + this.endIndex); // update endIndex
+		this.updateEndIndex(position + CONSTANTS_RECORD_UNIT); // update endIndex
 	}
 
-	private void registerRecord(ByteBuffer buffer, int recordFlag, int position) throws RuntimeException {
+	/* the branch xid of the specified record, read from the mapped file. */
+	public Xid getXid(int index) {
 		XidFactory xidFactory = this.beanFactory.getTransactionXidFactory();
 
-		byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
 		byte[] globalByteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
 		byte[] branchByteArray = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
 
-		buffer.rewind();
-		buffer.get();
+		ByteBuffer buffer = this.content.duplicate();
+		buffer.position(CONSTANTS_START_INDEX + index * CONSTANTS_RECORD_UNIT + 1);
 		buffer.get(globalByteArray);
 		buffer.get(branchByteArray);
-		buffer.get(resourceByteArray);
 
 		TransactionXid globalXid = xidFactory.createGlobalXid(globalByteArray);
-		TransactionXid branchXid = xidFactory.createBranchXid(globalXid, branchByteArray);
-		String resourceId = StringUtils.trimToNull(new String(resourceByteArray));
-
-		int index = (position - CONSTANTS_START_INDEX) / (CONSTANTS_RECORD_SIZE + 1);
-		if (index < this.recordList.size()) {
-			CleanupRecord record = this.recordList.get(index);
-			// record.setStartIndex(position); // dont
-			record.setRecordFlag(recordFlag);
-			record.setEnabled((recordFlag & 0x1) == 0x1);
-			record.setXid(branchXid);
-			record.setResource(resourceId);
-
-			this.registerRecord(record);
-		} else if (index == this.recordList.size()) {
-			CleanupRecord record = new CleanupRecord();
-			record.setStartIndex(position);
-			record.setRecordFlag(recordFlag);
-			record.setEnabled((recordFlag & 0x1) == 0x1);
-			record.setXid(branchXid);
-			record.setResource(resourceId);
-
-			this.recordList.add(record);
-			this.registerRecord(record);
-		} else {
-			throw new IllegalStateException(String.format("Incorrect position: pos= %s, index= %s, size= %s.", position, index,
-					this.recordList.size()));
+		return xidFactory.createBranchXid(globalXid, branchByteArray);
+	}
+
+	/* marks the specified record as forgotten, it will be deleted by the next compression. */
+	public synchronized void markForgotten(int index) {
+		byte recordFlag = this.recordFlags[index];
+		if ((recordFlag & 0x1) == 0x1 && (recordFlag & 0x2) == 0) {
+			this.recordFlags[index] = (byte) (recordFlag | 0x2);
+			this.unRegisterRecord(index);
+		}
+	}
+
+	/**
+	 * Returns the indexes of the records which have not been forgotten yet, grouped by resource.
+	 */
+	public synchronized Map<String, int[]> getPendingRecords() {
+		int resources = this.resourceList.size();
+		int[][] indexArrays = new int[resources][];
+		int[] cursors = new int[resources];
+		for (int i = 0; i < resources; i++) {
+			indexArrays[i] = new int[this.pendingCounts[i]];
 		}
 
+		for (int index = 0; index < this.recordCount; index++) {
+			if (this.recordFlags[index] == 0x1) {
+				int resourceIndex = this.recordResources[index];
+				indexArrays[resourceIndex][cursors[resourceIndex]++] = index;
+			}
+		}
+
+		Map<String, int[]> pendingRecords = new LinkedHashMap<String, int[]>();
+		for (int i = 0; i < resources; i++) {
+			if (indexArrays[i].length > 0) {
+				pendingRecords.put(this.resourceList.get(i), indexArrays[i]);
+			}
+		}
+		return pendingRecords;
+	}
+
+	public synchronized int getPendingCount() {
+		return this.pendingCount;
 	}
 
-	private void registerRecord(CleanupRecord record) throws RuntimeException {
-		String resourceId = record.getResource();
+	private void registerRecord(int index) {
+		this.pendingCounts[this.recordResources[index]]++;
+		this.pendingCount++;
+	}
+
+	private void unRegisterRecord(int index) {
+		this.pendingCounts[this.recordResources[index]]--;
+		this.pendingCount--;
+	}
+
+	private int getResourceIndex(int position) {
+		for (int i = 0; i < this.resourceKeyList.size(); i++) {
+			byte[] keyByteArray = this.resourceKeyList.get(i);
+			boolean matched = true;
+			for (int j = 0; matched && j < CONSTANTS_RES_ID_MAX_SIZE; j++) {
+				matched = keyByteArray[j] == this.content.get(position + j);
+			}
+
+			if (matched) {
+				return i;
+			}
+		}
+
+		byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
+		ByteBuffer buffer = this.content.duplicate();
+		buffer.position(position);
+		buffer.get(resourceByteArray);
 
-		Set<CleanupRecord> records = this.recordMap.get(resourceId);
-		if (records == null) {
-			records = new HashSet<CleanupRecord>();
-			this.recordMap.put(resourceId, records);
+		return this.registerResource(StringUtils.trimToNull(new String(resourceByteArray)), resourceByteArray);
+	}
+
+	private int getResourceIndex(String resourceId) {
+		Integer resourceIndex = this.resourceIndexMap.get(resourceId);
+		if (resourceIndex != null) {
+			return resourceIndex;
 		}
 
-		records.add(record);
+		byte[] keyByteArray = resourceId.getBytes();
+		byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
+		System.arraycopy(keyByteArray, 0, resourceByteArray, 0, keyByteArray.length);
+		return this.registerResource(resourceId, resourceByteArray);
 	}
 
-	private void unRegisterRecord(CleanupRecord record) throws RuntimeException {
-		String resourceId = record.getResource();
+	private int registerResource(String resourceId, byte[] resourceByteArray) {
+		Integer resourceIndex = this.resourceIndexMap.get(resourceId);
+		if (resourceIndex != null) {
+			return resourceIndex; // the same resource padded differently
+		}
 
-		Set<CleanupRecord> records = this.recordMap.get(resourceId);
-		if (records != null && records.isEmpty() == false) {
-			records.remove(record);
-		} // end-if (records != null && records.isEmpty() == false)
+		int index = this.resourceList.size();
+		this.resourceList.add(resourceId);
+		this.resourceKeyList.add(resourceByteArray);
+		this.resourceIndexMap.put(resourceId, index);
+		if (index == this.pendingCounts.length) {
+			this.pendingCounts = Arrays.copyOf(this.pendingCounts, index * 2);
+		}
+		return index;
+	}
 
+	private void ensureRecordCapacity(int capacity) {
+		if (capacity > this.recordFlags.length) {
+			int length = Math.max(capacity, this.recordFlags.length * 3 / 2);
+			this.recordFlags = Arrays.copyOf(this.recordFlags, length);
+			this.recordResources = Arrays.copyOf(this.recordResources, length);
+		}
 	}
 
 	private void updateEndIndex(int position) {
 		this.endIndex = position;
+		this.recordCount = (position - CONSTANTS_START_INDEX) / CONSTANTS_RECORD_UNIT;
 		this.header.position(IDENTIFIER.length + 2 + 1 + 4);
 		this.header.putInt(position);
+	}
 
-		int recordUnit = CONSTANTS_RECORD_SIZE + 1;
-		int textLength = this.endIndex - CONSTANTS_START_INDEX;
-		int startIndex = textLength / recordUnit;
-
-		for (int index = this.recordList.size() - 1; index >= startIndex; index--) {
-			CleanupRecord record = this.recordList.remove(index);
-			if (record == null) {
-				continue;
-			} // end-if (record == null)
+	/* grows geometrically (4096 records at least, 256K records at most), so that the file is seldom remapped. */
+	private void increaseCapacityIfNecessary() {
+		if (this.endIndex < this.sizeOfRaf) {
+			return;
+		}
 
-			this.unRegisterRecord(record);
+		long incremental = Math.max(CONSTANTS_MIN_INCREMENT, Math.min(this.sizeOfRaf, CONSTANTS_MAX_INCREMENT));
+		long available = (Integer.MAX_VALUE - (long) this.sizeOfRaf) / CONSTANTS_RECORD_UNIT * CONSTANTS_RECORD_UNIT;
+		if (available < CONSTANTS_RECORD_UNIT) {
+			throw new IllegalStateException(String.format("The segment is full: %s.", this.resourceName));
+		}
 
-		} // end-for (int index = this.recordList.size() - 1; index >= startIndex; index--)
+		int sizeOfFile = (int) (this.sizeOfRaf + Math.min(incremental, available));
+		this.unmapQuietly(this.content); // the active segment is only accessed under the lock of CleanupWork
+		this.content = null;
+		try {
+			this.raf.setLength(sizeOfFile);
+			this.sizeOfRaf = sizeOfFile;
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		} finally {
+			this.content = this.remap();
+		}
+	}
 
+	private void delete(int index) throws RuntimeException {
+		this.content.put(CONSTANTS_START_INDEX + index * CONSTANTS_RECORD_UNIT, (byte) 0x0);
+		this.recordFlags[index] = 0x0;
+		this.recordResources[index] = -1;
 	}
 
-	private void increaseCapacityIfNecessary() {
-		if (this.endIndex == this.sizeOfRaf) {
-			int incremental = (CONSTANTS_RECORD_SIZE + 1) * 1024 * 4;
-			try {
-				this.raf.setLength(this.sizeOfRaf + incremental);
-				this.sizeOfRaf = this.sizeOfRaf + incremental;
-			} catch (IOException ex) {
-				throw new IllegalStateException(ex);
-			}
-		}
+	public void destroy() {
+		this.unmapQuietly(this.header);
+		this.unmapQuietly(this.content);
+		this.header = null;
+		this.content = null;
+
+		this.closeQuietly(this.channel);
+		this.closeQuietly(this.raf);
 	}
 
-	public void delete(CleanupRecord record) throws RuntimeException {
-		record.setEnabled(false);
-		record.setRecordFlag(0x0);
+	/* releases the mapping at once instead of on gc, otherwise the file can not be deleted on some platforms. */
+	private void unmapQuietly(MappedByteBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
 
 		try {
-			ByteBuffer buffer = ByteBuffer.allocate(1);
-			int startIndex = record.getStartIndex();
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method cleanMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); // jdk 9+
+			Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			cleanMethod.invoke(unsafeField.get(null), buffer);
+			return;
+		} catch (NoSuchMethodException ex) {
+			logger.debug(ex.getMessage());
+		} catch (Exception ex) {
+			logger.debug("Error occurred while unmapping file: {}.", this.resourceName, ex);
+			return;
+		}
 
-			this.channel.position(startIndex);
-			buffer.put((byte) 0x0);
-			buffer.flip();
-			this.channel.write(buffer);
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner"); // jdk 8
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method cleanMethod = cleaner.getClass().getMethod("clean");
+				cleanMethod.setAccessible(true);
+				cleanMethod.invoke(cleaner);
+			}
 		} catch (Exception ex) {
-			throw new IllegalStateException(ex);
+			logger.debug("Error occurred while unmapping file: {}.", this.resourceName, ex);
 		}
+	}
 
-		this.unRegisterRecord(record); // unRegister record
+	/* closes and deletes the segment, all of its records must have been forgotten. */
+	public void remove() {
+		this.destroy();
+
+		File resource = new File(this.directory, this.resourceName);
+		if (resource.exists() && resource.delete() == false) {
+			logger.warn("Error occurred while deleting file: {}.", resource);
+		}
 	}
 
-	public void destroy() {
-		this.closeQuietly(this.channel);
-		this.closeQuietly(this.raf);
+	public int getEndIndex() {
+		return this.endIndex;
+	}
+
+	public int getRecordCount() {
+		return this.recordCount;
+	}
+
+	public long getSequence() {
+		return this.sequence;
 	}
 
 	public void closeQuietly(Closeable closeable) {
@@ -519,10 +613,6 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		}
 	}
 
-	public Map<String, Set<CleanupRecord>> getRecordMap() {
-		return recordMap;
-	}
-
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
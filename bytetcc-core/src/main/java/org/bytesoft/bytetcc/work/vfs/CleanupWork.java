@@ -17,11 +17,20 @@ package org.bytesoft.bytetcc.work.vfs;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -34,6 +43,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
+import org.bytesoft.bytetcc.work.WorkCadence;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
@@ -41,9 +51,13 @@ import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Segmented cleanup log: the branches to be forgotten are appended to the active segment, which is sealed once it
+ * reaches the max segment size or the cleanup interval has elapsed. Sealed segments are cleaned up by this work, dropped
+ * once all of their records have been forgotten, and compressed once the ratio of their dead records is high enough.
+ */
 public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpointAware, CompensableBeanFactoryAware {
 	static final Logger logger = LoggerFactory.getLogger(CleanupWork.class);
-	static final byte[] IDENTIFIER = "org.bytesoft.bytetcc.resource.cleanup".getBytes();
 
 	static final long SECOND_MILLIS = 1000L;
 	static final int MAX_HANDLE_RECORDS = 200;
@@ -60,67 +74,88 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 	private boolean released;
 	private String endpoint;
 
-	private final CleanupFile resourceOne = new CleanupFile("cleanup-1.log");
-	private final CleanupFile resourceTwo = new CleanupFile("cleanup-2.log");
+	private int maxSegmentSize = 1024 * 1024 * 16;
+	private double compactDeadRatio = 0.5;
+	private int compactMinDeadRecords = 1024;
+
+	private long nextSequence = 1;
+	private CleanupFile active = null;
+	private final List<CleanupFile> segments = new ArrayList<CleanupFile>(); // sealed, the oldest first
+	private int sealedRecords;
+	private volatile boolean rolled;
 
-	private CleanupFile master = null;
-	private CleanupFile slaver = null;
+	private int forgetThreads = 4;
+	private int maxForgetRetries = 3;
+	private long forgetRetryDelayMillis = 200L;
+	private long targetForgetMillis = SECOND_MILLIS;
+	private int minForgetBatchSize = 100;
+	private int maxForgetBatchSize = 10000;
+	private ExecutorService executor;
+	/* adaptive forget batch size of each resource, each resource is cleaned up by one thread at a time. */
+	private final Map<String, Integer> batchSizeMap = new ConcurrentHashMap<String, Integer>();
+
+	private final WorkCadence cleanupCadence = new WorkCadence(SECOND_MILLIS * 30, SECOND_MILLIS * 5, SECOND_MILLIS * 120);
 
 	public void initialize() {
-		this.resourceOne.setDirectory(this.directory);
-		this.resourceOne.setBeanFactory(this.beanFactory);
-		this.resourceOne.setEndpoint(this.endpoint);
-
-		this.resourceTwo.setDirectory(this.directory);
-		this.resourceTwo.setBeanFactory(this.beanFactory);
-		this.resourceTwo.setEndpoint(this.endpoint);
-
-		byte masterFlagOne = this.resourceOne.initialize(true);
-		byte masterFlagTwo = this.resourceTwo.initialize(false);
-
-		if (masterFlagOne == 0x1 && masterFlagTwo == 0x0) {
-			this.master = this.resourceOne;
-			this.slaver = this.resourceTwo;
-		} else if (masterFlagOne == 0x0 && masterFlagTwo == 0x1) {
-			this.master = this.resourceTwo;
-			this.slaver = this.resourceOne;
-		} else if (masterFlagOne == 0x0 && masterFlagTwo == 0x0) {
-			throw new IllegalStateException("Illegal state!");
-		} else if (masterFlagOne == 0x2 && masterFlagTwo == 0x1) {
-			this.resourceTwo.markSlaver();
-			this.resourceOne.markMaster();
-
-			this.master = this.resourceOne;
-			this.slaver = this.resourceTwo;
-		} else if (masterFlagOne == 0x2 && masterFlagTwo == 0x0) {
-			this.resourceOne.markMaster();
-
-			this.master = this.resourceOne;
-			this.slaver = this.resourceTwo;
-		} else if (masterFlagOne == 0x1 && masterFlagTwo == 0x2) {
-			this.resourceOne.markSlaver();
-			this.resourceTwo.markMaster();
-
-			this.master = this.resourceTwo;
-			this.slaver = this.resourceOne;
-		} else if (masterFlagOne == 0x0 && masterFlagTwo == 0x2) {
-			this.resourceTwo.markMaster();
-
-			this.master = this.resourceTwo;
-			this.slaver = this.resourceOne;
-		} else {
-			throw new IllegalStateException("Illegal state!");
+		if (this.directory == null) {
+			this.directory = CleanupFile.getDefaultDirectory(this.endpoint);
+		}
+
+		if (this.directory.exists() == false && this.directory.mkdirs() == false) {
+			throw new IllegalStateException(String.format("Error occurred while creating directory: %s.", this.directory));
+		}
+
+		List<Long> sequences = new ArrayList<Long>();
+		File[] files = this.directory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			long sequence = CleanupFile.parseSequence(files[i].getName());
+			if (files[i].isFile() && sequence >= 0) {
+				sequences.add(sequence);
+			}
 		}
+		Collections.sort(sequences);
+
+		for (int i = 0; i < sequences.size(); i++) {
+			long sequence = sequences.get(i);
+			CleanupFile segment = this.createSegment(sequence);
+			segment.initialize(false);
+			segment.markSlaver(); // the segments left by the previous run, including the former master, are all sealed
+
+			this.segments.add(segment);
+			this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+		}
+
+		this.active = this.createSegment(this.nextSequence++);
+		this.active.initialize(true);
+	}
+
+	private CleanupFile createSegment(long sequence) {
+		CleanupFile segment = new CleanupFile(sequence);
+		segment.setDirectory(this.directory);
+		segment.setBeanFactory(this.beanFactory);
+		segment.setEndpoint(this.endpoint);
+		return segment;
 	}
 
 	public void startupRecover() {
-		this.master.startupRecover();
-		this.slaver.startupRecover();
+		for (int i = 0; i < this.segments.size(); i++) {
+			this.segments.get(i).startupRecover();
+		}
+		this.active.startupRecover();
 	}
 
 	public void destroy() {
-		this.resourceOne.destroy();
-		this.resourceTwo.destroy();
+		try {
+			this.lock.lock();
+			for (int i = 0; i < this.segments.size(); i++) {
+				this.segments.get(i).destroy();
+			}
+			this.active.destroy();
+		} finally {
+			this.lock.unlock();
+		}
+
+		this.destroyExecutorIfNecessary();
 	}
 
 	public void run() {
@@ -128,17 +163,24 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 
 		this.markStartupDone();
 
-		long swapMillis = System.currentTimeMillis() + 1000L * 30;
+		long sealMillis = System.currentTimeMillis() + this.cleanupCadence.getIntervalMillis();
 
 		while (this.released == false) {
-			if (System.currentTimeMillis() < swapMillis) {
+			if (System.currentTimeMillis() < sealMillis && this.rolled == false) {
 				this.waitingFor(100);
 			} else {
-				this.switchMasterAndSlaver();
-				swapMillis = System.currentTimeMillis() + 1000L * 30;
-
-				this.cleanupSlaver();
-				this.compressSlaver();
+				this.rolled = false;
+				this.sealActiveSegment();
+				int growth = this.getSealedRecords(); // mostly written since the previous round
+
+				boolean failure = this.cleanupSegments() > 0;
+
+				int backlog = this.getRecordCount();
+				int success = Math.max(0, growth - backlog);
+				long interval = this.cleanupCadence.next(backlog, success, failure ? backlog : 0, growth);
+				logger.debug("cleanup-cadence: decision= {}, backlog= {}, growth= {}, interval= {} ms",
+						this.cleanupCadence.getLastDecision(), backlog, growth, interval);
+				sealMillis = System.currentTimeMillis() + interval;
 			}
 		}
 
@@ -153,70 +195,233 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 		}
 	}
 
-	private void compressSlaver() {
-		this.slaver.timingCompress(); // compress
+	private void sealActiveSegment() {
+		try {
+			this.lock.lock();
+			if (this.active.getRecordCount() > 0) {
+				this.rollActiveSegment();
+			}
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
-	private void cleanupSlaver() {
-		Map<String, Set<CleanupRecord>> recordMap = this.slaver.getRecordMap();
-		Set<Map.Entry<String, Set<CleanupRecord>>> entrySet = recordMap.entrySet();
-		Iterator<Map.Entry<String, Set<CleanupRecord>>> itr = entrySet.iterator();
+	/* the caller must hold the lock. */
+	private void rollActiveSegment() {
+		CleanupFile segment = this.createSegment(this.nextSequence++);
+		segment.initialize(true);
 
-		while (itr.hasNext()) {
-			Map.Entry<String, Set<CleanupRecord>> entry = itr.next();
-			String resourceId = entry.getKey();
-			Set<CleanupRecord> records = entry.getValue();
+		this.active.markSlaver();
+		this.segments.add(this.active);
+		this.sealedRecords += this.active.getPendingCount();
+
+		this.active = segment;
+	}
+
+	private int getSealedRecords() {
+		try {
+			this.lock.lock();
+			int records = this.sealedRecords;
+			this.sealedRecords = 0;
+			return records;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private List<CleanupFile> getSealedSegments() {
+		try {
+			this.lock.lock();
+			return new ArrayList<CleanupFile>(this.segments);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* the number of the sealed records which have not been forgotten yet. */
+	private int getRecordCount() {
+		int count = 0;
+		List<CleanupFile> sealedList = this.getSealedSegments();
+		for (int i = 0; i < sealedList.size(); i++) {
+			count += sealedList.get(i).getPendingCount();
+		}
+		return count;
+	}
+
+	/* returns the number of the resources failed to be cleaned up. */
+	private int cleanupSegments() {
+		int failure = 0;
+		List<CleanupFile> sealedList = this.getSealedSegments();
+		for (int i = 0; i < sealedList.size(); i++) {
+			CleanupFile segment = sealedList.get(i);
+			failure += this.cleanupSegment(segment);
+
+			if (segment.getPendingCount() == 0) {
+				this.dropSegment(segment);
+			} else if (this.isCompactionRequired(segment)) {
+				segment.timingCompress(); // compress
+			}
+		}
+		return failure;
+	}
 
-			this.cleanupByResource(resourceId, records);
+	private boolean isCompactionRequired(CleanupFile segment) {
+		int records = segment.getRecordCount();
+		int deadRecords = records - segment.getPendingCount();
+		return deadRecords >= this.compactMinDeadRecords && deadRecords >= records * this.compactDeadRatio;
+	}
+
+	private void dropSegment(CleanupFile segment) {
+		try {
+			this.lock.lock();
+			this.segments.remove(segment);
+		} finally {
+			this.lock.unlock();
+		}
+
+		segment.remove();
+	}
+
+	/* returns the number of the resources failed to be cleaned up, different resources are cleaned up in parallel. */
+	private int cleanupSegment(final CleanupFile segment) {
+		Map<String, int[]> pendingRecords = segment.getPendingRecords();
+		ExecutorService forgetExecutor = pendingRecords.size() > 1 ? this.getForgetExecutor() : null;
+
+		int failure = 0;
+		Map<String, Future<Boolean>> resource2FutureMap = new HashMap<String, Future<Boolean>>();
+		for (Iterator<Map.Entry<String, int[]>> itr = pendingRecords.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, int[]> entry = itr.next();
+			final String resourceId = entry.getKey();
+			final int[] records = entry.getValue();
+
+			if (forgetExecutor == null) {
+				failure += this.cleanupByResource(segment, resourceId, records) ? 0 : 1;
+				continue;
+			}
+
+			Future<Boolean> future = forgetExecutor.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return cleanupByResource(segment, resourceId, records);
+				}
+			});
+			resource2FutureMap.put(resourceId, future);
 		}
 
+		for (Iterator<Map.Entry<String, Future<Boolean>>> itr = resource2FutureMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Future<Boolean>> entry = itr.next();
+			String resourceId = entry.getKey();
+			Future<Boolean> future = entry.getValue();
+			try {
+				failure += future.get() ? 0 : 1;
+			} catch (InterruptedException ex) {
+				failure++;
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException ex) {
+				failure++;
+				logger.error("Error occurred while cleaning up resource({}).", resourceId, ex.getCause());
+			}
+		}
+
+		return failure;
 	}
 
-	private void cleanupByResource(String resourceId, Set<CleanupRecord> records) {
-		int remain = records.size();
-		Iterator<CleanupRecord> recordItr = records.iterator();
-		while (recordItr.hasNext()) {
-			List<CleanupRecord> recordList = new ArrayList<CleanupRecord>();
+	/**
+	 * Forgets the records of the specified resource batch by batch. A batch which still fails after the retries is left to
+	 * the next round, the following batches are forgotten anyway.
+	 */
+	private boolean cleanupByResource(CleanupFile segment, String resourceId, int[] records) {
+		boolean success = true;
+		int current = 0;
+		while (current < records.length && this.released == false) {
 			List<Xid> xidList = new ArrayList<Xid>();
 
-			int defaultBatchSize = 2000;
-			int maxBatchSize = defaultBatchSize * 5 / 4;
-			int batchSize = remain > defaultBatchSize && remain < maxBatchSize ? remain : defaultBatchSize;
-			for (int i = 0; i < batchSize && recordItr.hasNext(); i++, remain--) {
-				CleanupRecord record = recordItr.next();
-				recordList.add(record);
-				xidList.add(record.getXid());
-			} // end-for (int i = 0; i < batchSize && recordItr.hasNext(); i++, remain--)
+			int remain = records.length - current;
+			int batchSize = this.getForgetBatchSize(resourceId);
+			int maxBatchSize = batchSize * 5 / 4;
+			batchSize = remain > batchSize && remain < maxBatchSize ? remain : batchSize;
+			int batchEnd = Math.min(records.length, current + batchSize);
+			for (int i = current; i < batchEnd; i++) {
+				xidList.add(segment.getXid(records[i])); // materialized only when forgetting
+			} // end-for (int i = current; i < batchEnd; i++)
+
+			if (this.cleanupWithRetry(resourceId, xidList)) {
+				for (int i = current; i < batchEnd; i++) {
+					segment.markForgotten(records[i]);
+				}
+			} else {
+				success = false;
+			}
+
+			current = batchEnd;
+		} // end-while (current < records.length && this.released == false)
 
+		return success;
+	}
+
+	private boolean cleanupWithRetry(String resourceId, List<Xid> xidList) {
+		for (int attempt = 0; true; attempt++) {
+			long begin = System.currentTimeMillis();
 			try {
 				this.cleanup(resourceId, xidList);
+				this.adjustForgetBatchSize(resourceId, xidList.size(), System.currentTimeMillis() - begin);
+				return true;
 			} catch (RuntimeException rex) {
-				logger.error("forget-transaction: error occurred while forgetting branch: resource= {}, xids= {}", resourceId,
-						xidList, rex);
-				return; // continue;
+				this.reduceForgetBatchSize(resourceId);
+				if (attempt >= this.maxForgetRetries || this.released) {
+					logger.error("forget-transaction: error occurred while forgetting branch: resource= {}, xids= {}",
+							resourceId, xidList, rex);
+					return false;
+				}
+
+				long delayMillis = Math.min(this.forgetRetryDelayMillis << attempt, SECOND_MILLIS * 10);
+				logger.warn("forget-transaction: error occurred while forgetting branch, retry in {} ms: resource= {}",
+						delayMillis, resourceId);
+				this.waitingFor(delayMillis);
 			}
+		}
+	}
 
-			for (int i = 0; i < recordList.size(); i++) {
-				CleanupRecord record = recordList.get(i);
-				int recordFlag = record.getRecordFlag();
-				record.setRecordFlag(recordFlag | 0x2);
-			}
+	private int getForgetBatchSize(String resourceId) {
+		Integer batchSize = this.batchSizeMap.get(resourceId);
+		return batchSize == null ? Math.max(this.minForgetBatchSize, Math.min(2000, this.maxForgetBatchSize)) : batchSize;
+	}
+
+	/* grows the batch size while forget is fast, shrinks it once forget is slower than expected. */
+	private void adjustForgetBatchSize(String resourceId, int size, long elapsedMillis) {
+		int batchSize = this.getForgetBatchSize(resourceId);
+		if (elapsedMillis > this.targetForgetMillis) {
+			batchSize = batchSize / 2;
+		} else if (elapsedMillis < this.targetForgetMillis / 2 && size >= batchSize) {
+			batchSize = batchSize * 3 / 2;
+		}
+		this.batchSizeMap.put(resourceId, Math.max(this.minForgetBatchSize, Math.min(batchSize, this.maxForgetBatchSize)));
+	}
 
-		} // end-while (recordItr.hasNext())
+	private void reduceForgetBatchSize(String resourceId) {
+		int batchSize = this.getForgetBatchSize(resourceId) / 2;
+		this.batchSizeMap.put(resourceId, Math.max(this.minForgetBatchSize, batchSize));
 	}
 
-	public void switchMasterAndSlaver() {
-		try {
-			this.lock.lock();
-			this.slaver.markPrepare();
-			this.master.markSlaver();
-			this.slaver.markMaster();
+	private synchronized ExecutorService getForgetExecutor() {
+		if (this.forgetThreads <= 1) {
+			return null;
+		} else if (this.executor == null) {
+			this.executor = Executors.newFixedThreadPool(this.forgetThreads, new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, String.format("bytetcc-cleanup-%s", index.incrementAndGet()));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.executor;
+	}
 
-			CleanupFile cleanupFile = this.master;
-			this.master = this.slaver;
-			this.slaver = cleanupFile;
-		} finally {
-			this.lock.unlock();
+	private synchronized void destroyExecutorIfNecessary() {
+		if (this.executor != null) {
+			this.executor.shutdown();
 		}
 	}
 
@@ -252,7 +457,11 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 
 		try {
 			this.lock.lock();
-			this.master.forget(xid, resourceId);
+			this.active.forget(xid, resourceId);
+			if (this.active.getEndIndex() >= this.maxSegmentSize) {
+				this.rollActiveSegment();
+				this.rolled = true;
+			}
 		} finally {
 			this.lock.unlock();
 		}
@@ -290,6 +499,110 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 		this.released = true;
 	}
 
+	public WorkCadence getCleanupCadence() {
+		return this.cleanupCadence;
+	}
+
+	public long getMinSwapInterval() {
+		return this.cleanupCadence.getMinIntervalMillis();
+	}
+
+	public void setMinSwapInterval(long minSwapInterval) {
+		this.cleanupCadence.setMinIntervalMillis(minSwapInterval);
+	}
+
+	public long getMaxSwapInterval() {
+		return this.cleanupCadence.getMaxIntervalMillis();
+	}
+
+	public void setMaxSwapInterval(long maxSwapInterval) {
+		this.cleanupCadence.setMaxIntervalMillis(maxSwapInterval);
+	}
+
+	public int getSegmentCount() {
+		try {
+			this.lock.lock();
+			return this.segments.size() + 1;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public int getForgetThreads() {
+		return forgetThreads;
+	}
+
+	public void setForgetThreads(int forgetThreads) {
+		this.forgetThreads = forgetThreads;
+	}
+
+	public int getMaxForgetRetries() {
+		return maxForgetRetries;
+	}
+
+	public void setMaxForgetRetries(int maxForgetRetries) {
+		this.maxForgetRetries = maxForgetRetries;
+	}
+
+	public long getForgetRetryDelayMillis() {
+		return forgetRetryDelayMillis;
+	}
+
+	public void setForgetRetryDelayMillis(long forgetRetryDelayMillis) {
+		this.forgetRetryDelayMillis = forgetRetryDelayMillis;
+	}
+
+	public long getTargetForgetMillis() {
+		return targetForgetMillis;
+	}
+
+	public void setTargetForgetMillis(long targetForgetMillis) {
+		this.targetForgetMillis = targetForgetMillis;
+	}
+
+	public int getMinForgetBatchSize() {
+		return minForgetBatchSize;
+	}
+
+	public void setMinForgetBatchSize(int minForgetBatchSize) {
+		this.minForgetBatchSize = minForgetBatchSize;
+	}
+
+	public int getMaxForgetBatchSize() {
+		return maxForgetBatchSize;
+	}
+
+	public void setMaxForgetBatchSize(int maxForgetBatchSize) {
+		this.maxForgetBatchSize = maxForgetBatchSize;
+	}
+
+	public int getMaxSegmentSize() {
+		return maxSegmentSize;
+	}
+
+	public void setMaxSegmentSize(int maxSegmentSize) {
+		if (maxSegmentSize <= CleanupFile.CONSTANTS_START_INDEX || maxSegmentSize > CleanupFile.CONSTANTS_MAX_SEGMENT_SIZE) {
+			throw new IllegalArgumentException(String.format("Illegal maxSegmentSize: %s", maxSegmentSize));
+		}
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	public double getCompactDeadRatio() {
+		return compactDeadRatio;
+	}
+
+	public void setCompactDeadRatio(double compactDeadRatio) {
+		this.compactDeadRatio = compactDeadRatio;
+	}
+
+	public int getCompactMinDeadRecords() {
+		return compactMinDeadRecords;
+	}
+
+	public void setCompactMinDeadRecords(int compactMinDeadRecords) {
+		this.compactMinDeadRecords = compactMinDeadRecords;
+	}
+
 	public String getEndpoint() {
 		return this.endpoint;
 	}
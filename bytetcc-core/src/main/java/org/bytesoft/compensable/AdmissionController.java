@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable;
+
+import javax.transaction.xa.XAException;
+
+/**
+ * Admission control of the requests sent to the remote applications: every acquire is paired with a release.
+ */
+public interface AdmissionController {
+
+	/* waits until a request to the application is admitted, fails with XAER_RMFAIL if it is not admitted in time. */
+	public void acquire(String application) throws XAException;
+
+	/* unavailable: the request has failed with XAER_RMFAIL. */
+	public void release(String application, boolean unavailable);
+
+}
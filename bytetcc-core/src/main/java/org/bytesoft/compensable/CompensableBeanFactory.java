@@ -71,4 +71,6 @@ public interface CompensableBeanFactory {
 
 	public CompensableRolledbackMarker getCompensableRolledbackMarker();
 
+	public AdmissionController getRemoteAdmissionController();
+
 }
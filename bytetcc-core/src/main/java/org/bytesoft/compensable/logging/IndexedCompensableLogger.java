@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable.logging;
+
+import java.util.Set;
+
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+/**
+ * Compensable logger which is able to list the transactions to be recovered without reading their archives, and to read
+ * the archive of a single transaction on demand. Required by the background startup recovery.
+ */
+public interface IndexedCompensableLogger extends CompensableLogger {
+
+	/* the global xids of the transactions which will be passed to recover(callback). */
+	public Set<TransactionXid> getRecoverableXids();
+
+	/* the archive of the specified global transaction, or null if it does not need to be recovered. */
+	public TransactionArchive recover(TransactionXid globalXid);
+
+}
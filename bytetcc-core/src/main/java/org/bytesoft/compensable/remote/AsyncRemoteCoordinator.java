@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable.remote;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.transaction.xa.Xid;
+
+/**
+ * Non-blocking variant of the commit/rollback/forget operations of a remote coordinator. The returned future completes
+ * normally once the remote participant has completed the operation, or exceptionally with the XAException it failed
+ * with; no thread is held while the request is in flight.
+ */
+public interface AsyncRemoteCoordinator {
+
+	public CompletableFuture<Void> commitAsync(Xid xid, boolean onePhase);
+
+	public CompletableFuture<Void> rollbackAsync(Xid xid);
+
+	public CompletableFuture<Void> forgetAsync(Xid xid);
+
+}
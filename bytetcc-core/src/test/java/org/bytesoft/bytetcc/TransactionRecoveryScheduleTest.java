@@ -0,0 +1,168 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.compensable.TransactionContext;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionRecoveryScheduleTest {
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private TransactionRecoverySchedule schedule;
+
+	@Before
+	public void setUp() {
+		this.schedule = new TransactionRecoverySchedule();
+		this.schedule.setInitialDelayMillis(1000L * 60);
+		this.schedule.setBaseDelayMillis(0);
+		this.schedule.setJitterRatio(0);
+	}
+
+	@Test
+	public void testNotDueBeforeInitialDelay() {
+		Transaction transaction = this.createTransaction(System.currentTimeMillis());
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty());
+		Assert.assertEquals(1, this.schedule.size());
+		Assert.assertEquals(0, this.schedule.getDueCount(System.currentTimeMillis()));
+		Assert.assertTrue(this.schedule.getNextDueTime() > System.currentTimeMillis());
+	}
+
+	@Test
+	public void testDueAfterInitialDelay() {
+		Transaction transaction = this.createTransaction(System.currentTimeMillis() - 1000L * 120);
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertEquals(0, this.schedule.getDueCount(Long.MAX_VALUE)); // not merged yet
+		List<Transaction> dueList = this.schedule.getDueTransactions(transactions);
+		Assert.assertEquals(1, dueList.size());
+		Assert.assertSame(transaction, dueList.get(0));
+
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty()); // running
+		Assert.assertEquals(0, this.schedule.getDueCount(Long.MAX_VALUE));
+		Assert.assertEquals(1, this.schedule.size());
+	}
+
+	@Test
+	public void testFailure() {
+		Transaction transaction = this.createTransaction(System.currentTimeMillis() - 1000L * 120);
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertEquals(1, this.schedule.getDueTransactions(transactions).size());
+		this.schedule.failure(xid);
+		Assert.assertEquals(1, this.schedule.getDueCount(System.currentTimeMillis()));
+		Assert.assertEquals(1, this.schedule.getDueTransactions(transactions).size());
+	}
+
+	@Test
+	public void testFailureBackoff() {
+		this.schedule.setBaseDelayMillis(1000L);
+		this.schedule.setMaxDelayMillis(1000L * 3);
+		Transaction transaction = this.createTransaction(System.currentTimeMillis() - 1000L * 120);
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertEquals(1, this.schedule.getDueTransactions(transactions).size());
+		long current = System.currentTimeMillis();
+		this.schedule.failure(xid); // 1000 * 2 ^ 1
+		long nextDueTime = this.schedule.getNextDueTime();
+		Assert.assertTrue(nextDueTime >= current + 2000L && nextDueTime <= System.currentTimeMillis() + 2000L);
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty());
+	}
+
+	@Test
+	public void testSuccess() {
+		Transaction transaction = this.createTransaction(System.currentTimeMillis() - 1000L * 120);
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertEquals(1, this.schedule.getDueTransactions(transactions).size());
+		this.schedule.success(xid);
+		Assert.assertEquals(0, this.schedule.size());
+		this.schedule.failure(xid); // ignored, since it has been removed
+		Assert.assertEquals(0, this.schedule.size());
+	}
+
+	@Test
+	public void testCompleted() {
+		Transaction transaction = this.createTransaction(System.currentTimeMillis());
+		Transaction completed = this.createTransaction(System.currentTimeMillis());
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		transactions.add(transaction);
+		transactions.add(completed);
+
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty());
+		Assert.assertEquals(2, this.schedule.size());
+
+		transactions.remove(completed);
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty());
+		Assert.assertEquals(1, this.schedule.size());
+
+		Assert.assertTrue(this.schedule.getDueTransactions(new ArrayList<Transaction>()).isEmpty());
+		Assert.assertEquals(0, this.schedule.size());
+		Assert.assertEquals(-1, this.schedule.getNextDueTime());
+	}
+
+	@Test
+	public void testRecoveredTimes() {
+		long createdTime = System.currentTimeMillis() - 1000L * 90;
+		Transaction transaction = this.createTransaction(createdTime);
+		transaction.getTransactionContext().setRecoveredTimes(1); // initial delay doubled
+		List<Transaction> transactions = Collections.singletonList(transaction);
+
+		Assert.assertTrue(this.schedule.getDueTransactions(transactions).isEmpty());
+		Assert.assertEquals(createdTime + 1000L * 120, this.schedule.getNextDueTime());
+	}
+
+	private Transaction createTransaction(long createdTime) {
+		final TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+		transactionContext.setCreatedTime(createdTime);
+		transactionContext.setExpiredTime(createdTime + 1000L * 60 * 5);
+		transactionContext.setCompensable(true);
+
+		return (Transaction) Proxy.newProxyInstance(Transaction.class.getClassLoader(),
+				new Class<?>[] { Transaction.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionContext".equals(method.getName())) {
+							return transactionContext;
+						} else if ("equals".equals(method.getName())) {
+							return proxy == args[0];
+						} else if ("hashCode".equals(method.getName())) {
+							return System.identityHashCode(proxy);
+						} else if ("toString".equals(method.getName())) {
+							return String.valueOf(transactionContext.getXid());
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+}
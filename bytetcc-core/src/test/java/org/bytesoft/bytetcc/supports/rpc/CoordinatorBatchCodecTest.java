@@ -0,0 +1,109 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoordinatorBatchCodecTest {
+	private final XidFactory xidFactory = new XidFactoryImpl();
+
+	@Test
+	public void testXids() throws IOException {
+		List<Xid> xids = new ArrayList<Xid>();
+		for (int i = 0; i < 300; i++) {
+			xids.add(this.xidFactory.createGlobalXid());
+		}
+
+		List<Xid> decoded = CoordinatorBatchCodec.decodeXids(CoordinatorBatchCodec.encodeXids(xids), this.xidFactory);
+		Assert.assertEquals(xids.size(), decoded.size());
+		for (int i = 0; i < xids.size(); i++) {
+			Assert.assertArrayEquals(xids.get(i).getGlobalTransactionId(), decoded.get(i).getGlobalTransactionId());
+		}
+	}
+
+	@Test
+	public void testEmptyXids() throws IOException {
+		byte[] byteArray = CoordinatorBatchCodec.encodeXids(new ArrayList<Xid>());
+		Assert.assertTrue(CoordinatorBatchCodec.decodeXids(byteArray, this.xidFactory).isEmpty());
+	}
+
+	@Test
+	public void testCodes() throws IOException {
+		int[] codes = new int[] { XAResource.XA_OK, XAException.XAER_NOTA, XAException.XAER_RMERR,
+				XAException.XAER_RMFAIL, XAException.XA_HEURMIX, CoordinatorBatchHandler.CODE_UNPROCESSED };
+		Assert.assertArrayEquals(codes, CoordinatorBatchCodec.decodeCodes(CoordinatorBatchCodec.encodeCodes(codes)));
+	}
+
+	@Test
+	public void testUnsupportedFormat() {
+		byte[] xidArray = CoordinatorBatchCodec.encodeXids(Arrays.asList((Xid) this.xidFactory.createGlobalXid()));
+		byte[] codeArray = CoordinatorBatchCodec.encodeCodes(new int[] { XAResource.XA_OK });
+
+		try {
+			CoordinatorBatchCodec.decodeCodes(xidArray);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+
+		try {
+			CoordinatorBatchCodec.decodeXids(codeArray, this.xidFactory);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+
+		try {
+			CoordinatorBatchCodec.decodeXids(new byte[0], this.xidFactory);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testIncomplete() {
+		List<Xid> xids = Arrays.asList((Xid) this.xidFactory.createGlobalXid(), this.xidFactory.createGlobalXid());
+		byte[] byteArray = CoordinatorBatchCodec.encodeXids(xids);
+		try {
+			CoordinatorBatchCodec.decodeXids(Arrays.copyOf(byteArray, byteArray.length - 1), this.xidFactory);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+
+		byte[] codeArray = CoordinatorBatchCodec.encodeCodes(new int[] { XAException.XAER_RMERR });
+		try {
+			CoordinatorBatchCodec.decodeCodes(Arrays.copyOf(codeArray, codeArray.length - 1));
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+}
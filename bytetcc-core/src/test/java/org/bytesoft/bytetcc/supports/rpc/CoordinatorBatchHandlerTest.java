@@ -0,0 +1,100 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.transaction.TransactionParticipant;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoordinatorBatchHandlerTest {
+	private final XidFactory xidFactory = new XidFactoryImpl();
+
+	private TransactionParticipant createParticipant(final List<String> invocations, final Xid failedXid,
+			final long delayMillis) {
+		return (TransactionParticipant) Proxy.newProxyInstance(TransactionParticipant.class.getClassLoader(),
+				new Class<?>[] { TransactionParticipant.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						invocations.add(method.getName());
+						if (delayMillis > 0) {
+							Thread.sleep(delayMillis);
+						}
+						if (failedXid != null && failedXid.equals(args[0])) {
+							throw new XAException(XAException.XAER_NOTA);
+						}
+						return null;
+					}
+				});
+	}
+
+	private List<Xid> createXids(int size) {
+		List<Xid> xids = new ArrayList<Xid>();
+		for (int i = 0; i < size; i++) {
+			xids.add(this.xidFactory.createGlobalXid());
+		}
+		return xids;
+	}
+
+	@Test
+	public void testCompleteBatch() {
+		List<Xid> xids = this.createXids(3);
+		List<String> invocations = Collections.synchronizedList(new ArrayList<String>());
+		TransactionParticipant participant = this.createParticipant(invocations, xids.get(1), 0);
+
+		int[] codes = CoordinatorBatchHandler.completeBatch(participant, "rollback", false, xids, 0);
+		Assert.assertArrayEquals(new int[] { XAResource.XA_OK, XAException.XAER_NOTA, XAResource.XA_OK }, codes);
+		Assert.assertEquals(3, invocations.size());
+		Assert.assertEquals("rollback", invocations.get(0));
+	}
+
+	@Test
+	public void testCompleteBatchTimeout() {
+		List<Xid> xids = this.createXids(10);
+		List<String> invocations = Collections.synchronizedList(new ArrayList<String>());
+		TransactionParticipant participant = this.createParticipant(invocations, null, 50);
+
+		int[] codes = CoordinatorBatchHandler.completeBatch(participant, "commit", false, xids, 120);
+
+		int processed = invocations.size();
+		Assert.assertTrue(processed >= 1 && processed < xids.size());
+		for (int i = 0; i < codes.length; i++) {
+			int expected = i < processed ? XAResource.XA_OK : CoordinatorBatchHandler.CODE_UNPROCESSED;
+			Assert.assertEquals(expected, codes[i]);
+		}
+	}
+
+	@Test
+	public void testIsBatchMethod() {
+		Assert.assertTrue(CoordinatorBatchHandler.isBatchMethod("commit"));
+		Assert.assertTrue(CoordinatorBatchHandler.isBatchMethod("rollback"));
+		Assert.assertTrue(CoordinatorBatchHandler.isBatchMethod("forget"));
+		Assert.assertFalse(CoordinatorBatchHandler.isBatchMethod("prepare"));
+		Assert.assertFalse(CoordinatorBatchHandler.isBatchMethod("recover"));
+	}
+
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RemoteCoordinatorBatcherTest {
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private final RemoteCoordinatorBatcher batcher = RemoteCoordinatorBatcher.getInstance();
+	private int maxConcurrentFlushes;
+
+	@Before
+	public void setUp() {
+		this.maxConcurrentFlushes = this.batcher.getMaxConcurrentFlushes();
+		this.batcher.setMaxConcurrentFlushes(1);
+	}
+
+	@After
+	public void tearDown() {
+		this.batcher.setMaxConcurrentFlushes(this.maxConcurrentFlushes);
+	}
+
+	@Test
+	public void testSingleRequest() throws Exception {
+		RecordingInvoker invoker = new RecordingInvoker();
+		Xid xid = this.xidFactory.createGlobalXid();
+
+		this.batcher.execute(this.createIdentifier(), "commit", false, xid, invoker);
+		Assert.assertEquals(Collections.singletonList(xid), invoker.invoked);
+		Assert.assertEquals(0, invoker.batches.size());
+	}
+
+	@Test
+	public void testBatchRequest() throws Exception {
+		RecordingInvoker invoker = new RecordingInvoker();
+		invoker.codes = new int[] { XAResource.XA_OK, XAException.XAER_NOTA, XAResource.XA_OK };
+		List<Xid> xids = this.createXids(3);
+
+		Map<Xid, XAException> errors = this.executeConcurrently(this.createIdentifier(), invoker, xids);
+		Assert.assertEquals(1, invoker.batches.size());
+		Assert.assertEquals(3, invoker.batches.get(0).size());
+		Assert.assertEquals(1, invoker.invoked.size()); // the leading request
+		Assert.assertEquals(1, errors.size());
+		Assert.assertEquals(XAException.XAER_NOTA, errors.get(xids.get(1)).errorCode);
+	}
+
+	@Test
+	public void testFallbackOnBatchFailure() throws Exception {
+		RecordingInvoker invoker = new RecordingInvoker();
+		invoker.failure = new XAException(XAException.XAER_RMFAIL);
+		List<Xid> xids = this.createXids(3);
+
+		Map<Xid, XAException> errors = this.executeConcurrently(this.createIdentifier(), invoker, xids);
+		Assert.assertEquals(1, invoker.batches.size());
+		Assert.assertEquals(4, invoker.invoked.size());
+		Assert.assertTrue(invoker.invoked.containsAll(xids));
+		Assert.assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	public void testFallbackOnBatchUnsupported() throws Exception {
+		String identifier = this.createIdentifier();
+		RecordingInvoker invoker = new RecordingInvoker();
+		List<Xid> xids = this.createXids(3);
+
+		Map<Xid, XAException> errors = this.executeConcurrently(identifier, invoker, xids);
+		Assert.assertEquals(1, invoker.batches.size());
+		Assert.assertEquals(4, invoker.invoked.size());
+		Assert.assertTrue(invoker.invoked.containsAll(xids));
+		Assert.assertTrue(errors.isEmpty());
+
+		RecordingInvoker following = new RecordingInvoker();
+		following.codes = new int[] { XAResource.XA_OK, XAResource.XA_OK, XAResource.XA_OK };
+		this.executeConcurrently(identifier, following, this.createXids(3));
+		Assert.assertEquals(0, following.batches.size()); // marked as unsupported
+		Assert.assertEquals(4, following.invoked.size());
+	}
+
+	@Test
+	public void testFallbackOnUnprocessed() throws Exception {
+		RecordingInvoker invoker = new RecordingInvoker();
+		invoker.codes = new int[] { XAResource.XA_OK, CoordinatorBatchHandler.CODE_UNPROCESSED, XAResource.XA_OK };
+		List<Xid> xids = this.createXids(3);
+
+		Map<Xid, XAException> errors = this.executeConcurrently(this.createIdentifier(), invoker, xids);
+		Assert.assertEquals(1, invoker.batches.size());
+		Assert.assertEquals(2, invoker.invoked.size());
+		Assert.assertTrue(invoker.invoked.contains(xids.get(1)));
+		Assert.assertTrue(errors.isEmpty());
+	}
+
+	/**
+	 * The leading request blocks the flush until the other requests are queued (or completed, if they are not batched),
+	 * so that they are sent as one batch.
+	 */
+	private Map<Xid, XAException> executeConcurrently(final String identifier, final RecordingInvoker invoker,
+			List<Xid> xids) throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Map<Xid, XAException> errors = Collections.synchronizedMap(new HashMap<Xid, XAException>());
+
+		Xid leader = this.xidFactory.createGlobalXid();
+		invoker.blocker = leader;
+		invoker.latch = latch;
+		Thread leaderThread = this.startThread(identifier, invoker, leader, errors);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (invoker.invoked.contains(leader) == false && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < xids.size(); i++) {
+			threads.add(this.startThread(identifier, invoker, xids.get(i), errors));
+		}
+		for (int i = 0; i < threads.size(); i++) {
+			Thread thread = threads.get(i);
+			Thread.State state = thread.getState();
+			while (state != Thread.State.WAITING && state != Thread.State.TERMINATED
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+				state = thread.getState();
+			}
+		}
+
+		latch.countDown();
+		leaderThread.join(5000);
+		for (int i = 0; i < threads.size(); i++) {
+			threads.get(i).join(5000);
+		}
+		return errors;
+	}
+
+	private Thread startThread(final String identifier, final RecordingInvoker invoker, final Xid xid,
+			final Map<Xid, XAException> errors) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					batcher.execute(identifier, "commit", false, xid, invoker);
+				} catch (XAException ex) {
+					errors.put(xid, ex);
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private List<Xid> createXids(int size) {
+		List<Xid> xids = new ArrayList<Xid>();
+		for (int i = 0; i < size; i++) {
+			xids.add(this.xidFactory.createGlobalXid());
+		}
+		return xids;
+	}
+
+	private String createIdentifier() {
+		return String.format("127.0.0.1:%s:%s", this.getClass().getSimpleName(), System.nanoTime());
+	}
+
+	static class RecordingInvoker implements RemoteCoordinatorBatcher.BatchInvoker {
+		final List<Xid> invoked = Collections.synchronizedList(new ArrayList<Xid>());
+		final List<List<Xid>> batches = Collections.synchronizedList(new ArrayList<List<Xid>>());
+		volatile Xid blocker;
+		volatile CountDownLatch latch;
+		volatile int[] codes;
+		volatile XAException failure;
+
+		public void invoke(String method, boolean onePhase, Xid xid) throws XAException {
+			this.invoked.add(xid);
+			if (xid.equals(this.blocker)) {
+				try {
+					this.latch.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		public int[] invokeBatch(String method, boolean onePhase, List<Xid> xids, long timeoutMillis)
+				throws XAException {
+			this.batches.add(new ArrayList<Xid>(xids));
+			if (this.failure != null) {
+				throw this.failure;
+			}
+			return this.codes;
+		}
+	}
+
+}
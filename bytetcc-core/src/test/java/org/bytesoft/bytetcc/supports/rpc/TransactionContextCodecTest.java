@@ -0,0 +1,155 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.compensable.TransactionContext;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionContextCodecTest {
+	private final XidFactory xidFactory = new XidFactoryImpl();
+
+	private TransactionContext createTransactionContext() {
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+		transactionContext.setCreatedTime(System.currentTimeMillis());
+		transactionContext.setExpiredTime(transactionContext.getCreatedTime() + 1000L * 30);
+		transactionContext.setCompensable(true);
+		return transactionContext;
+	}
+
+	private void assertContextEquals(TransactionContext expected, TransactionContext actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getXid().getFormatId(), actual.getXid().getFormatId());
+		Assert.assertArrayEquals(expected.getXid().getGlobalTransactionId(), actual.getXid().getGlobalTransactionId());
+		Assert.assertEquals(expected.getCreatedTime(), actual.getCreatedTime());
+		Assert.assertEquals(expected.getExpiredTime(), actual.getExpiredTime());
+		Assert.assertEquals(expected.isCompensable(), actual.isCompensable());
+		Assert.assertEquals(expected.isStatefully(), actual.isStatefully());
+	}
+
+	@Test
+	public void testVersionNegotiation() {
+		Assert.assertFalse(TransactionContextCodec.isVersionSupported(null));
+		Assert.assertFalse(TransactionContextCodec.isVersionSupported(" "));
+		Assert.assertFalse(TransactionContextCodec.isVersionSupported("unknown"));
+		Assert.assertTrue(TransactionContextCodec.isVersionSupported("1"));
+		Assert.assertTrue(TransactionContextCodec.isVersionSupported(String.valueOf(TransactionContextCodec.VERSION)));
+
+		Assert.assertFalse(TransactionContextCodec.isDeltaSupported(null));
+		Assert.assertFalse(TransactionContextCodec.isDeltaSupported("1"));
+		Assert.assertTrue(TransactionContextCodec.isDeltaSupported("2"));
+		Assert.assertTrue(TransactionContextCodec.isDeltaSupported("3"));
+	}
+
+	@Test
+	public void testSerializeForLegacyPeer() throws IOException {
+		TransactionContext transactionContext = this.createTransactionContext();
+
+		byte[] byteArray = TransactionContextCodec.serialize(transactionContext, transactionContext, null);
+		Assert.assertEquals(TransactionContextCodec.STREAM_MAGIC, byteArray[0] & 0xFF);
+		this.assertContextEquals(transactionContext, TransactionContextCodec.deserialize(byteArray, this.xidFactory));
+	}
+
+	@Test
+	public void testSerializeForCompactPeer() throws IOException {
+		TransactionContext transactionContext = this.createTransactionContext();
+
+		byte[] byteArray = TransactionContextCodec.serialize(transactionContext, transactionContext, "1");
+		Assert.assertEquals(TransactionContextCodec.FORMAT_FULL, byteArray[0]);
+		this.assertContextEquals(transactionContext, TransactionContextCodec.deserialize(byteArray, this.xidFactory));
+	}
+
+	@Test
+	public void testSerializeDeltaForCurrentPeer() throws IOException {
+		TransactionContext base = this.createTransactionContext();
+		TransactionContext transactionContext = this.createTransactionContext();
+		transactionContext.setXid(base.getXid());
+		transactionContext.setCreatedTime(base.getCreatedTime());
+		transactionContext.setExpiredTime(base.getExpiredTime());
+
+		byte[] unchanged = TransactionContextCodec.serialize(transactionContext, base, "2");
+		Assert.assertEquals(2, unchanged.length);
+		Assert.assertEquals(TransactionContextCodec.FORMAT_DELTA, unchanged[0]);
+		this.assertContextEquals(base, TransactionContextCodec.deserialize(unchanged, base, this.xidFactory));
+
+		transactionContext.setExpiredTime(base.getExpiredTime() + 1000L);
+		transactionContext.setStatefully(true);
+		byte[] changed = TransactionContextCodec.serialize(transactionContext, base, "2");
+		Assert.assertEquals(TransactionContextCodec.FORMAT_DELTA, changed[0]);
+		this.assertContextEquals(transactionContext, TransactionContextCodec.deserialize(changed, base, this.xidFactory));
+
+		// the delta can not be applied without the context of the request
+		try {
+			TransactionContextCodec.deserialize(changed, this.xidFactory);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testEncodeToString() throws IOException {
+		TransactionContext transactionContext = this.createTransactionContext();
+		String text = TransactionContextCodec.encodeToString(transactionContext);
+		this.assertContextEquals(transactionContext, TransactionContextCodec.decodeFromString(text, this.xidFactory));
+
+		try {
+			TransactionContextCodec.decodeFromString("%%%", this.xidFactory);
+			Assert.fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecodeIncomplete() throws IOException {
+		byte[] byteArray = TransactionContextCodec.encode(this.createTransactionContext());
+		TransactionContextCodec.decode(Arrays.copyOf(byteArray, byteArray.length / 2), this.xidFactory);
+	}
+
+	@Test
+	public void testCompactSupported() {
+		String peerKey = TransactionContextCodec.getPeerKey("127.0.0.1", 65001);
+		Assert.assertEquals("127.0.0.1:65001", peerKey);
+		Assert.assertNull(TransactionContextCodec.getPeerKey("127.0.0.1", 0));
+		Assert.assertFalse(TransactionContextCodec.isCompactSupported(null));
+
+		Assert.assertFalse(TransactionContextCodec.isCompactSupported(peerKey));
+		TransactionContextCodec.setCompactSupported(peerKey, true);
+		Assert.assertTrue(TransactionContextCodec.isCompactSupported(peerKey));
+		TransactionContextCodec.setCompactSupported(peerKey, false);
+		Assert.assertFalse(TransactionContextCodec.isCompactSupported(peerKey));
+	}
+
+	@Test
+	public void testCompactSupportedBounded() {
+		for (int i = 0; i <= TransactionContextCodec.MAX_PEERS; i++) {
+			TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey("10.0.0.1", i + 1), true);
+		}
+
+		// the peers which announce the codec again are known again
+		String peerKey = TransactionContextCodec.getPeerKey("10.0.0.2", 8080);
+		TransactionContextCodec.setCompactSupported(peerKey, true);
+		Assert.assertTrue(TransactionContextCodec.isCompactSupported(peerKey));
+	}
+
+}
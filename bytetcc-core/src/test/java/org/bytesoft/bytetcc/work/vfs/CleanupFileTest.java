@@ -0,0 +1,209 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.work.vfs;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CleanupFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private CompensableBeanFactory beanFactory;
+	private CleanupFile cleanupFile;
+
+	@Before
+	public void setUp() {
+		this.beanFactory = (CompensableBeanFactory) Proxy.newProxyInstance(CompensableBeanFactory.class.getClassLoader(),
+				new Class<?>[] { CompensableBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionXidFactory".equals(method.getName())) {
+							return xidFactory;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		this.cleanupFile = this.createCleanupFile(true);
+	}
+
+	@After
+	public void tearDown() {
+		this.cleanupFile.destroy();
+	}
+
+	private CleanupFile createCleanupFile(boolean master) {
+		CleanupFile file = new CleanupFile(1);
+		file.setBeanFactory(this.beanFactory);
+		file.setDirectory(this.folder.getRoot());
+		file.initialize(master);
+		return file;
+	}
+
+	private Xid createXid() {
+		TransactionXid globalXid = this.xidFactory.createGlobalXid();
+		return this.xidFactory.createBranchXid(globalXid);
+	}
+
+	private void assertXidEquals(Xid expected, Xid actual) {
+		Assert.assertArrayEquals(expected.getGlobalTransactionId(), actual.getGlobalTransactionId());
+		Assert.assertArrayEquals(expected.getBranchQualifier(), actual.getBranchQualifier());
+	}
+
+	@Test
+	public void testForget() {
+		Xid xid0 = this.createXid();
+		Xid xid1 = this.createXid();
+		Xid xid2 = this.createXid();
+		this.cleanupFile.forget(xid0, "resA");
+		this.cleanupFile.forget(xid1, "resB");
+		this.cleanupFile.forget(xid2, "resA");
+
+		Assert.assertEquals(3, this.cleanupFile.getRecordCount());
+		Assert.assertEquals(3, this.cleanupFile.getPendingCount());
+		Assert.assertEquals(CleanupFile.CONSTANTS_START_INDEX + 3 * CleanupFile.CONSTANTS_RECORD_UNIT,
+				this.cleanupFile.getEndIndex());
+
+		Map<String, int[]> pendingRecords = this.cleanupFile.getPendingRecords();
+		Assert.assertEquals(2, pendingRecords.size());
+		Assert.assertArrayEquals(new int[] { 0, 2 }, pendingRecords.get("resA"));
+		Assert.assertArrayEquals(new int[] { 1 }, pendingRecords.get("resB"));
+
+		this.assertXidEquals(xid0, this.cleanupFile.getXid(0));
+		this.assertXidEquals(xid1, this.cleanupFile.getXid(1));
+		this.assertXidEquals(xid2, this.cleanupFile.getXid(2));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testForgetResourceTooLong() {
+		char[] resourceId = new char[CleanupFile.CONSTANTS_RES_ID_MAX_SIZE + 1];
+		Arrays.fill(resourceId, 'r');
+		this.cleanupFile.forget(this.createXid(), new String(resourceId));
+	}
+
+	@Test
+	public void testMarkForgotten() {
+		this.cleanupFile.forget(this.createXid(), "resA");
+		this.cleanupFile.forget(this.createXid(), "resA");
+
+		this.cleanupFile.markForgotten(0);
+		this.cleanupFile.markForgotten(0); // ignored
+		Assert.assertEquals(1, this.cleanupFile.getPendingCount());
+		Assert.assertArrayEquals(new int[] { 1 }, this.cleanupFile.getPendingRecords().get("resA"));
+
+		this.cleanupFile.markForgotten(1);
+		Assert.assertEquals(0, this.cleanupFile.getPendingCount());
+		Assert.assertTrue(this.cleanupFile.getPendingRecords().isEmpty());
+	}
+
+	@Test
+	public void testTimingCompress() {
+		Xid xid0 = this.createXid();
+		Xid xid1 = this.createXid();
+		Xid xid2 = this.createXid();
+		this.cleanupFile.forget(xid0, "resA");
+		this.cleanupFile.forget(xid1, "resB");
+		this.cleanupFile.forget(xid2, "resA");
+		this.cleanupFile.markForgotten(0);
+
+		this.cleanupFile.timingCompress();
+		int endIndex = CleanupFile.CONSTANTS_START_INDEX + 2 * CleanupFile.CONSTANTS_RECORD_UNIT;
+		Assert.assertEquals(2, this.cleanupFile.getRecordCount());
+		Assert.assertEquals(endIndex, this.cleanupFile.getEndIndex());
+		Assert.assertEquals(endIndex, new File(this.folder.getRoot(), "cleanup-1.log").length());
+
+		Map<String, int[]> pendingRecords = this.cleanupFile.getPendingRecords();
+		Assert.assertArrayEquals(new int[] { 1 }, pendingRecords.get("resA"));
+		Assert.assertArrayEquals(new int[] { 0 }, pendingRecords.get("resB"));
+		this.assertXidEquals(xid1, this.cleanupFile.getXid(0));
+		this.assertXidEquals(xid2, this.cleanupFile.getXid(1));
+
+		Xid xid3 = this.createXid();
+		this.cleanupFile.forget(xid3, "resB"); // grows again after the truncation
+		Assert.assertEquals(3, this.cleanupFile.getRecordCount());
+		this.assertXidEquals(xid3, this.cleanupFile.getXid(2));
+	}
+
+	@Test
+	public void testStartupRecover() {
+		Xid xid0 = this.createXid();
+		Xid xid1 = this.createXid();
+		this.cleanupFile.forget(xid0, "resA");
+		this.cleanupFile.forget(xid1, "resB");
+		this.cleanupFile.destroy();
+
+		this.cleanupFile = this.createCleanupFile(false);
+		this.cleanupFile.startupRecover();
+		Assert.assertEquals(2, this.cleanupFile.getRecordCount());
+		Assert.assertEquals(2, this.cleanupFile.getPendingCount());
+
+		Map<String, int[]> pendingRecords = this.cleanupFile.getPendingRecords();
+		Assert.assertArrayEquals(new int[] { 0 }, pendingRecords.get("resA"));
+		Assert.assertArrayEquals(new int[] { 1 }, pendingRecords.get("resB"));
+		this.assertXidEquals(xid0, this.cleanupFile.getXid(0));
+		this.assertXidEquals(xid1, this.cleanupFile.getXid(1));
+	}
+
+	@Test
+	public void testRemove() {
+		this.cleanupFile.forget(this.createXid(), "resA");
+		this.cleanupFile.remove();
+		Assert.assertFalse(new File(this.folder.getRoot(), "cleanup-1.log").exists());
+	}
+
+	@Test
+	public void testParseSequence() {
+		Assert.assertEquals(12, CleanupFile.parseSequence("cleanup-12.log"));
+		Assert.assertEquals(-1, CleanupFile.parseSequence("cleanup-x.log"));
+		Assert.assertEquals(-1, CleanupFile.parseSequence("resource1.log"));
+	}
+
+	@Test
+	public void testMaxSegmentSize() {
+		CleanupWork cleanupWork = new CleanupWork();
+		cleanupWork.setMaxSegmentSize(CleanupFile.CONSTANTS_MAX_SEGMENT_SIZE);
+		Assert.assertEquals(CleanupFile.CONSTANTS_MAX_SEGMENT_SIZE, cleanupWork.getMaxSegmentSize());
+
+		int[] illegalSizes = new int[] { CleanupFile.CONSTANTS_START_INDEX, CleanupFile.CONSTANTS_MAX_SEGMENT_SIZE + 1,
+				Integer.MAX_VALUE };
+		for (int i = 0; i < illegalSizes.length; i++) {
+			try {
+				cleanupWork.setMaxSegmentSize(illegalSizes[i]);
+				Assert.fail();
+			} catch (IllegalArgumentException ex) {
+				Assert.assertEquals(CleanupFile.CONSTANTS_MAX_SEGMENT_SIZE, cleanupWork.getMaxSegmentSize());
+			}
+		}
+	}
+
+}
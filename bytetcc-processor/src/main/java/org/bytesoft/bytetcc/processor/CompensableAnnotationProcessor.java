@@ -0,0 +1,378 @@
+/**
+ * Copyright 2014-2017 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.bytesoft.compensable.Compensable;
+import org.bytesoft.compensable.CompensableCancel;
+import org.bytesoft.compensable.CompensableConfirm;
+import org.bytesoft.compensable.CompensableIndex;
+import org.bytesoft.compensable.RemotingException;
+
+/**
+ * Validates the compensable services at compile time against the rules checked by the runtime config validators, and
+ * generates the index ({@link CompensableIndex#RESOURCE_LOCATION}) of the services and their confirm/cancel methods,
+ * which allows the runtime validators to skip the reflective scan of the bean classes.
+ */
+public class CompensableAnnotationProcessor extends AbstractProcessor {
+	static final String TRANSACTIONAL = "org.springframework.transaction.annotation.Transactional";
+
+	private final Map<String, CompensableIndex> indexMap = new TreeMap<String, CompensableIndex>();
+
+	private Elements elements;
+	private Types types;
+	private Messager messager;
+
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.elements = processingEnv.getElementUtils();
+		this.types = processingEnv.getTypeUtils();
+		this.messager = processingEnv.getMessager();
+	}
+
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(Compensable.class.getName());
+	}
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			this.writeIndex();
+			return false;
+		}
+
+		TypeElement compensableType = this.elements.getTypeElement(Compensable.class.getName());
+		if (compensableType == null) {
+			return false;
+		}
+
+		Set<? extends Element> elementSet = roundEnv.getElementsAnnotatedWith(compensableType);
+		for (Iterator<? extends Element> itr = elementSet.iterator(); itr.hasNext();) {
+			Element element = itr.next();
+			if (element.getKind() != ElementKind.CLASS) {
+				this.error(element, "@Compensable can only be annotated on a class.");
+				continue;
+			}
+
+			CompensableIndex index = this.processCompensable((TypeElement) element);
+			if (index != null) {
+				this.indexMap.put(index.getClassName(), index);
+			}
+		}
+
+		return false;
+	}
+
+	private CompensableIndex processCompensable(TypeElement clazz) {
+		AnnotationMirror compensable = this.getAnnotationMirror(clazz, Compensable.class.getName());
+		Object interfaceValue = this.getAnnotationValue(compensable, "interfaceClass");
+		if (interfaceValue instanceof TypeMirror == false) {
+			return null; // unresolved, which has been reported by the compiler
+		}
+		TypeMirror interfaceType = (TypeMirror) interfaceValue;
+		boolean simplified = (Boolean) this.getAnnotationValue(compensable, "simplified");
+		String confirmableKey = (String) this.getAnnotationValue(compensable, "confirmableKey");
+		String cancellableKey = (String) this.getAnnotationValue(compensable, "cancellableKey");
+
+		Element interfaceElement = this.types.asElement(interfaceType);
+		if (interfaceElement == null || interfaceElement.getKind() != ElementKind.INTERFACE) {
+			this.error(clazz, "Compensable's interfaceClass must be a interface.");
+			return null;
+		}
+		TypeElement interfaceClass = (TypeElement) interfaceElement;
+
+		List<ExecutableElement> interfaceMethods = ElementFilter.methodsIn(interfaceClass.getEnclosedElements());
+		List<ExecutableElement> classMethods = ElementFilter.methodsIn(this.elements.getAllMembers(clazz));
+
+		boolean success = true;
+		ExecutableElement[] compensates = new ExecutableElement[2];
+		for (int i = 0; i < interfaceMethods.size(); i++) {
+			ExecutableElement interfaceMethod = interfaceMethods.get(i);
+			if (interfaceMethod.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+
+			ExecutableElement method = this.getMethod(classMethods, interfaceMethod);
+			if (method == null) {
+				this.error(clazz,
+						String.format("Compensable-service(%s) does not implement method '%s' specified by the interfaceClass.",
+								clazz.getQualifiedName(), interfaceMethod.getSimpleName()));
+				success = false;
+				continue;
+			}
+
+			if (simplified) {
+				success = this.validateSimplifiedCompensable(method, clazz, interfaceMethods.size(), compensates) && success;
+			}
+			success = this.validateDeclaredRemotingException(method) && success;
+			success = this.validateTransactionalPropagation(method) && success;
+		}
+
+		if (success == false) {
+			return null;
+		}
+
+		return new CompensableIndex(this.elements.getBinaryName(clazz).toString(),
+				this.elements.getBinaryName(interfaceClass).toString(), simplified, confirmableKey, cancellableKey);
+	}
+
+	private ExecutableElement getMethod(List<ExecutableElement> methods, ExecutableElement interfaceMethod) {
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			if (method.getModifiers().contains(Modifier.PUBLIC) == false
+					|| method.getModifiers().contains(Modifier.ABSTRACT)) {
+				continue;
+			} else if (method.getSimpleName().equals(interfaceMethod.getSimpleName()) == false) {
+				continue;
+			} else if (this.isSameParameterTypes(method, interfaceMethod)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private boolean isSameParameterTypes(ExecutableElement method, ExecutableElement other) {
+		List<? extends VariableElement> parameters = method.getParameters();
+		List<? extends VariableElement> otherParameters = other.getParameters();
+		if (parameters.size() != otherParameters.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < parameters.size(); i++) {
+			TypeMirror parameterType = this.types.erasure(parameters.get(i).asType());
+			TypeMirror otherParameterType = this.types.erasure(otherParameters.get(i).asType());
+			if (this.types.isSameType(parameterType, otherParameterType) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* compensates[0] and compensates[1] will be the confirm and cancel method of the simplified compensable service. */
+	private boolean validateSimplifiedCompensable(ExecutableElement method, TypeElement clazz, int interfaceMethodCount,
+			ExecutableElement[] compensates) {
+		if (this.getAnnotationMirror(method, CompensableConfirm.class.getName()) != null) {
+			this.error(method, String.format("The try method(%s) can not be the same as the confirm method!", method));
+			return false;
+		} else if (this.getAnnotationMirror(method, CompensableCancel.class.getName()) != null) {
+			this.error(method, String.format("The try method(%s) can not be the same as the cancel method!", method));
+			return false;
+		} else if (interfaceMethodCount > 1) {
+			this.error(clazz, String.format(
+					"The interface bound by @Compensable(simplified= true) supports only one method, class= %s!",
+					clazz.getQualifiedName()));
+			return false;
+		}
+
+		List<ExecutableElement> methodList = ElementFilter.methodsIn(clazz.getEnclosedElements());
+		for (int i = 0; i < methodList.size(); i++) {
+			ExecutableElement element = methodList.get(i);
+			boolean confirm = this.getAnnotationMirror(element, CompensableConfirm.class.getName()) != null;
+			boolean cancel = this.getAnnotationMirror(element, CompensableCancel.class.getName()) != null;
+			if (confirm == false && cancel == false) {
+				continue;
+			} else if (this.isSameParameterTypes(element, method) == false) {
+				this.error(element, String.format(
+						"The parameter types of confirm/cancel method(%s) is different from the try method(%s)!", element,
+						method));
+				return false;
+			}
+
+			int index = confirm ? 0 : 1;
+			if (compensates[index] != null) {
+				this.error(element, String.format("There are more than one %s method specified, class= %s!",
+						confirm ? "confirm" : "cancel", clazz.getQualifiedName()));
+				return false;
+			}
+			compensates[index] = element;
+		}
+
+		return true;
+	}
+
+	private boolean validateDeclaredRemotingException(ExecutableElement method) {
+		TypeElement remotingType = this.elements.getTypeElement(RemotingException.class.getName());
+		List<? extends TypeMirror> thrownTypes = method.getThrownTypes();
+		for (int i = 0; remotingType != null && i < thrownTypes.size(); i++) {
+			TypeMirror thrownType = thrownTypes.get(i);
+			if (this.types.isAssignable(thrownType, remotingType.asType())) {
+				this.error(method, String.format(
+						"The method(%s) shouldn't be declared to throw a remote exception: org.bytesoft.compensable.RemotingException!",
+						method));
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean validateTransactionalPropagation(ExecutableElement method) {
+		AnnotationMirror transactional = this.getAnnotationMirror(method, TRANSACTIONAL);
+		if (transactional == null) {
+			Element declaringClass = method.getEnclosingElement();
+			transactional = this.getAnnotationMirror(declaringClass, TRANSACTIONAL);
+		}
+
+		if (transactional == null) {
+			this.error(method, String.format("Method(%s) must be specificed a Transactional annotation!", method));
+			return false;
+		}
+
+		Object propagation = this.getAnnotationValue(transactional, "propagation");
+		String propagationName = propagation instanceof VariableElement
+				? ((VariableElement) propagation).getSimpleName().toString() : String.valueOf(propagation);
+		if ("REQUIRED".equals(propagationName) == false //
+				&& "MANDATORY".equals(propagationName) == false //
+				&& "REQUIRES_NEW".equals(propagationName) == false) {
+			this.error(method, String.format("Method(%s) not support propagation level: %s!", method, propagationName));
+			return false;
+		}
+		return true;
+	}
+
+	private AnnotationMirror getAnnotationMirror(Element element, String annotationName) {
+		List<? extends AnnotationMirror> mirrors = element.getAnnotationMirrors();
+		for (int i = 0; i < mirrors.size(); i++) {
+			AnnotationMirror mirror = mirrors.get(i);
+			TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+			if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	/* the value of the annotation attribute, including the default value. */
+	private Object getAnnotationValue(AnnotationMirror mirror, String name) {
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values = this.elements
+				.getElementValuesWithDefaults(mirror);
+		for (Iterator<? extends ExecutableElement> itr = values.keySet().iterator(); itr.hasNext();) {
+			ExecutableElement key = itr.next();
+			if (key.getSimpleName().contentEquals(name)) {
+				return values.get(key).getValue();
+			}
+		}
+		return null;
+	}
+
+	private void writeIndex() {
+		this.mergeExistingIndex();
+		if (this.indexMap.isEmpty()) {
+			return;
+		}
+
+		Writer writer = null;
+		try {
+			FileObject resource = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					CompensableIndex.RESOURCE_LOCATION);
+			writer = resource.openWriter();
+			writer.write("# generated by org.bytesoft.bytetcc.processor.CompensableAnnotationProcessor\n");
+			writer.write("# class= interfaceClass,simplified,confirmableKey,cancellableKey\n");
+			for (Iterator<CompensableIndex> itr = this.indexMap.values().iterator(); itr.hasNext();) {
+				CompensableIndex index = itr.next();
+				writer.write(index.getClassName());
+				writer.write('=');
+				writer.write(index.format());
+				writer.write('\n');
+			}
+		} catch (IOException ex) {
+			this.messager.printMessage(Diagnostic.Kind.ERROR,
+					String.format("Error occurred while writing %s: %s", CompensableIndex.RESOURCE_LOCATION, ex.getMessage()));
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ex) {
+					this.messager.printMessage(Diagnostic.Kind.WARNING, ex.getMessage());
+				}
+			}
+		}
+	}
+
+	/* keeps the entries generated by a previous (incremental) compilation whose classes are still compensable. */
+	private void mergeExistingIndex() {
+		Properties properties = new Properties();
+		InputStream input = null;
+		try {
+			FileObject resource = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+					CompensableIndex.RESOURCE_LOCATION);
+			input = resource.openInputStream();
+			properties.load(input);
+		} catch (IOException ex) {
+			return; // not exists
+		} catch (IllegalArgumentException ex) {
+			return; // not supported
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException ex) {
+					this.messager.printMessage(Diagnostic.Kind.WARNING, ex.getMessage());
+				}
+			}
+		}
+
+		for (Iterator<String> itr = properties.stringPropertyNames().iterator(); itr.hasNext();) {
+			String className = itr.next();
+			if (this.indexMap.containsKey(className)) {
+				continue;
+			}
+
+			TypeElement clazz = this.elements.getTypeElement(className.replace('$', '.'));
+			if (clazz != null && this.getAnnotationMirror(clazz, Compensable.class.getName()) != null) {
+				this.indexMap.put(className, CompensableIndex.parse(className, properties.getProperty(className)));
+			}
+		}
+	}
+
+	private void error(Element element, String message) {
+		this.messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
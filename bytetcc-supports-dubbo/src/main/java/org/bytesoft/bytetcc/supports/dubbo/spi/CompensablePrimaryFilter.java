@@ -31,7 +31,9 @@ import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry.InvocationDef;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
+import org.bytesoft.bytetcc.supports.CompensableTransactionLocator;
 import org.bytesoft.bytetcc.supports.dubbo.CompensableBeanRegistry;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
@@ -75,6 +77,8 @@ public class CompensablePrimaryFilter implements Filter {
 	static final String KEY_XA_GET_REMOTEADDR = "getRemoteAddr";
 	static final String KEY_XA_GET_REMOTENODE = "getRemoteNode";
 	static final String KEY_REMOTE_CIRCULARLY = "circularly";
+	static final String KEY_CONTEXT_COMPACT = "org.bytesoft.bytetcc.context"; // compact transaction context
+	static final String KEY_CONTEXT_CODEC = "org.bytesoft.bytetcc.codec"; // codec version supported by the sender
 
 	static final Logger logger = LoggerFactory.getLogger(CompensablePrimaryFilter.class);
 
@@ -152,7 +156,13 @@ public class CompensablePrimaryFilter implements Filter {
 		TransactionXid globalXid = xidFactory.createGlobalXid(xid.getGlobalTransactionId());
 		CompensableTransaction transaction = null;
 		try {
-			transaction = (CompensableTransaction) compensableRepository.getTransaction(globalXid);
+			// only the propagator is checked here, the transaction is read again under the lock by the coordinator
+			if (CompensableTransactionLocator.class.isInstance(compensableRepository)) {
+				CompensableTransactionLocator locator = (CompensableTransactionLocator) compensableRepository;
+				transaction = (CompensableTransaction) locator.locateTransaction(globalXid);
+			} else {
+				transaction = (CompensableTransaction) compensableRepository.getTransaction(globalXid);
+			}
 		} catch (TransactionException tex) {
 			CompensableServiceFilter.InvocationResult wrapped = new CompensableServiceFilter.InvocationResult();
 			wrapped.setError(new XAException(XAException.XAER_RMERR));
@@ -283,6 +293,7 @@ public class CompensablePrimaryFilter implements Filter {
 		if (attachRequired) {
 			wrapped.setVariable(Propagation.class.getName(), propagatedBy);
 			wrapped.setVariable(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+			wrapped.setVariable(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 		}
 
 		result.setException(null);
@@ -303,6 +314,7 @@ public class CompensablePrimaryFilter implements Filter {
 		if (attachRequired) {
 			wrapped.setVariable(Propagation.class.getName(), propagatedBy);
 			wrapped.setVariable(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+			wrapped.setVariable(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 		}
 
 		result.setException(null);
@@ -318,20 +330,19 @@ public class CompensablePrimaryFilter implements Filter {
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
 
 		RemotingException rpcError = null;
-		String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
 		String propagatedBy = invocation.getAttachment(RemoteCoordinator.class.getName());
-		if (StringUtils.isNotBlank(transactionContextContent)) {
-			byte[] requestByteArray = ByteUtils.stringToByteArray(transactionContextContent);
-			ByteArrayInputStream bais = new ByteArrayInputStream(requestByteArray);
-			HessianInput input = new HessianInput(bais);
-			try {
-				TransactionContext remoteTransactionContext = (TransactionContext) input.readObject();
+		String codecVersion = invocation.getAttachment(KEY_CONTEXT_CODEC);
+		TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(propagatedBy),
+				TransactionContextCodec.isVersionSupported(codecVersion));
+		try {
+			TransactionContext remoteTransactionContext = this.getTransactionContext(invocation);
+			if (remoteTransactionContext != null) {
 				remoteTransactionContext.setPropagatedBy(propagatedBy);
 				request.setTransactionContext(remoteTransactionContext);
-			} catch (IOException ex) {
-				logger.error("Error occurred in remote call!", ex);
-				rpcError = new RemotingException(ex.getMessage());
 			}
+		} catch (IOException ex) {
+			logger.error("Error occurred in remote call!", ex);
+			rpcError = new RemotingException(ex.getMessage());
 		}
 
 		try {
@@ -479,6 +490,7 @@ public class CompensablePrimaryFilter implements Filter {
 		invocationDef.setParameterTypes(invocation.getParameterTypes());
 
 		RemoteCoordinator participant = this.getParticipantByRemoteAddr(invoker, invocationDef);
+		String peerKey = TransactionContextCodec.getPeerKey(invoker.getUrl().getIp(), invoker.getUrl().getPort());
 
 		TransactionRequestImpl request = new TransactionRequestImpl();
 		request.setTransactionContext(nativeTransactionContext);
@@ -491,7 +503,7 @@ public class CompensablePrimaryFilter implements Filter {
 		RpcException invokeError = null;
 		Throwable serverError = null;
 		try {
-			this.beforeConsumerInvokeForSVC(invocation, request, response);
+			this.beforeConsumerInvokeForSVC(invocation, request, response, peerKey);
 			result = (RpcResult) invoker.invoke(invocation);
 
 			Object value = result.getValue();
@@ -509,6 +521,8 @@ public class CompensablePrimaryFilter implements Filter {
 
 				String propagatedBy = (String) wrapped.getVariable(Propagation.class.getName());
 				String instanceId = (String) wrapped.getVariable(RemoteCoordinator.class.getName());
+				String codecVersion = (String) wrapped.getVariable(KEY_CONTEXT_CODEC);
+				TransactionContextCodec.setCompactSupported(peerKey, TransactionContextCodec.isVersionSupported(codecVersion));
 				// String circularly = (String) wrapped.getVariable(KEY_REMOTE_CIRCULARLY);
 
 				boolean participantInvolved = StringUtils.isNotBlank(propagatedBy) || StringUtils.isNotBlank(instanceId);
@@ -659,7 +673,7 @@ public class CompensablePrimaryFilter implements Filter {
 	// }
 
 	private void beforeConsumerInvokeForSVC(Invocation invocation, TransactionRequestImpl request,
-			TransactionResponseImpl response) {
+			TransactionResponseImpl response, String peerKey) {
 		CompensableBeanRegistry beanRegistry = CompensableBeanRegistry.getInstance();
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
@@ -667,23 +681,52 @@ public class CompensablePrimaryFilter implements Filter {
 
 		Map<String, String> attachments = invocation.getAttachments();
 		attachments.put(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+		attachments.put(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 
 		transactionInterceptor.beforeSendRequest(request);
-		if (request.getTransactionContext() != null) {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			HessianOutput output = new HessianOutput(baos);
-			try {
-				output.writeObject(request.getTransactionContext());
-			} catch (IOException ex) {
-				logger.error("Error occurred in remote call!", ex);
-				throw new RemotingException(ex.getMessage());
-			}
+		if (request.getTransactionContext() == null) {
+			return;
+		}
+
+		// the legacy attachment is always sent: the invocation may be retried by the cluster on a peer of an older version.
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HessianOutput output = new HessianOutput(baos);
+		try {
+			output.writeObject(request.getTransactionContext());
+		} catch (IOException ex) {
+			logger.error("Error occurred in remote call!", ex);
+			throw new RemotingException(ex.getMessage());
+		}
 
-			String transactionContextContent = ByteUtils.byteArrayToString(baos.toByteArray());
-			attachments.put(TransactionContext.class.getName(), transactionContextContent);
+		String transactionContextContent = ByteUtils.byteArrayToString(baos.toByteArray());
+		attachments.put(TransactionContext.class.getName(), transactionContextContent);
+
+		if (TransactionContextCodec.isCompactSupported(peerKey)) {
+			attachments.put(KEY_CONTEXT_COMPACT, TransactionContextCodec.encodeToString(request.getTransactionContext()));
+		} else {
+			attachments.remove(KEY_CONTEXT_COMPACT);
 		}
 	}
 
+	/* the transaction context attached by the consumer, in the compact form if the consumer knows it is supported. */
+	private TransactionContext getTransactionContext(Invocation invocation) throws IOException {
+		String compactContent = invocation.getAttachment(KEY_CONTEXT_COMPACT);
+		if (StringUtils.isNotBlank(compactContent)) {
+			CompensableBeanFactory beanFactory = CompensableBeanRegistry.getInstance().getBeanFactory();
+			return TransactionContextCodec.decodeFromString(compactContent, beanFactory.getCompensableXidFactory());
+		}
+
+		String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
+		if (StringUtils.isBlank(transactionContextContent)) {
+			return null;
+		}
+
+		byte[] byteArray = ByteUtils.stringToByteArray(transactionContextContent);
+		ByteArrayInputStream bais = new ByteArrayInputStream(byteArray);
+		HessianInput input = new HessianInput(bais);
+		return (TransactionContext) input.readObject();
+	}
+
 	private void afterConsumerInvokeForSVC(Invocation invocation, TransactionRequestImpl request,
 			TransactionResponseImpl response) {
 		CompensableBeanRegistry beanRegistry = CompensableBeanRegistry.getInstance();
@@ -692,13 +735,10 @@ public class CompensablePrimaryFilter implements Filter {
 
 		RemotingException rpcError = null;
 		try {
+			// the provider never returns its context, which is decoded from the attachment sent with the request, so
+			// that the response does not share the context object of the request.
 			if (request.getTransactionContext() != null) {
-				String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
-				byte[] byteArray = ByteUtils.stringToByteArray(transactionContextContent);
-				ByteArrayInputStream bais = new ByteArrayInputStream(byteArray);
-				HessianInput input = new HessianInput(bais);
-				TransactionContext remoteTransactionContext = (TransactionContext) input.readObject();
-				response.setTransactionContext(remoteTransactionContext);
+				response.setTransactionContext(this.getTransactionContext(invocation));
 			}
 		} catch (IOException ex) {
 			logger.error("Error occurred in remote call!", ex);
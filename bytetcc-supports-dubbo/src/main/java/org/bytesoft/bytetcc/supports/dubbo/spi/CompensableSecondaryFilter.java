@@ -32,6 +32,7 @@ import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry.Invocati
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.supports.dubbo.CompensableBeanRegistry;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
@@ -75,6 +76,8 @@ public class CompensableSecondaryFilter implements Filter {
 	static final String KEY_XA_GET_REMOTEADDR = "getRemoteAddr";
 	static final String KEY_XA_GET_REMOTENODE = "getRemoteNode";
 	static final String KEY_REMOTE_CIRCULARLY = "circularly";
+	static final String KEY_CONTEXT_COMPACT = "org.bytesoft.bytetcc.context"; // compact transaction context
+	static final String KEY_CONTEXT_CODEC = "org.bytesoft.bytetcc.codec"; // codec version supported by the sender
 
 	static final Logger logger = LoggerFactory.getLogger(CompensableSecondaryFilter.class);
 
@@ -283,6 +286,7 @@ public class CompensableSecondaryFilter implements Filter {
 		if (attachRequired) {
 			wrapped.setVariable(Propagation.class.getName(), propagatedBy);
 			wrapped.setVariable(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+			wrapped.setVariable(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 		}
 
 		result.setException(null);
@@ -303,6 +307,7 @@ public class CompensableSecondaryFilter implements Filter {
 		if (attachRequired) {
 			wrapped.setVariable(Propagation.class.getName(), propagatedBy);
 			wrapped.setVariable(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+			wrapped.setVariable(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 		}
 
 		result.setException(null);
@@ -318,20 +323,19 @@ public class CompensableSecondaryFilter implements Filter {
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
 
 		RemotingException rpcError = null;
-		String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
 		String propagatedBy = invocation.getAttachment(RemoteCoordinator.class.getName());
-		if (StringUtils.isNotBlank(transactionContextContent)) {
-			byte[] requestByteArray = ByteUtils.stringToByteArray(transactionContextContent);
-			ByteArrayInputStream bais = new ByteArrayInputStream(requestByteArray);
-			HessianInput input = new HessianInput(bais);
-			try {
-				TransactionContext remoteTransactionContext = (TransactionContext) input.readObject();
+		String codecVersion = invocation.getAttachment(KEY_CONTEXT_CODEC);
+		TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(propagatedBy),
+				TransactionContextCodec.isVersionSupported(codecVersion));
+		try {
+			TransactionContext remoteTransactionContext = this.getTransactionContext(invocation);
+			if (remoteTransactionContext != null) {
 				remoteTransactionContext.setPropagatedBy(propagatedBy);
 				request.setTransactionContext(remoteTransactionContext);
-			} catch (IOException ex) {
-				logger.error("Error occurred in remote call!", ex);
-				rpcError = new RemotingException(ex.getMessage());
 			}
+		} catch (IOException ex) {
+			logger.error("Error occurred in remote call!", ex);
+			rpcError = new RemotingException(ex.getMessage());
 		}
 
 		try {
@@ -476,6 +480,7 @@ public class CompensableSecondaryFilter implements Filter {
 		invocationDef.setParameterTypes(invocation.getParameterTypes());
 
 		RemoteCoordinator participant = this.getParticipantByRemoteAddr(invoker, invocationDef);
+		String peerKey = TransactionContextCodec.getPeerKey(invoker.getUrl().getIp(), invoker.getUrl().getPort());
 
 		TransactionRequestImpl request = new TransactionRequestImpl();
 		request.setTransactionContext(nativeTransactionContext);
@@ -488,7 +493,7 @@ public class CompensableSecondaryFilter implements Filter {
 		RpcException invokeError = null;
 		Throwable serverError = null;
 		try {
-			this.beforeConsumerInvokeForSVC(invocation, request, response);
+			this.beforeConsumerInvokeForSVC(invocation, request, response, peerKey);
 			result = (RpcResult) invoker.invoke(invocation);
 
 			Object value = result.getValue();
@@ -506,6 +511,8 @@ public class CompensableSecondaryFilter implements Filter {
 
 				String propagatedBy = (String) wrapped.getVariable(Propagation.class.getName());
 				String instanceId = (String) wrapped.getVariable(RemoteCoordinator.class.getName());
+				String codecVersion = (String) wrapped.getVariable(KEY_CONTEXT_CODEC);
+				TransactionContextCodec.setCompactSupported(peerKey, TransactionContextCodec.isVersionSupported(codecVersion));
 				// String circularly = (String) wrapped.getVariable(KEY_REMOTE_CIRCULARLY);
 
 				boolean participantInvolved = StringUtils.isNotBlank(propagatedBy) || StringUtils.isNotBlank(instanceId);
@@ -601,7 +608,7 @@ public class CompensableSecondaryFilter implements Filter {
 	}
 
 	private void beforeConsumerInvokeForSVC(Invocation invocation, TransactionRequestImpl request,
-			TransactionResponseImpl response) {
+			TransactionResponseImpl response, String peerKey) {
 		CompensableBeanRegistry beanRegistry = CompensableBeanRegistry.getInstance();
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
@@ -609,21 +616,50 @@ public class CompensableSecondaryFilter implements Filter {
 
 		Map<String, String> attachments = invocation.getAttachments();
 		attachments.put(RemoteCoordinator.class.getName(), compensableCoordinator.getIdentifier());
+		attachments.put(KEY_CONTEXT_CODEC, String.valueOf(TransactionContextCodec.VERSION));
 
 		transactionInterceptor.beforeSendRequest(request);
-		if (request.getTransactionContext() != null) {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			HessianOutput output = new HessianOutput(baos);
-			try {
-				output.writeObject(request.getTransactionContext());
-			} catch (IOException ex) {
-				logger.error("Error occurred in remote call!", ex);
-				throw new RemotingException(ex.getMessage());
-			}
+		if (request.getTransactionContext() == null) {
+			return;
+		}
+
+		// the legacy attachment is always sent: the invocation may be retried by the cluster on a peer of an older version.
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HessianOutput output = new HessianOutput(baos);
+		try {
+			output.writeObject(request.getTransactionContext());
+		} catch (IOException ex) {
+			logger.error("Error occurred in remote call!", ex);
+			throw new RemotingException(ex.getMessage());
+		}
+
+		String transactionContextContent = ByteUtils.byteArrayToString(baos.toByteArray());
+		attachments.put(TransactionContext.class.getName(), transactionContextContent);
+
+		if (TransactionContextCodec.isCompactSupported(peerKey)) {
+			attachments.put(KEY_CONTEXT_COMPACT, TransactionContextCodec.encodeToString(request.getTransactionContext()));
+		} else {
+			attachments.remove(KEY_CONTEXT_COMPACT);
+		}
+	}
+
+	/* the transaction context attached by the consumer, in the compact form if the consumer knows it is supported. */
+	private TransactionContext getTransactionContext(Invocation invocation) throws IOException {
+		String compactContent = invocation.getAttachment(KEY_CONTEXT_COMPACT);
+		if (StringUtils.isNotBlank(compactContent)) {
+			CompensableBeanFactory beanFactory = CompensableBeanRegistry.getInstance().getBeanFactory();
+			return TransactionContextCodec.decodeFromString(compactContent, beanFactory.getCompensableXidFactory());
+		}
 
-			String transactionContextContent = ByteUtils.byteArrayToString(baos.toByteArray());
-			attachments.put(TransactionContext.class.getName(), transactionContextContent);
+		String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
+		if (StringUtils.isBlank(transactionContextContent)) {
+			return null;
 		}
+
+		byte[] byteArray = ByteUtils.stringToByteArray(transactionContextContent);
+		ByteArrayInputStream bais = new ByteArrayInputStream(byteArray);
+		HessianInput input = new HessianInput(bais);
+		return (TransactionContext) input.readObject();
 	}
 
 	private void afterConsumerInvokeForSVC(Invocation invocation, TransactionRequestImpl request,
@@ -634,13 +670,10 @@ public class CompensableSecondaryFilter implements Filter {
 
 		RemotingException rpcError = null;
 		try {
+			// the provider never returns its context, which is decoded from the attachment sent with the request, so
+			// that the response does not share the context object of the request.
 			if (request.getTransactionContext() != null) {
-				String transactionContextContent = invocation.getAttachment(TransactionContext.class.getName());
-				byte[] byteArray = ByteUtils.stringToByteArray(transactionContextContent);
-				ByteArrayInputStream bais = new ByteArrayInputStream(byteArray);
-				HessianInput input = new HessianInput(bais);
-				TransactionContext remoteTransactionContext = (TransactionContext) input.readObject();
-				response.setTransactionContext(remoteTransactionContext);
+				response.setTransactionContext(this.getTransactionContext(invocation));
 			}
 		} catch (IOException ex) {
 			logger.error("Error occurred in remote call!", ex);
@@ -19,24 +19,34 @@ import java.lang.reflect.Proxy;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
+import org.bytesoft.bytetcc.supports.web.CompensableCoordinatorClient;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
-public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware, EnvironmentAware {
+@SuppressWarnings("deprecation")
+public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware, EnvironmentAware, DisposableBean {
 	static final Logger logger = LoggerFactory.getLogger(SpringBootBeanRegistry.class);
 	private static final SpringBootBeanRegistry instance = new SpringBootBeanRegistry();
 
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private RestTemplate restTemplate;
+	private CompensableCoordinatorClient coordinatorClient;
+	private boolean coordinatorClientCreated;
+	private RestTemplate coordinatorRestTemplate;
+	private AsyncRestTemplate asyncRestTemplate;
+	private AsyncRestTemplate coordinatorAsyncRestTemplate;
 	private Environment environment;
 
 	private SpringBootBeanRegistry() {
@@ -64,7 +74,8 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 			handler.setEnvironment(this.environment);
 
 			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-					SpringBootCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class }, handler);
+					SpringBootCoordinator.class.getClassLoader(),
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 
 			registry.putPhysicalInstance(remoteAddr, participant);
 			registry.putRemoteNode(remoteAddr, CommonUtils.getRemoteNode(identifier));
@@ -74,6 +85,58 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 		return registry.getPhysicalInstance(remoteAddr);
 	}
 
+	/* the transaction rest template, or one over the pooled coordinator client if none has been registered. */
+	public RestTemplate getCoordinatorRestTemplate() {
+		if (this.restTemplate != null) {
+			return this.restTemplate;
+		}
+
+		synchronized (this) {
+			if (this.coordinatorRestTemplate == null) {
+				CompensableCoordinatorClient client = this.initCoordinatorClientIfNecessary();
+				this.coordinatorRestTemplate = new RestTemplate(client.getRequestFactory());
+			}
+			return this.coordinatorRestTemplate;
+		}
+	}
+
+	/* the transaction async rest template, or one over the pooled coordinator client if none has been registered. */
+	public AsyncRestTemplate getCoordinatorAsyncRestTemplate() {
+		if (this.asyncRestTemplate != null) {
+			return this.asyncRestTemplate;
+		}
+
+		synchronized (this) {
+			if (this.coordinatorAsyncRestTemplate == null) {
+				CompensableCoordinatorClient client = this.initCoordinatorClientIfNecessary();
+				this.coordinatorAsyncRestTemplate = new AsyncRestTemplate(client.getAsyncRequestFactory());
+			}
+			return this.coordinatorAsyncRestTemplate;
+		}
+	}
+
+	private synchronized CompensableCoordinatorClient initCoordinatorClientIfNecessary() {
+		if (this.coordinatorClient == null) {
+			CompensableCoordinatorClient client = new CompensableCoordinatorClient();
+			client.setEnvironment(this.environment);
+			client.afterPropertiesSet();
+			this.coordinatorClient = client;
+			this.coordinatorClientCreated = true;
+		}
+		return this.coordinatorClient;
+	}
+
+	/* closes the coordinator client created on demand, a registered one is closed as a bean of its own. */
+	public synchronized void destroy() {
+		if (this.coordinatorClientCreated) {
+			this.coordinatorClient.destroy();
+			this.coordinatorClient = null;
+			this.coordinatorClientCreated = false;
+			this.coordinatorRestTemplate = null;
+			this.coordinatorAsyncRestTemplate = null;
+		}
+	}
+
 	public RestTemplate getRestTemplate() {
 		return restTemplate;
 	}
@@ -82,6 +145,22 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 		this.restTemplate = restTemplate;
 	}
 
+	public AsyncRestTemplate getAsyncRestTemplate() {
+		return asyncRestTemplate;
+	}
+
+	public void setAsyncRestTemplate(AsyncRestTemplate asyncRestTemplate) {
+		this.asyncRestTemplate = asyncRestTemplate;
+	}
+
+	public synchronized CompensableCoordinatorClient getCoordinatorClient() {
+		return coordinatorClient;
+	}
+
+	public synchronized void setCoordinatorClient(CompensableCoordinatorClient coordinatorClient) {
+		this.coordinatorClient = coordinatorClient;
+	}
+
 	public void setBeanFactory(CompensableBeanFactory tbf) {
 		this.beanFactory = tbf;
 	}
@@ -24,13 +24,16 @@ import org.bytesoft.bytetcc.supports.spring.SpringContextRegistry;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.web.CompensableHandlerInterceptor;
 import org.bytesoft.bytetcc.supports.springboot.web.CompensableRequestInterceptor;
+import org.bytesoft.bytetcc.supports.web.CompensableCoordinatorClient;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationContext;
@@ -126,20 +129,23 @@ public class SpringBootConfiguration implements TransactionManagementConfigurer,
 		return new CompensableRequestInterceptor();
 	}
 
-	@SuppressWarnings("deprecation")
-	@org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean(ClientHttpRequestFactory.class)
 	@org.springframework.context.annotation.Bean
-	public ClientHttpRequestFactory defaultRequestFactory() {
-		return new org.springframework.http.client.Netty4ClientHttpRequestFactory();
+	public CompensableCoordinatorClient compensableCoordinatorClient() {
+		return new CompensableCoordinatorClient();
 	}
 
 	@org.springframework.context.annotation.Bean
-	public SpringBootBeanRegistry springBootBeanRegistry(@Autowired ClientHttpRequestFactory requestFactory) {
+	public SpringBootBeanRegistry springBootBeanRegistry(
+			@Autowired CompensableCoordinatorClient coordinatorClient,
+			@Autowired @Qualifier(CompensableCoordinatorClient.REQUEST_FACTORY_QUALIFIER) //
+			ObjectProvider<ClientHttpRequestFactory> requestFactoryProvider) {
 		SpringBootBeanRegistry springBootBeanRegistry = SpringBootBeanRegistry.getInstance();
 
 		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory);
+		ClientHttpRequestFactory requestFactory = requestFactoryProvider.getIfAvailable();
+		restTemplate.setRequestFactory(requestFactory == null ? coordinatorClient.getRequestFactory() : requestFactory);
 
+		springBootBeanRegistry.setCoordinatorClient(coordinatorClient);
 		springBootBeanRegistry.setRestTemplate(restTemplate);
 
 		return springBootBeanRegistry;
@@ -23,6 +23,7 @@ import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootCoordinator;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteNode;
@@ -64,7 +65,8 @@ public class XAResourceDeserializerImpl implements XAResourceDeserializer, Appli
 			springCloudCoordinator.setEnvironment(this.environment);
 
 			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-					SpringBootCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class },
+					SpringBootCoordinator.class.getClassLoader(),
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class },
 					springCloudCoordinator);
 
 			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(identifier);
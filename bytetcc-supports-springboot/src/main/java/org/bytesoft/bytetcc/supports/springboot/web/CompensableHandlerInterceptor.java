@@ -24,9 +24,9 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.controller.CompensableCoordinatorController;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.Compensable;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
@@ -50,6 +50,7 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION";
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION";
 	static final String HEADER_RECURSIVELY_KEY = "X-BYTETCC-RECURSIVELY";
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC";
 
 	private String identifier;
 	private ApplicationContext applicationContext;
@@ -94,12 +95,15 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 
 		byte[] byteArray = transactionText == null ? new byte[0] : Base64.getDecoder().decode(transactionText);
 
+		boolean compact = TransactionContextCodec.isVersionSupported(request.getHeader(HEADER_CODEC_KEY));
 		TransactionContext transactionContext = null;
 		if (byteArray != null && byteArray.length > 0) {
-			transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+			transactionContext = TransactionContextCodec.deserialize(byteArray, beanFactory.getCompensableXidFactory());
 			transactionContext.setPropagated(true);
 			transactionContext.setPropagatedBy(propagationText);
 		}
+		TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(propagationText), compact);
+		request.setAttribute(TransactionContext.class.getName(), transactionContext);
 
 		TransactionRequestImpl req = new TransactionRequestImpl();
 		req.setTransactionContext(transactionContext);
@@ -111,10 +115,12 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		String propagatedBy = (String) compensable.getTransactionContext().getPropagatedBy();
 
-		byte[] responseByteArray = SerializeUtils.serializeObject(compensable.getTransactionContext());
+		byte[] responseByteArray = TransactionContextCodec.serialize(compensable.getTransactionContext(),
+				transactionContext, request.getHeader(HEADER_CODEC_KEY));
 		String compensableStr = Base64.getEncoder().encodeToString(responseByteArray);
 		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
+		response.setHeader(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
 		response.setHeader(HEADER_RECURSIVELY_KEY,
 				String.valueOf(StringUtils.equalsIgnoreCase(propagatedBy, propagationText) == false));
 
@@ -161,10 +167,13 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] byteArray = SerializeUtils.serializeObject(transactionContext);
+		TransactionContext requestContext = (TransactionContext) request.getAttribute(TransactionContext.class.getName());
+		byte[] byteArray = TransactionContextCodec.serialize(transactionContext, requestContext,
+				request.getHeader(HEADER_CODEC_KEY));
 		String compensableStr = Base64.getEncoder().encodeToString(byteArray);
 		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
+		response.setHeader(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
 
 		TransactionResponseImpl resp = new TransactionResponseImpl();
 		resp.setTransactionContext(transactionContext);
@@ -24,14 +24,16 @@ import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.CompensableTransactionImpl;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootCoordinator;
 import org.bytesoft.common.utils.CommonUtils;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
+import org.bytesoft.compensable.CompensableTransaction;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteNode;
@@ -55,6 +57,7 @@ public class CompensableRequestInterceptor
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION";
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION";
 	static final String HEADER_RECURSIVELY_KEY = "X-BYTETCC-RECURSIVELY";
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC";
 	static final String PREFIX_TRANSACTION_KEY = "/org/bytesoft/bytetcc";
 
 	private String identifier;
@@ -94,7 +97,7 @@ public class CompensableRequestInterceptor
 			throw clientEx;
 		} finally {
 			if (httpResponse != null) {
-				this.invokeAfterRecvResponse(httpResponse, serverFlag);
+				this.invokeAfterRecvResponse(httpRequest, httpResponse, serverFlag);
 			} // end-if (httpResponse != null)
 
 		}
@@ -113,19 +116,22 @@ public class CompensableRequestInterceptor
 
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] reqByteArray = SerializeUtils.serializeObject(transactionContext);
+		String targetHost = httpRequest.getURI().getHost();
+		int targetPort = httpRequest.getURI().getPort();
+
+		String peerKey = TransactionContextCodec.getPeerKey(targetHost, targetPort);
+		byte[] reqByteArray = TransactionContextCodec.serialize(transactionContext,
+				TransactionContextCodec.isCompactSupported(peerKey));
 		String reqTransactionStr = Base64.getEncoder().encodeToString(reqByteArray);
 
 		HttpHeaders reqHeaders = httpRequest.getHeaders();
 		reqHeaders.add(HEADER_TRANCACTION_KEY, reqTransactionStr);
 		reqHeaders.add(HEADER_PROPAGATION_KEY, this.identifier);
+		reqHeaders.add(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
 
 		TransactionRequestImpl request = new TransactionRequestImpl();
 		request.setTransactionContext(transactionContext);
 
-		String targetHost = httpRequest.getURI().getHost();
-		int targetPort = httpRequest.getURI().getPort();
-
 		RemoteAddr remoteAddr = new RemoteAddr();
 		remoteAddr.setServerHost(targetHost);
 		remoteAddr.setServerPort(targetPort);
@@ -136,7 +142,7 @@ public class CompensableRequestInterceptor
 			handler.setIdentifier(String.format("%s:%s:%s", targetHost, null, targetPort));
 			handler.setEnvironment(beanRegistry.getEnvironment());
 			participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringBootCoordinator.class.getClassLoader(),
-					new Class[] { RemoteCoordinator.class }, handler);
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 		}
 
 		request.setTargetTransactionCoordinator(participant);
@@ -144,7 +150,8 @@ public class CompensableRequestInterceptor
 		transactionInterceptor.beforeSendRequest(request);
 	}
 
-	private void invokeAfterRecvResponse(ClientHttpResponse httpResponse, boolean serverFlag) throws IOException {
+	private void invokeAfterRecvResponse(HttpRequest httpRequest, ClientHttpResponse httpResponse, boolean serverFlag)
+			throws IOException {
 		RemoteCoordinatorRegistry participantRegistry = RemoteCoordinatorRegistry.getInstance();
 		SpringBootBeanRegistry beanRegistry = SpringBootBeanRegistry.getInstance();
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
@@ -154,9 +161,18 @@ public class CompensableRequestInterceptor
 		String respTransactionStr = respHeaders.getFirst(HEADER_TRANCACTION_KEY);
 		String respPropagationStr = respHeaders.getFirst(HEADER_PROPAGATION_KEY);
 		String respRecursivelyStr = respHeaders.getFirst(HEADER_RECURSIVELY_KEY);
+		String respCodecStr = respHeaders.getFirst(HEADER_CODEC_KEY);
 
 		String instanceId = StringUtils.trimToEmpty(respPropagationStr);
 
+		if (StringUtils.isNotBlank(instanceId)) {
+			boolean compact = TransactionContextCodec.isVersionSupported(respCodecStr);
+			String targetHost = httpRequest.getURI().getHost();
+			int targetPort = httpRequest.getURI().getPort();
+			TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(targetHost, targetPort), compact);
+			TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(instanceId), compact);
+		} // end-if (StringUtils.isNotBlank(instanceId))
+
 		RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(instanceId);
 		RemoteNode remoteNode = CommonUtils.getRemoteNode(instanceId);
 		if (remoteAddr != null && remoteNode != null) {
@@ -165,9 +181,10 @@ public class CompensableRequestInterceptor
 
 		String transactionText = StringUtils.trimToNull(respTransactionStr);
 		byte[] byteArray = StringUtils.isBlank(transactionText) ? null : Base64.getDecoder().decode(transactionText);
-		TransactionContext serverContext = byteArray == null || byteArray.length == 0 //
-				? null
-				: (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		CompensableTransaction compensable = beanFactory.getCompensableManager().getCompensableTransactionQuietly();
+		TransactionContext requestContext = compensable == null ? null : compensable.getTransactionContext();
+		TransactionContext serverContext = TransactionContextCodec.deserialize(byteArray, requestContext,
+				beanFactory.getCompensableXidFactory());
 
 		TransactionResponseImpl txResp = new TransactionResponseImpl();
 		txResp.setTransactionContext(serverContext);
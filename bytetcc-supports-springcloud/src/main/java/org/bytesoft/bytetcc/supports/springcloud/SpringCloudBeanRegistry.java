@@ -20,25 +20,35 @@ import java.lang.reflect.Proxy;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.loadbalancer.CompensableLoadBalancerInterceptor;
+import org.bytesoft.bytetcc.supports.web.CompensableCoordinatorClient;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
-public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAware, EnvironmentAware {
+@SuppressWarnings("deprecation")
+public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAware, EnvironmentAware, DisposableBean {
 	static final Logger logger = LoggerFactory.getLogger(SpringCloudBeanRegistry.class);
 	private static final SpringCloudBeanRegistry instance = new SpringCloudBeanRegistry();
 
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private RestTemplate restTemplate;
+	private CompensableCoordinatorClient coordinatorClient;
+	private boolean coordinatorClientCreated;
+	private RestTemplate coordinatorRestTemplate;
+	private AsyncRestTemplate asyncRestTemplate;
+	private AsyncRestTemplate coordinatorAsyncRestTemplate;
 	private ThreadLocal<CompensableLoadBalancerInterceptor> interceptors = new ThreadLocal<CompensableLoadBalancerInterceptor>();
 	private Environment environment;
 	private transient boolean statefully;
@@ -74,7 +84,7 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		handler.setEnvironment(this.environment);
 
 		participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringCloudCoordinator.class.getClassLoader(),
-				new Class[] { RemoteCoordinator.class }, handler);
+				new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 
 		registry.putRemoteNode(remoteAddr, remoteNode);
 		registry.putParticipant(application, participant);
@@ -94,6 +104,58 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		this.interceptors.remove();
 	}
 
+	/* the transaction rest template, or one over the pooled coordinator client if none has been registered. */
+	public RestTemplate getCoordinatorRestTemplate() {
+		if (this.restTemplate != null) {
+			return this.restTemplate;
+		}
+
+		synchronized (this) {
+			if (this.coordinatorRestTemplate == null) {
+				CompensableCoordinatorClient client = this.initCoordinatorClientIfNecessary();
+				this.coordinatorRestTemplate = new RestTemplate(client.getRequestFactory());
+			}
+			return this.coordinatorRestTemplate;
+		}
+	}
+
+	/* the transaction async rest template, or one over the pooled coordinator client if none has been registered. */
+	public AsyncRestTemplate getCoordinatorAsyncRestTemplate() {
+		if (this.asyncRestTemplate != null) {
+			return this.asyncRestTemplate;
+		}
+
+		synchronized (this) {
+			if (this.coordinatorAsyncRestTemplate == null) {
+				CompensableCoordinatorClient client = this.initCoordinatorClientIfNecessary();
+				this.coordinatorAsyncRestTemplate = new AsyncRestTemplate(client.getAsyncRequestFactory());
+			}
+			return this.coordinatorAsyncRestTemplate;
+		}
+	}
+
+	private synchronized CompensableCoordinatorClient initCoordinatorClientIfNecessary() {
+		if (this.coordinatorClient == null) {
+			CompensableCoordinatorClient client = new CompensableCoordinatorClient();
+			client.setEnvironment(this.environment);
+			client.afterPropertiesSet();
+			this.coordinatorClient = client;
+			this.coordinatorClientCreated = true;
+		}
+		return this.coordinatorClient;
+	}
+
+	/* closes the coordinator client created on demand, a registered one is closed as a bean of its own. */
+	public synchronized void destroy() {
+		if (this.coordinatorClientCreated) {
+			this.coordinatorClient.destroy();
+			this.coordinatorClient = null;
+			this.coordinatorClientCreated = false;
+			this.coordinatorRestTemplate = null;
+			this.coordinatorAsyncRestTemplate = null;
+		}
+	}
+
 	public RestTemplate getRestTemplate() {
 		return restTemplate;
 	}
@@ -102,6 +164,22 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		this.restTemplate = restTemplate;
 	}
 
+	public AsyncRestTemplate getAsyncRestTemplate() {
+		return asyncRestTemplate;
+	}
+
+	public void setAsyncRestTemplate(AsyncRestTemplate asyncRestTemplate) {
+		this.asyncRestTemplate = asyncRestTemplate;
+	}
+
+	public synchronized CompensableCoordinatorClient getCoordinatorClient() {
+		return coordinatorClient;
+	}
+
+	public synchronized void setCoordinatorClient(CompensableCoordinatorClient coordinatorClient) {
+		this.coordinatorClient = coordinatorClient;
+	}
+
 	public void setBeanFactory(CompensableBeanFactory tbf) {
 		this.beanFactory = tbf;
 	}
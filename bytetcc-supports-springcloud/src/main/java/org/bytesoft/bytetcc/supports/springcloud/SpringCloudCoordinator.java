@@ -19,15 +19,24 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatchCodec;
+import org.bytesoft.bytetcc.supports.rpc.RemoteCoordinatorBatcher;
+import org.bytesoft.bytetcc.supports.rpc.RemoteCoordinatorBatcher.BatchInvoker;
+import org.bytesoft.bytetcc.supports.web.CompensableCoordinatorClient;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.remote.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.TransactionParticipant;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
@@ -35,8 +44,14 @@ import org.bytesoft.transaction.remote.RemoteNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
@@ -78,16 +93,18 @@ public class SpringCloudCoordinator implements InvocationHandler {
 			} else if ("prepare".equals(methodName)) {
 				return this.invokePostCoordinator(proxy, method, args);
 			} else if ("commit".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeCoalescedCoordinator(proxy, method, args);
 			} else if ("rollback".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeCoalescedCoordinator(proxy, method, args);
 			} else if ("recover".equals(methodName)) {
 				return this.invokeGetCoordinator(proxy, method, args);
 			} else if ("forget".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeCoalescedCoordinator(proxy, method, args);
 			} else {
 				throw new XAException(XAException.XAER_RMFAIL);
 			}
+		} else if (AsyncRemoteCoordinator.class.equals(clazz)) {
+			return this.invokeAsyncCoordinator(proxy, method, args);
 		} else {
 			throw new IllegalAccessException();
 		}
@@ -97,8 +114,7 @@ public class SpringCloudCoordinator implements InvocationHandler {
 
 		Class<?> returnType = method.getReturnType();
 		try {
-			RestTemplate transactionRestTemplate = SpringCloudBeanRegistry.getInstance().getRestTemplate();
-			RestTemplate restTemplate = transactionRestTemplate == null ? new RestTemplate() : transactionRestTemplate;
+			RestTemplate restTemplate = SpringCloudBeanRegistry.getInstance().getCoordinatorRestTemplate();
 
 			RemoteNode remoteNode = CommonUtils.getRemoteNode(this.identifier);
 			String contextPathKey = String.format("%s.%s", CONSTANT_CONTENT_PATH, remoteNode.getServiceKey());
@@ -156,7 +172,8 @@ public class SpringCloudCoordinator implements InvocationHandler {
 				throw xaEx;
 			}
 		} catch (Exception ex) {
-			XAException xaEx = new XAException(XAException.XAER_RMERR);
+			XAException xaEx = new XAException(CompensableCoordinatorClient.isPoolTimeout(ex) //
+					? XAException.XAER_RMFAIL : XAException.XAER_RMERR);
 			xaEx.initCause(ex);
 			throw xaEx;
 		}
@@ -167,8 +184,7 @@ public class SpringCloudCoordinator implements InvocationHandler {
 
 		Class<?> returnType = method.getReturnType();
 		try {
-			RestTemplate transactionRestTemplate = SpringCloudBeanRegistry.getInstance().getRestTemplate();
-			RestTemplate restTemplate = transactionRestTemplate == null ? new RestTemplate() : transactionRestTemplate;
+			RestTemplate restTemplate = SpringCloudBeanRegistry.getInstance().getCoordinatorRestTemplate();
 
 			RemoteNode remoteNode = CommonUtils.getRemoteNode(this.identifier);
 			String contextPathKey = String.format("%s.%s", CONSTANT_CONTENT_PATH, remoteNode.getServiceKey());
@@ -226,13 +242,198 @@ public class SpringCloudCoordinator implements InvocationHandler {
 				throw xaEx;
 			}
 		} catch (Exception ex) {
-			XAException xaEx = new XAException(XAException.XAER_RMERR);
+			XAException xaEx = new XAException(CompensableCoordinatorClient.isPoolTimeout(ex) //
+					? XAException.XAER_RMFAIL : XAException.XAER_RMERR);
 			xaEx.initCause(ex);
 			throw xaEx;
 		}
 
 	}
 
+	public Object invokeCoalescedCoordinator(final Object proxy, final Method method, Object[] args)
+			throws Throwable {
+		Xid xid = (Xid) args[0];
+		boolean onePhase = args.length > 1 && Boolean.TRUE.equals(args[1]);
+
+		RemoteCoordinatorBatcher batcher = RemoteCoordinatorBatcher.getInstance();
+		batcher.execute(this.identifier, method.getName(), onePhase, xid, new BatchInvoker() {
+			public void invoke(String methodName, boolean opc, Xid element) throws XAException {
+				Object[] arguments = method.getParameterTypes().length > 1 ? new Object[] { element, opc }
+						: new Object[] { element };
+				try {
+					invokePostCoordinator(proxy, method, arguments);
+				} catch (XAException ex) {
+					throw ex;
+				} catch (Throwable ex) {
+					XAException xaEx = new XAException(XAException.XAER_RMERR);
+					xaEx.initCause(ex);
+					throw xaEx;
+				}
+			}
+
+			public int[] invokeBatch(String methodName, boolean opc, List<Xid> xids, long timeoutMillis)
+					throws XAException {
+				return invokeBatchCoordinator(methodName, opc, xids, timeoutMillis);
+			}
+		});
+		return null;
+	}
+
+	/* returns null if the participant does not provide the batch endpoint. */
+	private int[] invokeBatchCoordinator(String methodName, boolean onePhase, List<Xid> xids, long timeoutMillis)
+			throws XAException {
+		try {
+			RestTemplate restTemplate = SpringCloudBeanRegistry.getInstance().getCoordinatorRestTemplate();
+
+			RemoteNode remoteNode = CommonUtils.getRemoteNode(this.identifier);
+			String contextPathKey = String.format("%s.%s", CONSTANT_CONTENT_PATH, remoteNode.getServiceKey());
+			String contextPath = StringUtils.isBlank(remoteNode.getServiceKey()) //
+					? null : StringUtils.trimToEmpty(this.environment.getProperty(contextPathKey));
+
+			StringBuilder ber = new StringBuilder();
+			ber.append("http://");
+
+			if (this.statefully) {
+				ber.append(remoteNode.getServerHost()).append(":").append(remoteNode.getServerPort());
+			} else {
+				ber.append(remoteNode.getServiceKey());
+			}
+
+			if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/")) {
+				ber.append(contextPath.startsWith("/") ? "" : "/").append(contextPath);
+			} // end-if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/"))
+
+			ber.append("/org/bytesoft/bytetcc/");
+			ber.append("batch/").append(methodName).append("?opc=").append(onePhase);
+			ber.append("&timeout=").append(timeoutMillis);
+
+			HttpHeaders headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+			headers.setAccept(Collections.singletonList(MediaType.APPLICATION_OCTET_STREAM));
+			HttpEntity<byte[]> request = new HttpEntity<byte[]>(CoordinatorBatchCodec.encodeXids(xids), headers);
+
+			ResponseEntity<byte[]> response = restTemplate.postForEntity(ber.toString(), request, byte[].class);
+
+			return CoordinatorBatchCodec.decodeCodes(response.getBody());
+		} catch (HttpClientErrorException ex) {
+			HttpStatus status = ex.getStatusCode();
+			if (HttpStatus.NOT_FOUND.equals(status) || HttpStatus.METHOD_NOT_ALLOWED.equals(status)
+					|| HttpStatus.UNSUPPORTED_MEDIA_TYPE.equals(status)) {
+				return null;
+			}
+
+			XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+			xaEx.initCause(ex);
+			throw xaEx;
+		} catch (HttpServerErrorException ex) {
+			HttpHeaders headers = ex.getResponseHeaders();
+			String failureText = StringUtils.trimToNull(headers.getFirst("failure"));
+			String errorText = StringUtils.trimToNull(headers.getFirst("XA_XAER"));
+
+			Integer errorCode = null;
+			try {
+				errorCode = errorText == null ? null : Integer.parseInt(errorText);
+			} catch (Exception ignore) {
+				logger.debug(ignore.getMessage());
+			}
+
+			XAException xaEx = new XAException(
+					failureText != null && errorCode != null ? errorCode : XAException.XAER_RMERR);
+			xaEx.initCause(ex);
+			throw xaEx;
+		} catch (Exception ex) {
+			XAException xaEx = new XAException(CompensableCoordinatorClient.isPoolTimeout(ex) //
+					? XAException.XAER_RMFAIL : XAException.XAER_RMERR);
+			xaEx.initCause(ex);
+			throw xaEx;
+		}
+	}
+
+	/* commitAsync/rollbackAsync/forgetAsync are sent to the same endpoints as commit/rollback/forget. */
+	@SuppressWarnings("deprecation")
+	public CompletableFuture<Void> invokeAsyncCoordinator(Object proxy, Method method, Object[] args) {
+		final CompletableFuture<Void> result = new CompletableFuture<Void>();
+		try {
+			AsyncRestTemplate restTemplate = SpringCloudBeanRegistry.getInstance().getCoordinatorAsyncRestTemplate();
+
+			RemoteNode remoteNode = CommonUtils.getRemoteNode(this.identifier);
+			String contextPathKey = String.format("%s.%s", CONSTANT_CONTENT_PATH, remoteNode.getServiceKey());
+			String contextPath = StringUtils.isBlank(remoteNode.getServiceKey()) //
+					? null : StringUtils.trimToEmpty(this.environment.getProperty(contextPathKey));
+
+			StringBuilder ber = new StringBuilder();
+			ber.append("http://");
+
+			if (this.statefully) {
+				ber.append(remoteNode.getServerHost()).append(":").append(remoteNode.getServerPort());
+			} else {
+				ber.append(remoteNode.getServiceKey());
+			}
+
+			if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/")) {
+				ber.append(contextPath.startsWith("/") ? "" : "/").append(contextPath);
+			} // end-if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/"))
+
+			ber.append("/org/bytesoft/bytetcc/");
+			ber.append(StringUtils.removeEnd(method.getName(), "Async"));
+			for (int i = 0; i < args.length; i++) {
+				Serializable arg = (Serializable) args[i];
+				ber.append("/").append(this.serialize(arg));
+			}
+
+			ListenableFuture<ResponseEntity<Void>> future = //
+					restTemplate.postForEntity(ber.toString(), null, Void.class, new Object[0]);
+			future.addCallback(new ListenableFutureCallback<ResponseEntity<Void>>() {
+				public void onSuccess(ResponseEntity<Void> response) {
+					result.complete(null);
+				}
+
+				public void onFailure(Throwable error) {
+					result.completeExceptionally(createXAException(error));
+				}
+			});
+		} catch (Exception ex) {
+			result.completeExceptionally(this.createXAException(ex));
+		}
+		return result;
+	}
+
+	private XAException createXAException(Throwable error) {
+		Throwable cause = error;
+		while (ExecutionException.class.isInstance(cause) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+
+		if (XAException.class.isInstance(cause)) {
+			return (XAException) cause;
+		} else if (HttpClientErrorException.class.isInstance(cause)) {
+			XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+			xaEx.initCause(cause);
+			return xaEx;
+		} else if (HttpServerErrorException.class.isInstance(cause)) {
+			HttpHeaders headers = ((HttpServerErrorException) cause).getResponseHeaders();
+			String failureText = headers == null ? null : StringUtils.trimToNull(headers.getFirst("failure"));
+			String errorText = headers == null ? null : StringUtils.trimToNull(headers.getFirst("XA_XAER"));
+
+			Integer errorCode = null;
+			try {
+				errorCode = errorText == null ? null : Integer.parseInt(errorText);
+			} catch (Exception ignore) {
+				logger.debug(ignore.getMessage());
+			}
+
+			XAException xaEx = new XAException(
+					failureText != null && errorCode != null ? errorCode : XAException.XAER_RMERR);
+			xaEx.initCause(cause);
+			return xaEx;
+		} else {
+			XAException xaEx = new XAException(CompensableCoordinatorClient.isPoolTimeout(cause) //
+					? XAException.XAER_RMFAIL : XAException.XAER_RMERR);
+			xaEx.initCause(cause);
+			return xaEx;
+		}
+	}
+
 	private String serialize(Serializable arg) throws IOException {
 		if (Xid.class.isInstance(arg)) {
 			Xid xid = (Xid) arg;
@@ -38,6 +38,7 @@ import org.bytesoft.bytetcc.supports.springcloud.loadbalancer.CompensableLoadBal
 import org.bytesoft.bytetcc.supports.springcloud.property.CompensablePropertySourceFactory;
 import org.bytesoft.bytetcc.supports.springcloud.web.CompensableHandlerInterceptor;
 import org.bytesoft.bytetcc.supports.springcloud.web.CompensableRequestInterceptor;
+import org.bytesoft.bytetcc.supports.web.CompensableCoordinatorClient;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
@@ -48,8 +49,10 @@ import org.springframework.beans.PropertyValue;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -208,19 +211,21 @@ public class SpringCloudSecondaryConfiguration
 		return interceptor;
 	}
 
-	@SuppressWarnings("deprecation")
-	@org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean(ClientHttpRequestFactory.class)
 	@org.springframework.context.annotation.Bean
-	public ClientHttpRequestFactory defaultRequestFactory() {
-		return new org.springframework.http.client.Netty4ClientHttpRequestFactory();
+	public CompensableCoordinatorClient compensableCoordinatorClient() {
+		return new CompensableCoordinatorClient();
 	}
 
 	@org.springframework.context.annotation.Bean("compensableRestTemplate")
-	public RestTemplate transactionTemplate(@Autowired ClientHttpRequestFactory requestFactory) {
+	public RestTemplate transactionTemplate(@Autowired CompensableCoordinatorClient coordinatorClient,
+			@Autowired @Qualifier(CompensableCoordinatorClient.REQUEST_FACTORY_QUALIFIER) //
+			ObjectProvider<ClientHttpRequestFactory> requestFactoryProvider) {
 		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory);
+		ClientHttpRequestFactory requestFactory = requestFactoryProvider.getIfAvailable();
+		restTemplate.setRequestFactory(requestFactory == null ? coordinatorClient.getRequestFactory() : requestFactory);
 
 		SpringCloudBeanRegistry registry = SpringCloudBeanRegistry.getInstance();
+		registry.setCoordinatorClient(coordinatorClient);
 		registry.setRestTemplate(restTemplate);
 
 		return restTemplate;
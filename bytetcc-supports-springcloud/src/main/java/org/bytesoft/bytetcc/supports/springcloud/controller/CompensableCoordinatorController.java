@@ -16,12 +16,16 @@
 package org.bytesoft.bytetcc.supports.springcloud.controller;
 
 import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
 import org.bytesoft.bytetcc.CompensableCoordinator;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatchCodec;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatchHandler;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
@@ -29,10 +33,13 @@ import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 @Controller
@@ -160,6 +167,56 @@ public class CompensableCoordinatorController extends PropertyEditorSupport impl
 		}
 	}
 
+	@RequestMapping(value = "/org/bytesoft/bytetcc/batch/{method}", method = RequestMethod.POST, //
+			consumes = CoordinatorBatchCodec.CONTENT_TYPE, produces = CoordinatorBatchCodec.CONTENT_TYPE)
+	@ResponseBody
+	public byte[] batch(@PathVariable("method") String methodName,
+			@RequestParam(value = "opc", required = false, defaultValue = "false") boolean onePhase,
+			@RequestParam(value = "timeout", required = false, defaultValue = "0") long timeoutMillis,
+			@RequestBody byte[] byteArray, HttpServletResponse response) {
+		try {
+			XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+			List<Xid> xids = CoordinatorBatchCodec.decodeXids(byteArray, xidFactory);
+
+			int[] codes = this.completeBatch(methodName, onePhase, xids, timeoutMillis, response);
+			return codes == null ? new byte[0] : CoordinatorBatchCodec.encodeCodes(codes);
+		} catch (IOException ex) {
+			logger.error("Error occurred while reading batch request: {}.", methodName, ex);
+
+			response.addHeader("failure", "true");
+			response.addHeader("XA_XAER", String.valueOf(XAException.XAER_INVAL));
+			response.setStatus(500);
+			return new byte[0];
+		}
+	}
+
+	@RequestMapping(value = "/org/bytesoft/bytetcc/batch/{method}", method = RequestMethod.POST, //
+			consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public int[] batchJson(@PathVariable("method") String methodName,
+			@RequestParam(value = "opc", required = false, defaultValue = "false") boolean onePhase,
+			@RequestParam(value = "timeout", required = false, defaultValue = "0") long timeoutMillis,
+			@RequestBody String[] identifiers, HttpServletResponse response) {
+		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+		List<Xid> xids = CoordinatorBatchHandler.createXids(identifiers, xidFactory);
+
+		int[] codes = this.completeBatch(methodName, onePhase, xids, timeoutMillis, response);
+		return codes == null ? new int[0] : codes;
+	}
+
+	private int[] completeBatch(String methodName, boolean onePhase, List<Xid> xids, long timeoutMillis,
+			HttpServletResponse response) {
+		if (CoordinatorBatchHandler.isBatchMethod(methodName) == false) {
+			response.addHeader("failure", "true");
+			response.addHeader("XA_XAER", String.valueOf(XAException.XAER_PROTO));
+			response.setStatus(500);
+			return null;
+		}
+
+		return CoordinatorBatchHandler.completeBatch(this.compensableCoordinator, methodName, onePhase, xids,
+				timeoutMillis);
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
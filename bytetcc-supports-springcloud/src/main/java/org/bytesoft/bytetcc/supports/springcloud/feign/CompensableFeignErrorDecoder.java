@@ -21,10 +21,13 @@ import java.util.Collection;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
-import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.CompensableTransaction;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
@@ -42,6 +45,7 @@ public class CompensableFeignErrorDecoder implements feign.codec.ErrorDecoder, I
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION"; // org.bytesoft.bytetcc.transaction
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION"; // org.bytesoft.bytetcc.propagation
 	static final String HEADER_RECURSIVELY_KEY = "X-BYTETCC-RECURSIVELY"; // org.bytesoft.bytetcc.recursively
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC"; // org.bytesoft.bytetcc.codec
 
 	private ApplicationContext applicationContext;
 	private feign.codec.ErrorDecoder delegate;
@@ -91,6 +95,7 @@ public class CompensableFeignErrorDecoder implements feign.codec.ErrorDecoder, I
 		String respTransactionStr = this.getHeaderValue(resp, HEADER_TRANCACTION_KEY);
 		String respPropagationStr = this.getHeaderValue(resp, HEADER_PROPAGATION_KEY);
 		String respRecursivelyStr = this.getHeaderValue(resp, HEADER_RECURSIVELY_KEY);
+		String respCodecStr = this.getHeaderValue(resp, HEADER_CODEC_KEY);
 
 		if (StringUtils.isBlank(reqTransactionStr)) {
 			return this.delegate.decode(methodKey, resp);
@@ -105,10 +110,20 @@ public class CompensableFeignErrorDecoder implements feign.codec.ErrorDecoder, I
 			String transactionStr = StringUtils.isBlank(respTransactionStr) ? reqTransactionStr : respTransactionStr;
 			String propagationStr = StringUtils.isBlank(respPropagationStr) ? reqPropagationStr : respPropagationStr;
 
+			SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
+			CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
+			XidFactory xidFactory = beanFactory.getCompensableXidFactory();
+			CompensableTransaction compensable = beanFactory.getCompensableManager().getCompensableTransactionQuietly();
+			TransactionContext requestContext = compensable == null ? null : compensable.getTransactionContext();
+
 			byte[] byteArray = Base64.getDecoder().decode(transactionStr); // ByteUtils.stringToByteArray(transactionStr);
-			TransactionContext transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+			TransactionContext transactionContext = TransactionContextCodec.deserialize(byteArray, requestContext, xidFactory);
+
+			if (StringUtils.isNotBlank(respPropagationStr)) {
+				TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(respPropagationStr),
+						TransactionContextCodec.isVersionSupported(respCodecStr));
+			} // end-if (StringUtils.isNotBlank(respPropagationStr))
 
-			SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
 			RemoteCoordinator remoteCoordinator = beanRegistry.getConsumeCoordinator(propagationStr);
 
 			result.setTransactionContext(transactionContext);
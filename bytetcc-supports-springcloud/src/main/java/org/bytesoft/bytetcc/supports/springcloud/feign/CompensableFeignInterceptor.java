@@ -20,8 +20,8 @@ import java.util.Base64;
 import java.util.Collection;
 import java.util.Map;
 
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
 import org.bytesoft.compensable.CompensableTransaction;
@@ -35,6 +35,7 @@ public class CompensableFeignInterceptor
 		implements feign.RequestInterceptor, CompensableEndpointAware, ApplicationContextAware {
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION"; // org.bytesoft.bytetcc.transaction
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION"; // org.bytesoft.bytetcc.propagation
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC"; // org.bytesoft.bytetcc.codec
 
 	private String identifier;
 	private ApplicationContext applicationContext;
@@ -50,7 +51,8 @@ public class CompensableFeignInterceptor
 
 		try {
 			TransactionContext transactionContext = compensable.getTransactionContext();
-			byte[] byteArray = SerializeUtils.serializeObject(transactionContext);
+			// the target instance is not chosen yet, the request is always java-serialized
+			byte[] byteArray = TransactionContextCodec.serialize(transactionContext, false);
 
 			String transactionText = Base64.getEncoder().encodeToString(byteArray);
 
@@ -63,6 +65,10 @@ public class CompensableFeignInterceptor
 				template.header(HEADER_PROPAGATION_KEY, identifier);
 			}
 
+			if (headers.containsKey(HEADER_CODEC_KEY) == false) {
+				template.header(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
+			}
+
 		} catch (IOException ex) {
 			throw new RuntimeException("Error occurred while preparing the transaction context!", ex);
 		}
@@ -24,10 +24,10 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.controller.CompensableCoordinatorController;
 import org.bytesoft.common.utils.CommonUtils;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.Compensable;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
@@ -52,6 +52,7 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION"; // org.bytesoft.bytetcc.transaction
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION"; // org.bytesoft.bytetcc.propagation
 	static final String HEADER_RECURSIVELY_KEY = "X-BYTETCC-RECURSIVELY"; // org.bytesoft.bytetcc.recursively
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC"; // org.bytesoft.bytetcc.codec
 
 	private String identifier;
 	private ApplicationContext applicationContext;
@@ -78,6 +79,7 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		}
 
 		String propagationStr = request.getHeader(HEADER_PROPAGATION_KEY);
+		boolean compact = TransactionContextCodec.isVersionSupported(request.getHeader(HEADER_CODEC_KEY));
 
 		String transactionText = StringUtils.trimToNull(transactionStr);
 		String propagationText = StringUtils.trimToNull(propagationStr);
@@ -100,10 +102,11 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 
 		TransactionContext transactionContext = null;
 		if (byteArray != null && byteArray.length > 0) {
-			transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+			transactionContext = TransactionContextCodec.deserialize(byteArray, beanFactory.getCompensableXidFactory());
 			transactionContext.setPropagated(true);
 			transactionContext.setPropagatedBy(propagationText);
 		}
+		TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(propagationText), compact);
 
 		TransactionRequestImpl req = new TransactionRequestImpl();
 		req.setTransactionContext(transactionContext);
@@ -115,10 +118,12 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		String propagatedBy = (String) compensable.getTransactionContext().getPropagatedBy();
 
-		byte[] responseByteArray = SerializeUtils.serializeObject(compensable.getTransactionContext());
+		byte[] responseByteArray = TransactionContextCodec.serialize(compensable.getTransactionContext(),
+				transactionContext, request.getHeader(HEADER_CODEC_KEY));
 		String compensableStr = Base64.getEncoder().encodeToString(responseByteArray);
 		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
+		response.setHeader(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
 
 		String sourceApplication = CommonUtils.getApplication(propagatedBy);
 		String targetApplication = CommonUtils.getApplication(propagationText);
@@ -22,11 +22,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.CompensableTransactionImpl;
+import org.bytesoft.bytetcc.supports.rpc.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.loadbalancer.CompensableLoadBalancerInterceptor;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
+import org.bytesoft.compensable.CompensableTransaction;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
@@ -52,6 +53,7 @@ public class CompensableRequestInterceptor
 	static final String HEADER_TRANCACTION_KEY = "X-BYTETCC-TRANSACTION"; // org.bytesoft.bytetcc.transaction
 	static final String HEADER_PROPAGATION_KEY = "X-BYTETCC-PROPAGATION"; // org.bytesoft.bytetcc.propagation
 	static final String HEADER_RECURSIVELY_KEY = "X-BYTETCC-RECURSIVELY"; // org.bytesoft.bytetcc.recursively
+	static final String HEADER_CODEC_KEY = "X-BYTETCC-CODEC"; // org.bytesoft.bytetcc.codec
 	static final String PREFIX_TRANSACTION_KEY = "/org/bytesoft/bytetcc";
 
 	private String identifier;
@@ -129,12 +131,14 @@ public class CompensableRequestInterceptor
 
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] reqByteArray = SerializeUtils.serializeObject(transactionContext);
+		boolean compact = TransactionContextCodec.isCompactSupported(TransactionContextCodec.getPeerKey(identifier));
+		byte[] reqByteArray = TransactionContextCodec.serialize(transactionContext, compact);
 		String reqTransactionStr = Base64.getEncoder().encodeToString(reqByteArray);
 
 		HttpHeaders reqHeaders = httpRequest.getHeaders();
 		reqHeaders.add(HEADER_TRANCACTION_KEY, reqTransactionStr);
 		reqHeaders.add(HEADER_PROPAGATION_KEY, this.identifier);
+		reqHeaders.add(HEADER_CODEC_KEY, String.valueOf(TransactionContextCodec.VERSION));
 
 		TransactionRequestImpl request = new TransactionRequestImpl();
 		request.setTransactionContext(transactionContext);
@@ -153,12 +157,19 @@ public class CompensableRequestInterceptor
 		String respTransactionStr = respHeaders.getFirst(HEADER_TRANCACTION_KEY);
 		String respPropagationStr = respHeaders.getFirst(HEADER_PROPAGATION_KEY);
 		String respRecursivelyStr = respHeaders.getFirst(HEADER_RECURSIVELY_KEY);
+		String respCodecStr = respHeaders.getFirst(HEADER_CODEC_KEY);
+
+		if (StringUtils.isNotBlank(respPropagationStr)) {
+			TransactionContextCodec.setCompactSupported(TransactionContextCodec.getPeerKey(respPropagationStr),
+					TransactionContextCodec.isVersionSupported(respCodecStr));
+		} // end-if (StringUtils.isNotBlank(respPropagationStr))
 
 		String transactionText = StringUtils.trimToNull(respTransactionStr);
 		byte[] byteArray = StringUtils.isBlank(transactionText) ? null : Base64.getDecoder().decode(transactionText);
-		TransactionContext serverContext = byteArray == null || byteArray.length == 0 //
-				? null
-				: (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		CompensableTransaction compensable = beanFactory.getCompensableManager().getCompensableTransactionQuietly();
+		TransactionContext requestContext = compensable == null ? null : compensable.getTransactionContext();
+		TransactionContext serverContext = TransactionContextCodec.deserialize(byteArray, requestContext,
+				beanFactory.getCompensableXidFactory());
 
 		TransactionResponseImpl txResp = new TransactionResponseImpl();
 		txResp.setTransactionContext(serverContext);
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring assigning a fixed number of partitions of the global xids to the live instances. Every instance
+ * is placed on the ring at several virtual points, so that an instance joining or leaving the cluster only moves the
+ * partitions adjacent to its own points.
+ */
+public class CompensablePartitionRing {
+
+	private final String[] owners;
+
+	public CompensablePartitionRing(Collection<String> instances, int partitionCount, int virtualNodes) {
+		TreeMap<Long, String> ring = new TreeMap<Long, String>();
+		for (Iterator<String> itr = instances.iterator(); itr.hasNext();) {
+			String instance = itr.next();
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(String.format("%s#%s", instance, i)), instance);
+			}
+		}
+
+		this.owners = new String[partitionCount];
+		for (int partition = 0; ring.isEmpty() == false && partition < partitionCount; partition++) {
+			Map.Entry<Long, String> entry = ring.ceilingEntry(hash(String.format("partition#%s", partition)));
+			this.owners[partition] = entry == null ? ring.firstEntry().getValue() : entry.getValue();
+		}
+	}
+
+	public String getOwner(int partition) {
+		return partition < 0 || partition >= this.owners.length ? null : this.owners[partition];
+	}
+
+	public int getPartitionCount() {
+		return this.owners.length;
+	}
+
+	public static int getPartition(String globalKey, int partitionCount) {
+		long hash = hash(globalKey);
+		return (int) ((hash & Long.MAX_VALUE) % partitionCount);
+	}
+
+	static long hash(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (bytes[i] & 0xFF);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
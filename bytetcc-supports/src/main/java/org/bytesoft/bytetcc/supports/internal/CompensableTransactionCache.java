@@ -0,0 +1,221 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.compensable.archive.TransactionArchive;
+
+/**
+ * Bounded cache of the transaction archives rebuilt from the mongodb documents, including the "not found" results, which
+ * serves the transaction reads of {@link MongoCompensableRepository}. Entries expire after a fixed time, are evicted in
+ * LRU order once the cache is full, are invalidated by every local write of the same global transaction and are
+ * discarded once the instance version of the node which created them has changed, so that the writes of the other nodes
+ * (e.g. a recovery taking over the transaction of a crashed node) are not seen for at most expireMillis. The cached
+ * archives are shared, the readers must reconstruct their transactions from a copy.
+ */
+public class CompensableTransactionCache {
+
+	@javax.inject.Inject
+	private CompensableInstVersionManager versionManager;
+
+	private int maxSize = 1024;
+	private long expireMillis = 1000L * 10;
+	private long negativeExpireMillis = 1000L;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong negativeHitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	/* bumped by each invalidation, a document read before an invalidation must not be cached after it. */
+	private long generation;
+
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			boolean removeRequired = this.size() > maxSize;
+			if (removeRequired) {
+				evictionCount.incrementAndGet();
+			}
+			return removeRequired;
+		}
+	};
+
+	CacheEntry get(String globalKey) {
+		CacheEntry entry = null;
+		synchronized (this.entries) {
+			entry = this.entries.get(globalKey);
+			if (entry != null && this.isEntryAvailable(entry) == false) {
+				this.entries.remove(globalKey);
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			this.missCount.incrementAndGet();
+		} else if (entry.archive == null) {
+			this.negativeHitCount.incrementAndGet();
+		} else {
+			this.hitCount.incrementAndGet();
+		}
+
+		return entry;
+	}
+
+	private boolean isEntryAvailable(CacheEntry entry) {
+		if (System.currentTimeMillis() >= entry.expireAt) {
+			return false;
+		} else if (entry.archive == null) {
+			return true;
+		}
+
+		long version = this.versionManager == null ? -1 : this.versionManager.getInstanceVersion(entry.creator);
+		return version == entry.version;
+	}
+
+	long getGeneration() {
+		synchronized (this.entries) {
+			return this.generation;
+		}
+	}
+
+	void putArchive(String globalKey, TransactionArchive archive, String creator, boolean error, long generation) {
+		if (this.maxSize <= 0 || this.expireMillis <= 0) {
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry();
+		entry.archive = archive;
+		entry.error = error;
+		entry.creator = creator;
+		entry.version = this.versionManager == null || StringUtils.isBlank(creator) ? -1
+				: this.versionManager.getInstanceVersion(creator);
+		entry.expireAt = System.currentTimeMillis() + this.expireMillis;
+
+		synchronized (this.entries) {
+			if (this.generation == generation) {
+				this.entries.put(globalKey, entry);
+			} // end-if (this.generation == generation)
+		}
+	}
+
+	void putAbsent(String globalKey, long generation) {
+		if (this.maxSize <= 0 || this.negativeExpireMillis <= 0) {
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry();
+		entry.expireAt = System.currentTimeMillis() + this.negativeExpireMillis;
+
+		synchronized (this.entries) {
+			if (this.generation == generation) {
+				this.entries.put(globalKey, entry);
+			} // end-if (this.generation == generation)
+		}
+	}
+
+	public void invalidate(String globalKey) {
+		CacheEntry entry = null;
+		synchronized (this.entries) {
+			this.generation++;
+			entry = this.entries.remove(globalKey);
+		}
+
+		if (entry != null) {
+			this.invalidationCount.incrementAndGet();
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (this.entries) {
+			this.generation++;
+			this.invalidationCount.addAndGet(this.entries.size());
+			this.entries.clear();
+		}
+	}
+
+	static class CacheEntry {
+		TransactionArchive archive;
+		boolean error;
+		String creator;
+		long version;
+		long expireAt;
+	}
+
+	public int getSize() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getNegativeHitCount() {
+		return this.negativeHitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	public long getInvalidationCount() {
+		return this.invalidationCount.get();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getExpireMillis() {
+		return expireMillis;
+	}
+
+	public void setExpireMillis(long expireMillis) {
+		this.expireMillis = expireMillis;
+	}
+
+	public long getNegativeExpireMillis() {
+		return negativeExpireMillis;
+	}
+
+	public void setNegativeExpireMillis(long negativeExpireMillis) {
+		this.negativeExpireMillis = negativeExpireMillis;
+	}
+
+	public CompensableInstVersionManager getVersionManager() {
+		return versionManager;
+	}
+
+	public void setVersionManager(CompensableInstVersionManager versionManager) {
+		this.versionManager = versionManager;
+	}
+
+}
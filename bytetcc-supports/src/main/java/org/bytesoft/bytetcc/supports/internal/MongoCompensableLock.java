@@ -15,6 +15,7 @@
  */
 package org.bytesoft.bytetcc.supports.internal;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -52,6 +53,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
+import com.mongodb.MongoCommandException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.ListIndexesIterable;
 import com.mongodb.client.MongoClient;
@@ -61,11 +63,13 @@ import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
-public class MongoCompensableLock implements TransactionLock, CompensableInstVersionManager, CompensableEndpointAware,
-		CompensableBeanFactoryAware, CuratorWatcher, ConnectionStateListener, BackgroundCallback, SmartInitializingSingleton {
+public class MongoCompensableLock implements TransactionLock, CompensableInstVersionManager,
+		CompensableInstPartitionManager, CompensableEndpointAware, CompensableBeanFactoryAware, CuratorWatcher,
+		ConnectionStateListener, BackgroundCallback, SmartInitializingSingleton {
 	static Logger logger = LoggerFactory.getLogger(MongoCompensableLock.class);
 	static final String CONSTANTS_ROOT_PATH = "/org/bytesoft/bytetcc";
 	static final String CONSTANTS_TB_LOCKS = "locks";
@@ -83,8 +87,13 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private boolean initializeEnabled = true;
+	private boolean shardingEnabled = false;
+	private boolean partitionEnabled = false;
+	private int partitionCount = 256;
+	private int virtualNodes = 64;
 
 	private final Map<String, Long> instances = new HashMap<String, Long>();
+	private volatile CompensablePartitionRing partitionRing;
 
 	private transient long instanceVersion;
 
@@ -180,6 +189,32 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 
 	private void initializeIndexIfNecessary() {
 		this.createLocksIndexIfNecessary();
+		if (this.shardingEnabled) {
+			this.shardLocksCollectionIfNecessary();
+		}
+	}
+
+	private void shardLocksCollectionIfNecessary() {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> locks = database.getCollection(CONSTANTS_TB_LOCKS);
+		locks.createIndex(Indexes.hashed(CONSTANTS_FD_GLOBAL));
+
+		MongoDatabase admin = this.mongoClient.getDatabase("admin");
+		try {
+			admin.runCommand(new Document("enableSharding", databaseName));
+		} catch (MongoCommandException error) {
+			logger.debug("Error occurred while enabling sharding for database({}): {}", databaseName, error.getMessage());
+		}
+
+		String namespace = String.format("%s.%s", databaseName, CONSTANTS_TB_LOCKS);
+		Document command = new Document("shardCollection", namespace);
+		command.append("key", new Document(CONSTANTS_FD_GLOBAL, "hashed"));
+		try {
+			admin.runCommand(command);
+		} catch (MongoCommandException error) {
+			logger.debug("Error occurred while sharding collection({}): {}", namespace, error.getMessage());
+		}
 	}
 
 	private void createLocksIndexIfNecessary() {
@@ -195,6 +230,9 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 				Document document = lockCursor.next();
 				Boolean unique = document.getBoolean("unique");
 				Document key = (Document) document.get("key");
+				if ("hashed".equals(key.get(CONSTANTS_FD_GLOBAL))) {
+					continue; // shard key
+				}
 
 				boolean globalExists = key.containsKey(CONSTANTS_FD_GLOBAL);
 				boolean lengthEquals = key.size() == 1;
@@ -442,6 +480,10 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 					this.instances.remove(element);
 				}
 
+				if (deleted.isEmpty() == false) {
+					this.rebuildPartitionRing();
+				}
+
 				for (Iterator<String> itr = created.iterator(); itr.hasNext();) {
 					String element = itr.next();
 					String path = String.format("%s/%s", parent, element);
@@ -453,7 +495,9 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 			if (current.startsWith(prefix) && event.getStat() != null) {
 				String system = current.substring(prefix.length());
 				long version = ByteUtils.byteArrayToLong(event.getData());
-				this.instances.put(system, version);
+				if (this.instances.put(system, version) == null) {
+					this.rebuildPartitionRing();
+				}
 			} else if (StringUtils.equals(path, current) && event.getStat() == null) {
 				this.initializeCurrentClusterInstanceConfigIfNecessary(false);
 			}
@@ -503,11 +547,75 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 		this.curatorFramework.getChildren().usingWatcher(this).inBackground(this).forPath(parent);
 	}
 
+	/* invoked while holding the monitor of this object, whenever the live instances change. */
+	private void rebuildPartitionRing() {
+		if (this.partitionEnabled == false) {
+			return;
+		}
+
+		Set<String> members = new HashSet<String>(this.instances.keySet());
+		this.partitionRing = new CompensablePartitionRing(members, this.partitionCount, this.virtualNodes);
+		logger.info("Partitions rebalanced: instances= {}, owned= {}/{}.", members.size(),
+				this.getOwnedPartitions().size(), this.partitionCount);
+	}
+
+	public int getPartition(String globalKey) {
+		return CompensablePartitionRing.getPartition(globalKey, this.partitionCount);
+	}
+
+	public boolean isPartitionOwner(int partition) {
+		CompensablePartitionRing ring = this.partitionRing;
+		return ring != null && StringUtils.equals(this.endpoint, ring.getOwner(partition));
+	}
+
+	public List<Integer> getOwnedPartitions() {
+		List<Integer> partitions = new ArrayList<Integer>();
+		CompensablePartitionRing ring = this.partitionRing;
+		for (int partition = 0; ring != null && partition < ring.getPartitionCount(); partition++) {
+			if (StringUtils.equals(this.endpoint, ring.getOwner(partition))) {
+				partitions.add(partition);
+			}
+		}
+		return partitions;
+	}
+
 	public long getInstanceVersion(String instanceId) {
 		Long version = this.instances.get(instanceId);
 		return version == null ? -1 : version;
 	}
 
+	public boolean isShardingEnabled() {
+		return shardingEnabled;
+	}
+
+	public void setShardingEnabled(boolean shardingEnabled) {
+		this.shardingEnabled = shardingEnabled;
+	}
+
+	public boolean isPartitionEnabled() {
+		return partitionEnabled;
+	}
+
+	public void setPartitionEnabled(boolean partitionEnabled) {
+		this.partitionEnabled = partitionEnabled;
+	}
+
+	public int getPartitionCount() {
+		return partitionCount;
+	}
+
+	public void setPartitionCount(int partitionCount) {
+		this.partitionCount = partitionCount;
+	}
+
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
 	public int getInitializeWaitingSeconds() {
 		return initializeWaitingSeconds;
 	}
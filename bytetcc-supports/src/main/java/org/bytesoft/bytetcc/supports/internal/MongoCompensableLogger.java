@@ -17,19 +17,25 @@ package org.bytesoft.bytetcc.supports.internal;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import javax.transaction.Status;
 import javax.transaction.xa.Xid;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bytesoft.bytetcc.supports.CompensableInvocationImpl;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
@@ -40,7 +46,7 @@ import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
-import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.compensable.logging.IndexedCompensableLogger;
 import org.bytesoft.transaction.archive.XAResourceArchive;
 import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
 import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
@@ -51,6 +57,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
+import com.mongodb.MongoCommandException;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.ListIndexesIterable;
 import com.mongodb.client.MongoClient;
@@ -59,17 +67,23 @@ import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
-public class MongoCompensableLogger
-		implements CompensableLogger, CompensableEndpointAware, CompensableBeanFactoryAware, SmartInitializingSingleton {
+public class MongoCompensableLogger implements IndexedCompensableLogger, CompensableEndpointAware,
+		CompensableBeanFactoryAware, SmartInitializingSingleton {
 	static Logger logger = LoggerFactory.getLogger(MongoCompensableLogger.class);
 	static final String CONSTANTS_TB_TRANSACTIONS = "compensables";
+	static final String CONSTANTS_TB_RECOVERY_INDEX = "recovery_index";
 	static final String CONSTANTS_FD_GLOBAL = "gxid";
 	static final String CONSTANTS_FD_BRANCH = "bxid";
+	static final String CONSTANTS_FD_PARTITION = "partition";
 
 	static final int MONGODB_ERROR_DUPLICATE_KEY = 11000;
+	static final int MONGODB_ERROR_ALREADY_INITIALIZED = 23;
 
 	@javax.annotation.Resource
 	private MongoClient mongoClient;
@@ -77,8 +91,37 @@ public class MongoCompensableLogger
 	@javax.inject.Inject
 	private CompensableInstVersionManager versionManager;
 	@javax.inject.Inject
+	private CompensableInstPartitionManager partitionManager;
+	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
+	@javax.inject.Inject
+	private CompensableTransactionCache transactionCache;
 	private volatile boolean initializeEnabled = true;
+	private boolean shardingEnabled = false;
+	private long orphanIndexExpireMillis = 1000L * 60;
+
+	/**
+	 * Write concerns of the compensable log, by operation category. A null value means the default write concern of the
+	 * mongo client. The recovery guarantees kept by each tier are:
+	 * <ul>
+	 * <li>trying: createTransaction, create/updateParticipant, create/updateCompensable of branches neither confirmed
+	 * nor cancelled, and updateTransaction while ACTIVE/MARKED_ROLLBACK/PREPARING. These writes only concern a
+	 * transaction still in its try phase, which is never confirmed. A lost tried flag is re-derived from the bytejta
+	 * table (TransactionRecoveryImpl.calculateCompensableTried), but a lost transaction, participant or compensable
+	 * record is not: after a failover recovery does not know about it, and the branch it describes is never cancelled.
+	 * w:1 is enough only if that window is acceptable.</li>
+	 * <li>decision: updateTransaction to PREPARED/COMMITTING/ROLLING_BACK. This is the global commit/rollback decision
+	 * and cannot be re-derived; it should be acknowledged by a majority.</li>
+	 * <li>completion: create/updateCompensable of confirmed or cancelled branches, deleteParticipant and updateTransaction
+	 * to COMMITTED/ROLLEDBACK. A lost write makes recovery confirm/cancel the branch again, which requires idempotent
+	 * confirm/cancel methods.</li>
+	 * <li>forget: deleteTransaction. A lost write only makes the completed transaction be forgotten again.</li>
+	 * </ul>
+	 */
+	private WriteConcern tryingWriteConcern;
+	private WriteConcern decisionWriteConcern;
+	private WriteConcern completionWriteConcern;
+	private WriteConcern forgetWriteConcern;
 
 	public void createTransaction(TransactionArchive archive) {
 		try {
@@ -89,7 +132,7 @@ public class MongoCompensableLogger
 
 			String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.getTransactions(mdb, this.tryingWriteConcern);
 
 			TransactionXid globalXid = (TransactionXid) archive.getXid();
 			boolean compensable = archive.isCompensable();
@@ -124,8 +167,31 @@ public class MongoCompensableLogger
 			document.append("compensables", this.constructCompensablesDocument(archive));
 			document.append("recovered_at", archive.getRecoveredAt() == 0 ? null : new Date(archive.getRecoveredAt()));
 			document.append("recovered_times", archive.getRecoveredTimes());
-
-			collection.insertOne(document);
+			if (this.partitionManager != null) {
+				document.append(CONSTANTS_FD_PARTITION, this.partitionManager.getPartition(identifier));
+			} // end-if (this.partitionManager != null)
+
+			// the index entry goes first: a crash in between leaves an entry without document, which recovery skips
+			if (this.shardingEnabled && coordinator) {
+				Document index = new Document();
+				index.append(CONSTANTS_FD_GLOBAL, identifier);
+				index.append("system", application);
+				index.append("version", version);
+				index.append("created", this.endpoint);
+				index.append("created_at", new Date());
+				index.append("error", false);
+				if (this.partitionManager != null) {
+					index.append(CONSTANTS_FD_PARTITION, this.partitionManager.getPartition(identifier));
+				} // end-if (this.partitionManager != null)
+				MongoCollection<Document> indexes = mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+				indexes.withWriteConcern(collection.getWriteConcern()).insertOne(index);
+			} // end-if (this.shardingEnabled && coordinator)
+
+			try {
+				collection.insertOne(document);
+			} finally {
+				this.invalidateCacheIfNecessary(identifier); // also when the write fails, whose outcome is unknown
+			}
 		} catch (IOException error) {
 			logger.error("Error occurred while creating transaction.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
@@ -141,7 +207,8 @@ public class MongoCompensableLogger
 			String application = CommonUtils.getApplication(this.endpoint);
 			String databaseName = application.replaceAll("\\W", "_");
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			WriteConcern writeConcern = this.getWriteConcern(archive.getCompensableStatus());
+			MongoCollection<Document> collection = this.getTransactions(mdb, writeConcern);
 
 			TransactionXid globalXid = (TransactionXid) archive.getXid();
 			byte[] global = globalXid.getGlobalTransactionId();
@@ -165,7 +232,12 @@ public class MongoCompensableLogger
 
 			document.append("$set", target);
 
-			UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier), document);
+			UpdateResult result = null;
+			try {
+				result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier), document);
+			} finally {
+				this.invalidateCacheIfNecessary(identifier);
+			}
 			if (result.getMatchedCount() != 1) {
 				throw new IllegalStateException(
 						String.format("Error occurred while updating transaction(matched= %s, modified= %s).",
@@ -294,12 +366,23 @@ public class MongoCompensableLogger
 			String application = CommonUtils.getApplication(this.endpoint);
 			String databaseName = application.replaceAll("\\W", "_");
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> transactions = this.getTransactions(mdb, this.forgetWriteConcern);
 
-			DeleteResult result = transactions.deleteOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier));
+			DeleteResult result = null;
+			try {
+				result = transactions.deleteOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier));
+			} finally {
+				this.invalidateCacheIfNecessary(identifier);
+			}
 			if (result.getDeletedCount() != 1) {
 				logger.error("Error occurred while deleting transaction(deleted= {}).", result.getDeletedCount());
 			}
+
+			if (this.shardingEnabled && archive.isCoordinator()) {
+				MongoCollection<Document> indexes = mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+				Bson condition = Filters.eq(CONSTANTS_FD_GLOBAL, identifier);
+				indexes.withWriteConcern(transactions.getWriteConcern()).deleteOne(condition);
+			} // end-if (this.shardingEnabled && archive.isCoordinator())
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while deleting transaction!", error);
 		}
@@ -358,7 +441,7 @@ public class MongoCompensableLogger
 
 		String databaseName = application.replaceAll("\\W", "_");
 		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		MongoCollection<Document> collection = this.getTransactions(mdb, this.tryingWriteConcern);
 
 		Document participants = new Document();
 		participants.append(String.format("participants.%s", branchKey), participant);
@@ -366,7 +449,12 @@ public class MongoCompensableLogger
 		Document document = new Document();
 		document.append("$set", participants);
 
-		UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+		UpdateResult result = null;
+		try {
+			result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+		} finally {
+			this.invalidateCacheIfNecessary(globalKey);
+		}
 		if (result.getMatchedCount() != 1) {
 			throw new IllegalStateException(
 					String.format("Error occurred while creating/updating participant(matched= %s, modified= %s).",
@@ -386,7 +474,7 @@ public class MongoCompensableLogger
 
 			String databaseName = application.replaceAll("\\W", "_");
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.getTransactions(mdb, this.completionWriteConcern);
 
 			Document participants = new Document();
 			participants.append(String.format("participants.%s", branchKey), null);
@@ -394,7 +482,12 @@ public class MongoCompensableLogger
 			Document document = new Document();
 			document.append("$unset", participants);
 
-			UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+			UpdateResult result = null;
+			try {
+				result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+			} finally {
+				this.invalidateCacheIfNecessary(globalKey);
+			}
 			if (result.getMatchedCount() != 1) {
 				throw new IllegalStateException(
 						String.format("Error occurred while deleting participant(matched= %s, modified= %s).",
@@ -476,7 +569,9 @@ public class MongoCompensableLogger
 
 		String databaseName = application.replaceAll("\\W", "_");
 		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		boolean completed = archive.isConfirmed() || archive.isCancelled();
+		WriteConcern writeConcern = completed ? this.completionWriteConcern : this.tryingWriteConcern;
+		MongoCollection<Document> collection = this.getTransactions(mdb, writeConcern);
 
 		Document compensables = new Document();
 		compensables.append(String.format("compensables.%s", branchKey), compensable);
@@ -484,7 +579,12 @@ public class MongoCompensableLogger
 		Document document = new Document();
 		document.append("$set", compensables);
 
-		UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+		UpdateResult result = null;
+		try {
+			result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+		} finally {
+			this.invalidateCacheIfNecessary(globalKey);
+		}
 		if (result.getMatchedCount() != 1) {
 			throw new IllegalStateException(
 					String.format("Error occurred while creating/updating compensable(matched= %s, modified= %s).",
@@ -492,28 +592,81 @@ public class MongoCompensableLogger
 		}
 	}
 
+	private MongoCollection<Document> getTransactions(MongoDatabase mdb, WriteConcern writeConcern) {
+		MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		return writeConcern == null ? transactions : transactions.withWriteConcern(writeConcern);
+	}
+
+	WriteConcern getWriteConcern(int status) {
+		switch (status) {
+		case Status.STATUS_PREPARED:
+		case Status.STATUS_COMMITTING:
+		case Status.STATUS_ROLLING_BACK:
+			return this.decisionWriteConcern;
+		case Status.STATUS_COMMITTED:
+		case Status.STATUS_ROLLEDBACK:
+			return this.completionWriteConcern;
+		default:
+			return this.tryingWriteConcern;
+		}
+	}
+
+	private WriteConcern parseWriteConcern(String name) {
+		if (StringUtils.isBlank(name)) {
+			return null;
+		}
+
+		WriteConcern writeConcern = WriteConcern.valueOf(name.trim());
+		if (writeConcern == null) {
+			throw new IllegalArgumentException(String.format("Invalid write concern(%s)!", name));
+		}
+		return writeConcern;
+	}
+
+	/* the name of the WriteConcern constant, which parseWriteConcern accepts. */
+	private String getWriteConcernName(WriteConcern writeConcern) {
+		if (writeConcern == null) {
+			return null;
+		}
+
+		Field[] fields = WriteConcern.class.getFields();
+		for (int i = 0; i < fields.length; i++) {
+			Field field = fields[i];
+			if (Modifier.isStatic(field.getModifiers()) == false || field.getType() != WriteConcern.class) {
+				continue;
+			}
+
+			try {
+				if (writeConcern.equals(field.get(null))) {
+					return field.getName();
+				}
+			} catch (IllegalAccessException ex) {
+				logger.debug(ex.getMessage());
+			}
+		}
+		throw new IllegalStateException(String.format("Unknown write concern(%s)!", writeConcern));
+	}
+
+	private void invalidateCacheIfNecessary(String globalKey) {
+		if (this.transactionCache != null) {
+			this.transactionCache.invalidate(globalKey);
+		}
+	}
+
 	public void recover(TransactionRecoveryCallback callback) {
 		MongoCursor<Document> transactionCursor = null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
-
-			FindIterable<Document> transactionItr = transactions.find(Filters.eq("coordinator", true));
+			FindIterable<Document> transactionItr = this.findCoordinatorTransactions();
 			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
 				Document document = transactionCursor.next();
-				boolean error = document.getBoolean("error");
-
-				String targetApplication = document.getString("system");
-				long expectVersion = document.getLong("version");
-				long actualVersion = this.versionManager.getInstanceVersion(targetApplication);
-
-				if (error == false && actualVersion > 0 && actualVersion <= expectVersion) {
+				if (this.isRecoveryRequired(document) == false) {
 					continue; // ignore
 				}
 
-				callback.recover(this.reconstructTransactionArchive(document));
+				Document transaction = this.getCoordinatorTransaction(document);
+				if (transaction != null) {
+					callback.recover(this.reconstructTransactionArchive(transaction));
+				} // end-if (transaction != null)
 			}
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while recovering transaction.", error);
@@ -524,6 +677,145 @@ public class MongoCompensableLogger
 		}
 	}
 
+	public Set<TransactionXid> getRecoverableXids() {
+		XidFactory compensableXidFactory = this.beanFactory.getCompensableXidFactory();
+
+		Set<TransactionXid> xids = new HashSet<TransactionXid>();
+		MongoCursor<Document> transactionCursor = null;
+		try {
+			FindIterable<Document> transactionItr = this.findCoordinatorTransactions();
+			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
+				Document document = transactionCursor.next();
+				if (this.isRecoveryRequired(document)) {
+					byte[] global = ByteUtils.stringToByteArray(document.getString(CONSTANTS_FD_GLOBAL));
+					xids.add(compensableXidFactory.createGlobalXid(global));
+				} // end-if (this.isRecoveryRequired(document))
+			}
+		} finally {
+			IOUtils.closeQuietly(transactionCursor);
+		}
+		return xids;
+	}
+
+	public TransactionArchive recover(TransactionXid globalXid) {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		String globalKey = ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId());
+
+		Bson filter = Filters.and(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), Filters.eq("coordinator", true));
+		Document document = transactions.find(filter).first();
+		if (document == null || this.isRecoveryRequired(document) == false) {
+			return null;
+		}
+
+		try {
+			return this.reconstructTransactionArchive(document);
+		} catch (RuntimeException error) {
+			throw error;
+		} catch (Exception error) {
+			throw new IllegalStateException(error);
+		}
+	}
+
+	/* the instance version is kept per instance, which is the one that created the transaction, not per application. */
+	boolean isRecoveryRequired(Document document) {
+		boolean error = document.getBoolean("error");
+
+		String targetApplication = document.getString("created");
+		long expectVersion = document.getLong("version");
+		long actualVersion = this.versionManager.getInstanceVersion(targetApplication);
+
+		return error || actualVersion <= 0 || actualVersion > expectVersion;
+	}
+
+	/**
+	 * Returns the coordinator transactions to be scanned by recovery. With sharding enabled only the small unsharded
+	 * recovery_index collection is scanned, and the full document is fetched by its shard key afterwards.
+	 */
+	FindIterable<Document> findCoordinatorTransactions() {
+		return this.findCoordinatorTransactions(new Document());
+	}
+
+	/**
+	 * Returns the coordinator transactions of the partitions owned by the current instance, or all of them if partitions
+	 * are disabled. The owner of partition 0 also takes the transactions written before partitioning was enabled.
+	 */
+	FindIterable<Document> findOwnedCoordinatorTransactions() {
+		if (this.partitionManager == null || this.partitionManager.isPartitionEnabled() == false) {
+			return this.findCoordinatorTransactions(new Document());
+		}
+
+		List<Integer> partitions = this.partitionManager.getOwnedPartitions();
+		Bson filter = Filters.in(CONSTANTS_FD_PARTITION, partitions);
+		if (partitions.contains(0)) {
+			filter = Filters.or(filter, Filters.exists(CONSTANTS_FD_PARTITION, false));
+		}
+		return this.findCoordinatorTransactions(filter);
+	}
+
+	private FindIterable<Document> findCoordinatorTransactions(Bson filter) {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+		if (this.shardingEnabled) {
+			return mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX).find(filter);
+		} else {
+			Bson coordinatorFilter = Filters.eq("coordinator", true);
+			return mdb.getCollection(CONSTANTS_TB_TRANSACTIONS).find(Filters.and(coordinatorFilter, filter));
+		}
+	}
+
+	Document getCoordinatorTransaction(Document document) {
+		if (this.shardingEnabled == false) {
+			return document;
+		}
+
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		String globalKey = document.getString(CONSTANTS_FD_GLOBAL);
+		Document transaction = transactions.find(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey)).first();
+		if (transaction == null) {
+			this.deleteOrphanIndexIfNecessary(mdb, document);
+		} // end-if (transaction == null)
+		return transaction;
+	}
+
+	/**
+	 * Deletes an index entry whose transaction document does not exist: either the transaction has been forgotten but
+	 * the deletion of its index entry failed, or the creation of the document failed after its index entry. Entries
+	 * younger than orphanIndexExpireMillis are kept, since their documents may still be in creation.
+	 */
+	private void deleteOrphanIndexIfNecessary(MongoDatabase mdb, Document index) {
+		Date createdAt = index.getDate("created_at");
+		if (createdAt != null && System.currentTimeMillis() - createdAt.getTime() < this.orphanIndexExpireMillis) {
+			return;
+		}
+
+		String globalKey = index.getString(CONSTANTS_FD_GLOBAL);
+		try {
+			MongoCollection<Document> indexes = mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+			indexes.deleteOne(Filters.and(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), Filters.eq("created_at", createdAt)));
+			logger.info("{}| orphan recovery index entry deleted.", globalKey);
+		} catch (RuntimeException error) {
+			logger.warn("{}| Error occurred while deleting orphan recovery index entry: {}", globalKey, error.getMessage());
+		}
+	}
+
+	void markCoordinatorTransactionError(String globalKey, WriteConcern writeConcern) {
+		if (this.shardingEnabled == false) {
+			return;
+		}
+
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> indexes = mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+		if (writeConcern != null) {
+			indexes = indexes.withWriteConcern(writeConcern);
+		} // end-if (writeConcern != null)
+		indexes.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), new Document("$set", new Document("error", true)));
+	}
+
 	@SuppressWarnings("unchecked")
 	public TransactionArchive reconstructTransactionArchive(Document document) throws Exception {
 		XidFactory compensableXidFactory = this.beanFactory.getCompensableXidFactory();
@@ -737,6 +1029,102 @@ public class MongoCompensableLogger
 		if (this.initializeEnabled) {
 			this.createTransactionsGlobalTxKeyIndexIfNecessary();
 		}
+
+		if (this.initializeEnabled && this.shardingEnabled) {
+			this.createRecoveryIndexGlobalTxKeyIndexIfNecessary();
+			this.shardTransactionsCollectionIfNecessary();
+		}
+
+		if (this.shardingEnabled) {
+			this.backfillRecoveryIndexIfNecessary();
+		}
+	}
+
+	/**
+	 * Adds the missing recovery_index entries of the coordinator transactions, e.g. those created before sharding was
+	 * enabled, which would otherwise never be found by the recovery. The compensables collection only holds transactions
+	 * which have not been forgotten yet, so the scan is bounded by the number of in-flight transactions.
+	 */
+	private void backfillRecoveryIndexIfNecessary() {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		MongoCollection<Document> indexes = mdb.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+
+		Bson projection = Projections.include(CONSTANTS_FD_GLOBAL, "system", "version", "created", "error",
+				CONSTANTS_FD_PARTITION);
+		FindIterable<Document> transactionItr = transactions.find(Filters.eq("coordinator", true)).projection(projection);
+
+		int created = 0;
+		MongoCursor<Document> transactionCursor = null;
+		try {
+			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
+				Document document = transactionCursor.next();
+				String globalKey = document.getString(CONSTANTS_FD_GLOBAL);
+
+				Document index = new Document();
+				index.append("system", document.getString("system"));
+				index.append("version", document.getLong("version"));
+				index.append("created", document.getString("created"));
+				index.append("created_at", new Date());
+				index.append("error", document.getBoolean("error", false));
+				if (document.containsKey(CONSTANTS_FD_PARTITION)) {
+					index.append(CONSTANTS_FD_PARTITION, document.getInteger(CONSTANTS_FD_PARTITION));
+				} // end-if (document.containsKey(CONSTANTS_FD_PARTITION))
+
+				UpdateResult result = indexes.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey),
+						new Document("$setOnInsert", index), new UpdateOptions().upsert(true));
+				created += result.getUpsertedId() == null ? 0 : 1;
+			}
+		} finally {
+			IOUtils.closeQuietly(transactionCursor);
+		}
+
+		if (created > 0) {
+			logger.info("Recovery index entries of {} coordinator transactions have been created.", created);
+		} // end-if (created > 0)
+	}
+
+	private void createRecoveryIndexGlobalTxKeyIndexIfNecessary() {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> indexes = database.getCollection(CONSTANTS_TB_RECOVERY_INDEX);
+		indexes.createIndex(new Document(CONSTANTS_FD_GLOBAL, 1), new IndexOptions().unique(true));
+	}
+
+	private void shardTransactionsCollectionIfNecessary() {
+		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
+		MongoCollection<Document> transactions = database.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		transactions.createIndex(Indexes.hashed(CONSTANTS_FD_GLOBAL));
+
+		MongoDatabase admin = this.mongoClient.getDatabase("admin");
+		try {
+			admin.runCommand(new Document("enableSharding", databaseName));
+		} catch (MongoCommandException error) {
+			this.logShardingCommandError("enableSharding", databaseName, error);
+		}
+
+		String namespace = String.format("%s.%s", databaseName, CONSTANTS_TB_TRANSACTIONS);
+		Document command = new Document("shardCollection", namespace);
+		command.append("key", new Document(CONSTANTS_FD_GLOBAL, "hashed"));
+		try {
+			admin.runCommand(command);
+		} catch (MongoCommandException error) {
+			this.logShardingCommandError("shardCollection", namespace, error);
+		}
+	}
+
+	private void logShardingCommandError(String command, String target, MongoCommandException error) {
+		String message = error.getErrorMessage();
+		boolean executed = error.getErrorCode() == MONGODB_ERROR_ALREADY_INITIALIZED
+				|| StringUtils.containsIgnoreCase(message, "already");
+		if (executed) {
+			logger.info("{}({}) has already been done: {}", command, target, message);
+		} else {
+			logger.warn("Error occurred while executing {}({}), the collection {} is not sharded: {}", command, target,
+					CONSTANTS_TB_TRANSACTIONS, message);
+		}
 	}
 
 	private void createTransactionsGlobalTxKeyIndexIfNecessary() {
@@ -752,6 +1140,9 @@ public class MongoCompensableLogger
 				Document document = transactionCursor.next();
 				Boolean unique = document.getBoolean("unique");
 				Document key = (Document) document.get("key");
+				if ("hashed".equals(key.get(CONSTANTS_FD_GLOBAL))) {
+					continue; // shard key
+				}
 
 				boolean globalExists = key.containsKey(CONSTANTS_FD_GLOBAL);
 				boolean lengthEquals = key.size() == 1;
@@ -779,6 +1170,70 @@ public class MongoCompensableLogger
 		this.initializeEnabled = initializeEnabled;
 	}
 
+	public String getTryingWriteConcern() {
+		return this.getWriteConcernName(this.tryingWriteConcern);
+	}
+
+	public void setTryingWriteConcern(String tryingWriteConcern) {
+		this.tryingWriteConcern = this.parseWriteConcern(tryingWriteConcern);
+	}
+
+	public String getDecisionWriteConcern() {
+		return this.getWriteConcernName(this.decisionWriteConcern);
+	}
+
+	public void setDecisionWriteConcern(String decisionWriteConcern) {
+		this.decisionWriteConcern = this.parseWriteConcern(decisionWriteConcern);
+	}
+
+	public String getCompletionWriteConcern() {
+		return this.getWriteConcernName(this.completionWriteConcern);
+	}
+
+	public void setCompletionWriteConcern(String completionWriteConcern) {
+		this.completionWriteConcern = this.parseWriteConcern(completionWriteConcern);
+	}
+
+	public String getForgetWriteConcern() {
+		return this.getWriteConcernName(this.forgetWriteConcern);
+	}
+
+	public void setForgetWriteConcern(String forgetWriteConcern) {
+		this.forgetWriteConcern = this.parseWriteConcern(forgetWriteConcern);
+	}
+
+	public boolean isShardingEnabled() {
+		return shardingEnabled;
+	}
+
+	public void setShardingEnabled(boolean shardingEnabled) {
+		this.shardingEnabled = shardingEnabled;
+	}
+
+	public long getOrphanIndexExpireMillis() {
+		return orphanIndexExpireMillis;
+	}
+
+	public void setOrphanIndexExpireMillis(long orphanIndexExpireMillis) {
+		this.orphanIndexExpireMillis = orphanIndexExpireMillis;
+	}
+
+	public CompensableInstPartitionManager getPartitionManager() {
+		return partitionManager;
+	}
+
+	public void setPartitionManager(CompensableInstPartitionManager partitionManager) {
+		this.partitionManager = partitionManager;
+	}
+
+	public CompensableTransactionCache getTransactionCache() {
+		return transactionCache;
+	}
+
+	public void setTransactionCache(CompensableTransactionCache transactionCache) {
+		this.transactionCache = transactionCache;
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
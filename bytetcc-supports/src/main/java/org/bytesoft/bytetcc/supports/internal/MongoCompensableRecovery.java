@@ -16,7 +16,10 @@
 package org.bytesoft.bytetcc.supports.internal;
 
 import org.bytesoft.bytetcc.TransactionRecoveryImpl;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.cmd.CommandDispatcher;
+import org.bytesoft.transaction.xa.TransactionXid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,8 +28,22 @@ public class MongoCompensableRecovery extends TransactionRecoveryImpl {
 
 	@javax.inject.Inject
 	private CommandDispatcher commandDispatcher;
+	@javax.inject.Inject
+	private CompensableInstPartitionManager partitionManager;
 
 	public void timingRecover() throws SecurityException {
+		if (this.partitionManager != null && this.partitionManager.isPartitionEnabled()) {
+			// The partition ring is not built until the membership data arrives from zookeeper. Until then the instance
+			// owns no partition and skips the round, rather than recovering the transactions of the other instances.
+			if (this.partitionManager.getOwnedPartitions().isEmpty()) {
+				logger.debug("No partition is owned by the current instance, the recovery is skipped.");
+				return;
+			}
+
+			super.timingRecover(); // every instance recovers the transactions of its own partitions
+			return;
+		}
+
 		try {
 			this.commandDispatcher.dispatch(new Runnable() {
 				public void run() {
@@ -46,6 +63,17 @@ public class MongoCompensableRecovery extends TransactionRecoveryImpl {
 		super.timingRecover();
 	}
 
+	/* the query has been filtered by the owned partitions already, the ring may have changed since then. */
+	protected boolean isRecoveryAssigned(Transaction transaction) {
+		if (this.partitionManager == null || this.partitionManager.isPartitionEnabled() == false) {
+			return true;
+		}
+
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		String globalKey = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+		return this.partitionManager.isPartitionOwner(this.partitionManager.getPartition(globalKey));
+	}
+
 	public CommandDispatcher getCommandDispatcher() {
 		return commandDispatcher;
 	}
@@ -54,4 +82,12 @@ public class MongoCompensableRecovery extends TransactionRecoveryImpl {
 		this.commandDispatcher = commandDispatcher;
 	}
 
+	public CompensableInstPartitionManager getPartitionManager() {
+		return partitionManager;
+	}
+
+	public void setPartitionManager(CompensableInstPartitionManager partitionManager) {
+		this.partitionManager = partitionManager;
+	}
+
 }
@@ -15,8 +15,10 @@
  */
 package org.bytesoft.bytetcc.supports.internal;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 
 import javax.transaction.Status;
@@ -39,9 +41,11 @@ import org.bson.conversions.Bson;
 import org.bytesoft.bytetcc.CompensableManagerImpl;
 import org.bytesoft.bytetcc.CompensableTransactionImpl;
 import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
+import org.bytesoft.bytetcc.supports.CompensableTransactionLocator;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
@@ -50,6 +54,7 @@ import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionException;
 import org.bytesoft.transaction.TransactionRecovery;
 import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.archive.XAResourceArchive;
 import org.bytesoft.transaction.cmd.CommandDispatcher;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
@@ -57,6 +62,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
+import com.mongodb.WriteConcern;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
@@ -66,7 +72,8 @@ import com.mongodb.client.model.Filters;
 import com.mongodb.client.result.UpdateResult;
 
 public class MongoCompensableRepository implements TransactionRepository, CompensableRolledbackMarker, CompensableEndpointAware,
-		CompensableBeanFactoryAware, CuratorWatcher, BackgroundCallback, SmartInitializingSingleton {
+		CompensableBeanFactoryAware, CompensableTransactionLocator, CuratorWatcher, BackgroundCallback,
+		SmartInitializingSingleton {
 	static Logger logger = LoggerFactory.getLogger(MongoCompensableRepository.class);
 	static final String CONSTANTS_ROOT_PATH = "/org/bytesoft/bytetcc";
 	static final String CONSTANTS_TB_TRANSACTIONS = "compensables";
@@ -84,6 +91,8 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 	private CompensableBeanFactory beanFactory;
 	@javax.inject.Inject
 	private CommandDispatcher commandDispatcher;
+	@javax.inject.Inject
+	private CompensableTransactionCache transactionCache;
 
 	private long rollbackEntryExpireTime = 1000L * 60 * 5;
 
@@ -252,6 +261,8 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			collection.updateOne(Filters.and(globalFilter, statusFilter), document);
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while setting the error flag.", error);
+		} finally {
+			this.invalidateCacheIfNecessary(transactionXid);
 		}
 	}
 
@@ -266,13 +277,30 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			return transaction;
 		}
 
-		return this.getTransactionFromMongoDB(xid);
+		CompensableTransactionCache.CacheEntry entry = this.getTransactionEntry(xid);
+		return entry.archive == null ? null : this.reconstructTransaction(entry.archive);
 	}
 
-	private Transaction getTransactionFromMongoDB(TransactionXid xid) throws TransactionException {
-		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
-		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+	/* the transaction returned by getTransaction is already a private copy, rebuilt from the cached archive. */
+	public Transaction locateTransaction(TransactionXid xid) throws TransactionException {
+		return this.getTransaction(xid);
+	}
 
+	/**
+	 * Returns the cached entry of the transaction, which is loaded from mongodb on a miss; the archive of the entry is null
+	 * if the transaction does not exist.
+	 */
+	private CompensableTransactionCache.CacheEntry getTransactionEntry(TransactionXid xid) throws TransactionException {
+		byte[] global = xid.getGlobalTransactionId();
+		String globalKey = ByteUtils.byteArrayToString(global);
+
+		CompensableTransactionCache.CacheEntry entry = //
+				this.transactionCache == null ? null : this.transactionCache.get(globalKey);
+		if (entry != null) {
+			return entry;
+		}
+
+		long generation = this.transactionCache == null ? 0 : this.transactionCache.getGeneration();
 		MongoCursor<Document> transactionCursor = null;
 		try {
 			String application = CommonUtils.getApplication(this.endpoint);
@@ -281,20 +309,26 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
 			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
-			byte[] global = xid.getGlobalTransactionId();
-			String globalKey = ByteUtils.byteArrayToString(global);
-
+			entry = new CompensableTransactionCache.CacheEntry();
 			FindIterable<Document> transactionItr = transactions.find(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey));
 			transactionCursor = transactionItr.iterator();
 			if (transactionCursor.hasNext() == false) {
-				return null;
+				if (this.transactionCache != null) {
+					this.transactionCache.putAbsent(globalKey, generation);
+				} // end-if (this.transactionCache != null)
+				return entry;
 			}
-			Document document = transactionCursor.next();
 
-			MongoCompensableLogger mongoCompensableLogger = (MongoCompensableLogger) compensableLogger;
-			TransactionArchive archive = mongoCompensableLogger.reconstructTransactionArchive(document);
-
-			return compensableRecovery.reconstruct(archive);
+			Document document = transactionCursor.next();
+			MongoCompensableLogger compensableLogger = (MongoCompensableLogger) this.beanFactory.getCompensableLogger();
+			entry.archive = compensableLogger.reconstructTransactionArchive(document);
+			entry.error = document.getBoolean("error", false);
+			entry.creator = document.getString("created");
+			if (this.transactionCache != null) {
+				this.transactionCache.putArchive(globalKey, entry.archive, entry.creator, entry.error, generation);
+			} // end-if (this.transactionCache != null)
+
+			return entry;
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while getting transaction.", error);
 			throw new TransactionException(XAException.XAER_RMERR);
@@ -306,10 +340,79 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 		}
 	}
 
+	/* the cached archive is shared, each transaction is reconstructed from a copy of it. */
+	private Transaction reconstructTransaction(TransactionArchive archive) throws TransactionException {
+		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		try {
+			return compensableRecovery.reconstruct(this.copyTransactionArchive(archive));
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while reconstructing transaction.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		}
+	}
+
+	private TransactionArchive copyTransactionArchive(TransactionArchive archive) {
+		TransactionArchive that = new TransactionArchive();
+		that.setXid(archive.getXid());
+		that.setVote(archive.getVote());
+		that.setVariables(new HashMap<String, Serializable>(archive.getVariables()));
+		that.setRecoveredAt(archive.getRecoveredAt());
+		that.setRecoveredTimes(archive.getRecoveredTimes());
+		that.setCompensable(archive.isCompensable());
+		that.setCoordinator(archive.isCoordinator());
+		that.setCompensableStatus(archive.getCompensableStatus());
+		that.setPropagated(archive.isPropagated());
+		that.setPropagatedBy(archive.getPropagatedBy());
+
+		List<XAResourceArchive> participantList = archive.getRemoteResources();
+		for (int i = 0; i < participantList.size(); i++) {
+			XAResourceArchive participant = participantList.get(i);
+			XAResourceArchive element = new XAResourceArchive();
+			element.setXid(participant.getXid());
+			element.setVote(participant.getVote());
+			element.setCommitted(participant.isCommitted());
+			element.setRolledback(participant.isRolledback());
+			element.setReadonly(participant.isReadonly());
+			element.setCompleted(participant.isCompleted());
+			element.setHeuristic(participant.isHeuristic());
+			element.setDescriptor(participant.getDescriptor());
+			that.getRemoteResources().add(element);
+		}
+
+		List<CompensableArchive> compensableList = archive.getCompensableResourceList();
+		for (int i = 0; i < compensableList.size(); i++) {
+			CompensableArchive service = compensableList.get(i);
+			CompensableArchive element = new CompensableArchive();
+			element.setIdentifier(service.getIdentifier());
+			element.setCoordinator(service.isCoordinator());
+			element.setCompensable(service.getCompensable());
+			element.setTransactionResourceKey(service.getTransactionResourceKey());
+			element.setTransactionXid(service.getTransactionXid());
+			element.setTried(service.isTried());
+			element.setCompensableResourceKey(service.getCompensableResourceKey());
+			element.setCompensableXid(service.getCompensableXid());
+			element.setConfirmed(service.isConfirmed());
+			element.setCancelled(service.isCancelled());
+			that.getCompensableResourceList().add(element);
+		}
+
+		return that;
+	}
+
+	private void invalidateCacheIfNecessary(TransactionXid transactionXid) {
+		if (this.transactionCache != null) {
+			this.transactionCache.invalidate(ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+		}
+	}
+
 	public Transaction removeTransaction(TransactionXid xid) {
 		return null;
 	}
 
+	/**
+	 * Marks the transaction as error with the write concern of its status tier. The recovery_index entry is marked first,
+	 * so that the transaction is not missed by recovery if the second write fails. Failures are propagated.
+	 */
 	public void putErrorTransaction(TransactionXid transactionXid, Transaction transaction) {
 		try {
 			TransactionArchive archive = (TransactionArchive) transaction.getTransactionArchive();
@@ -318,9 +421,19 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 			int status = archive.getCompensableStatus();
 
+			MongoCompensableLogger compensableLogger = (MongoCompensableLogger) this.beanFactory.getCompensableLogger();
+			WriteConcern writeConcern = compensableLogger.getWriteConcern(status);
+
+			if (archive.isCoordinator()) {
+				compensableLogger.markCoordinatorTransactionError(identifier, writeConcern);
+			} // end-if (archive.isCoordinator())
+
 			String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
 			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
 			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			if (writeConcern != null) {
+				collection = collection.withWriteConcern(writeConcern);
+			} // end-if (writeConcern != null)
 
 			Document target = new Document();
 			target.append("modified", this.endpoint);
@@ -341,46 +454,15 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			}
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while setting the error flag.", error);
+			throw error;
+		} finally {
+			this.invalidateCacheIfNecessary(transactionXid);
 		}
 	}
 
 	public Transaction getErrorTransaction(TransactionXid xid) throws TransactionException {
-		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
-		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
-
-		MongoCursor<Document> transactionCursor = null;
-		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
-
-			byte[] global = xid.getGlobalTransactionId();
-
-			Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
-			Bson errorFilter = Filters.eq("error", true);
-
-			FindIterable<Document> transactionItr = transactions.find(Filters.and(globalFilter, errorFilter));
-			transactionCursor = transactionItr.iterator();
-			if (transactionCursor.hasNext() == false) {
-				return null;
-			}
-
-			Document document = transactionCursor.next();
-
-			MongoCompensableLogger mongoCompensableLogger = (MongoCompensableLogger) compensableLogger;
-			TransactionArchive archive = mongoCompensableLogger.reconstructTransactionArchive(document);
-
-			return compensableRecovery.reconstruct(archive);
-		} catch (RuntimeException error) {
-			logger.error("Error occurred while getting error transaction.", error);
-			throw new TransactionException(XAException.XAER_RMERR);
-		} catch (Exception error) {
-			logger.error("Error occurred while getting error transaction.", error);
-			throw new TransactionException(XAException.XAER_RMERR);
-		} finally {
-			IOUtils.closeQuietly(transactionCursor);
-		}
+		CompensableTransactionCache.CacheEntry entry = this.getTransactionEntry(xid);
+		return entry.archive == null || entry.error == false ? null : this.reconstructTransaction(entry.archive);
 	}
 
 	public Transaction removeErrorTransaction(TransactionXid xid) {
@@ -393,28 +475,23 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 		List<Transaction> transactionList = new ArrayList<Transaction>();
 
+		MongoCompensableLogger mongoCompensableLogger = (MongoCompensableLogger) compensableLogger;
+
 		MongoCursor<Document> transactionCursor = null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
-
-			FindIterable<Document> transactionItr = transactions.find(Filters.eq("coordinator", true));
+			FindIterable<Document> transactionItr = mongoCompensableLogger.findOwnedCoordinatorTransactions();
 			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
 				Document document = transactionCursor.next();
-				boolean error = document.getBoolean("error");
-
-				String targetApplication = document.getString("created");
-				long expectVersion = document.getLong("version");
-				long actualVersion = this.versionManager.getInstanceVersion(targetApplication);
-
-				if (error == false && actualVersion > 0 && actualVersion <= expectVersion) {
+				if (mongoCompensableLogger.isRecoveryRequired(document) == false) {
 					continue; // ignore
 				}
 
-				MongoCompensableLogger mongoCompensableLogger = (MongoCompensableLogger) compensableLogger;
-				TransactionArchive archive = mongoCompensableLogger.reconstructTransactionArchive(document);
+				Document target = mongoCompensableLogger.getCoordinatorTransaction(document);
+				if (target == null) {
+					continue; // completed
+				}
+
+				TransactionArchive archive = mongoCompensableLogger.reconstructTransactionArchive(target);
 
 				Transaction transaction = compensableRecovery.reconstruct(archive);
 				transactionList.add(transaction);
@@ -440,6 +517,14 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 		this.commandDispatcher = commandDispatcher;
 	}
 
+	public CompensableTransactionCache getTransactionCache() {
+		return transactionCache;
+	}
+
+	public void setTransactionCache(CompensableTransactionCache transactionCache) {
+		this.transactionCache = transactionCache;
+	}
+
 	public long getRollbackEntryExpireTime() {
 		return rollbackEntryExpireTime;
 	}
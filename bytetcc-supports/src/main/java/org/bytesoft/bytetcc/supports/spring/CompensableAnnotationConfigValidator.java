@@ -18,13 +18,18 @@ package org.bytesoft.bytetcc.supports.spring;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.compensable.Compensable;
+import org.bytesoft.compensable.CompensableBatch;
 import org.bytesoft.compensable.CompensableCancel;
 import org.bytesoft.compensable.CompensableConfirm;
+import org.bytesoft.compensable.CompensableIndex;
 import org.bytesoft.compensable.RemotingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,14 +51,26 @@ public class CompensableAnnotationConfigValidator
 
 	private ApplicationContext applicationContext;
 	private BeanFactory beanFactory;
+	/* trust the index generated by bytetcc-processor, if exists, instead of scanning the bean classes it lists. */
+	private boolean indexEnabled = true;
 
 	public void afterSingletonsInstantiated() {
 		String[] beanNameArray = this.applicationContext.getBeanDefinitionNames();
 		BeanDefinitionRegistry registry = (BeanDefinitionRegistry) this.beanFactory;
 
-		Map<String, Compensable> compensables = new HashMap<String, Compensable>();
-		Map<String, Class<?>> otherServiceMap = new HashMap<String, Class<?>>();
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		Map<String, CompensableIndex> compensables = new HashMap<String, CompensableIndex>();
+		Map<String, String> otherServiceMap = new HashMap<String, String>();
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+		Map<String, CompensableIndex> indexMap = this.indexEnabled ? CompensableIndex.load(cl)
+				: new HashMap<String, CompensableIndex>();
+		Set<String> indexedRoots = this.indexEnabled ? CompensableIndex.getIndexedRoots(cl) : new HashSet<String>();
+		if (indexMap.isEmpty() == false) {
+			logger.info("Compensable services are validated according to {}, size= {}.", CompensableIndex.RESOURCE_LOCATION,
+					indexMap.size());
+		}
+
 		for (int i = 0; beanNameArray != null && i < beanNameArray.length; i++) {
 			String beanName = beanNameArray[i];
 			BeanDefinition beanDef = registry.getBeanDefinition(beanName);
@@ -63,6 +80,18 @@ public class CompensableAnnotationConfigValidator
 				continue;
 			}
 
+			// validated at compile time, the metadata will be resolved on the first invocation. The classes which are not
+			// listed are not loaded either if their jar/directory has an index, otherwise (e.g. compiled without
+			// bytetcc-processor) they are checked by reflection.
+			CompensableIndex index = indexMap.get(className);
+			if (index != null) {
+				compensables.put(beanName, index);
+				continue;
+			} else if (CompensableIndex.isIndexedClass(cl, className, indexedRoots)) {
+				otherServiceMap.put(beanName, className);
+				continue;
+			}
+
 			Class<?> clazz = null;
 			try {
 				clazz = cl.loadClass(className);
@@ -79,7 +108,7 @@ public class CompensableAnnotationConfigValidator
 			}
 
 			if (compensable == null) {
-				otherServiceMap.put(beanName, clazz);
+				otherServiceMap.put(beanName, className);
 				continue;
 			}
 
@@ -104,27 +133,40 @@ public class CompensableAnnotationConfigValidator
 				this.validateSimplifiedCompensable(method, clazz);
 				this.validateDeclaredRemotingException(method, clazz);
 				this.validateTransactionalPropagation(method, clazz);
+
+				metadataRegistry.register(clazz, method);
+				this.registerCompensateMetadata(beanName, beanDef, compensable, method);
 			}
 
-			compensables.put(beanName, compensable);
+			if (compensable.simplified()) {
+				this.validateCompensableBatch(clazz, beanName);
+			} // end-if (compensable.simplified())
+
+			compensables.put(beanName, new CompensableIndex(className, interfaceClass.getName(), compensable.simplified(),
+					compensable.confirmableKey(), compensable.cancellableKey()));
 		}
 
-		Iterator<Map.Entry<String, Compensable>> itr = compensables.entrySet().iterator();
+		Iterator<Map.Entry<String, CompensableIndex>> itr = compensables.entrySet().iterator();
 		while (itr.hasNext()) {
-			Map.Entry<String, Compensable> entry = itr.next();
-			Compensable compensable = entry.getValue();
-			Class<?> interfaceClass = compensable.interfaceClass();
-			String confirmableKey = compensable.confirmableKey();
-			String cancellableKey = compensable.cancellableKey();
+			Map.Entry<String, CompensableIndex> entry = itr.next();
+			CompensableIndex compensable = entry.getValue();
+			String confirmableKey = compensable.getConfirmableKey();
+			String cancellableKey = compensable.getCancellableKey();
+			if (StringUtils.isBlank(confirmableKey) && StringUtils.isBlank(cancellableKey)) {
+				continue;
+			}
+
+			Class<?> interfaceClass = this.loadClass(cl, compensable.getInterfaceClass());
 			if (StringUtils.isNotBlank(confirmableKey)) {
 				if (compensables.containsKey(confirmableKey)) {
 					throw new FatalBeanException(
 							String.format("The confirm bean(id= %s) cannot be a compensable service!", confirmableKey));
 				}
-				Class<?> clazz = otherServiceMap.get(confirmableKey);
-				if (clazz == null) {
+				String className = otherServiceMap.get(confirmableKey);
+				if (className == null) {
 					throw new IllegalStateException(String.format("The confirm bean(id= %s) is not exists!", confirmableKey));
 				}
+				Class<?> clazz = this.loadClass(cl, className);
 
 				Method[] methodArray = interfaceClass.getDeclaredMethods();
 				for (int j = 0; j < methodArray.length; j++) {
@@ -143,6 +185,7 @@ public class CompensableAnnotationConfigValidator
 					this.validateTransactionalPropagation(method, clazz);
 					this.validateTransactionalRollbackFor(method, clazz, confirmableKey);
 				}
+				this.validateCompensableBatch(clazz, confirmableKey);
 			} // end-if (StringUtils.isNotBlank(confirmableKey))
 
 			if (StringUtils.isNotBlank(cancellableKey)) {
@@ -150,10 +193,12 @@ public class CompensableAnnotationConfigValidator
 					throw new FatalBeanException(
 							String.format("The cancel bean(id= %s) cannot be a compensable service!", confirmableKey));
 				}
-				Class<?> clazz = otherServiceMap.get(cancellableKey);
-				if (clazz == null) {
+				String className = otherServiceMap.get(cancellableKey);
+				if (className == null) {
 					throw new IllegalStateException(String.format("The cancel bean(id= %s) is not exists!", cancellableKey));
 				}
+				Class<?> clazz = this.loadClass(cl, className);
+
 				Method[] methodArray = interfaceClass.getDeclaredMethods();
 				for (int j = 0; j < methodArray.length; j++) {
 					Method interfaceMethod = methodArray[j];
@@ -172,11 +217,30 @@ public class CompensableAnnotationConfigValidator
 					this.validateTransactionalPropagation(method, clazz);
 					this.validateTransactionalRollbackFor(method, clazz, cancellableKey);
 				}
+				this.validateCompensableBatch(clazz, cancellableKey);
 			} // end-if (StringUtils.isNotBlank(cancellableKey))
 
 		}
 	}
 
+	private Class<?> loadClass(ClassLoader cl, String className) throws FatalBeanException {
+		try {
+			return cl.loadClass(className);
+		} catch (ClassNotFoundException ex) {
+			throw new FatalBeanException(String.format("Cannot load class %s!", className), ex);
+		}
+	}
+
+	/* the confirm/cancel methods of a simplified compensable service are resolved against its (proxied) instance class. */
+	private void registerCompensateMetadata(String beanName, BeanDefinition beanDef, Compensable compensable, Method method) {
+		if (compensable.simplified() == false || beanDef.isSingleton() == false || beanDef.isLazyInit()) {
+			return;
+		}
+
+		Object instance = this.applicationContext.getBean(beanName);
+		CompensableMetadataRegistry.getInstance().register(instance.getClass(), method);
+	}
+
 	private void validateSimplifiedCompensable(Method method, Class<?> clazz) throws IllegalStateException {
 		Compensable compensable = clazz.getAnnotation(Compensable.class);
 		Class<?> interfaceClass = compensable.interfaceClass();
@@ -229,6 +293,26 @@ public class CompensableAnnotationConfigValidator
 
 	}
 
+	/* a batch method confirms/cancels the branches in one local transaction, it is checked as a confirm/cancel method. */
+	private void validateCompensableBatch(Class<?> clazz, String beanName) throws IllegalStateException {
+		Method[] methodArray = clazz.getMethods();
+		for (int i = 0; i < methodArray.length; i++) {
+			Method method = methodArray[i];
+			if (method.getAnnotation(CompensableBatch.class) == null) {
+				continue;
+			}
+
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			if (parameterTypes.length != 1 || parameterTypes[0].isAssignableFrom(List.class) == false) {
+				throw new FatalBeanException(
+						String.format("The batch method(%s) must take a single List parameter!", method));
+			}
+			this.validateDeclaredRemotingException(method, clazz);
+			this.validateTransactionalPropagation(method, clazz);
+			this.validateTransactionalRollbackFor(method, clazz, beanName);
+		}
+	}
+
 	private void validateDeclaredRemotingException(Method method, Class<?> clazz) throws IllegalStateException {
 		Class<?>[] exceptionTypeArray = method.getExceptionTypes();
 
@@ -312,6 +396,14 @@ public class CompensableAnnotationConfigValidator
 		}
 	}
 
+	public boolean isIndexEnabled() {
+		return indexEnabled;
+	}
+
+	public void setIndexEnabled(boolean indexEnabled) {
+		this.indexEnabled = indexEnabled;
+	}
+
 	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
 		this.beanFactory = beanFactory;
 	}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014-2019 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.spring;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-(class, method) table of the compensable dispatch metadata. It is built at startup by the
+ * CompensableAnnotationConfigValidator, the methods missed there are resolved once on first use. It is cleared when the
+ * application context is closed, see SpringContainerContextImpl.
+ */
+public final class CompensableMetadataRegistry {
+	private static final CompensableMetadataRegistry instance = new CompensableMetadataRegistry();
+
+	private final Map<Class<?>, Map<Method, CompensableMethodMetadata>> metadataMap = //
+			new ConcurrentHashMap<Class<?>, Map<Method, CompensableMethodMetadata>>();
+	private final Map<Class<?>, Map<Method, CompensableMethodInvoker>> invokerMap = //
+			new ConcurrentHashMap<Class<?>, Map<Method, CompensableMethodInvoker>>();
+
+	private CompensableMetadataRegistry() {
+		if (instance != null) {
+			throw new IllegalStateException();
+		}
+	}
+
+	public static CompensableMetadataRegistry getInstance() {
+		return instance;
+	}
+
+	public CompensableMethodMetadata getMetadata(Class<?> clazz, Method method) {
+		Map<Method, CompensableMethodMetadata> methodMap = this.metadataMap.get(clazz);
+		CompensableMethodMetadata metadata = methodMap == null ? null : methodMap.get(method);
+		return metadata == null ? this.register(clazz, method) : metadata;
+	}
+
+	public synchronized CompensableMethodMetadata register(Class<?> clazz, Method method) {
+		Map<Method, CompensableMethodMetadata> methodMap = this.metadataMap.get(clazz);
+		CompensableMethodMetadata metadata = methodMap == null ? null : methodMap.get(method);
+		if (metadata != null) {
+			return metadata;
+		}
+
+		metadata = CompensableMethodMetadata.create(clazz, method);
+
+		Map<Method, CompensableMethodMetadata> copyMap = methodMap == null //
+				? new HashMap<Method, CompensableMethodMetadata>() : new HashMap<Method, CompensableMethodMetadata>(methodMap);
+		copyMap.put(method, metadata);
+		this.metadataMap.put(clazz, Collections.unmodifiableMap(copyMap));
+
+		return metadata;
+	}
+
+	/* the invoker of the specified method on the instances of the specified bean class. */
+	public CompensableMethodInvoker getInvoker(Class<?> clazz, Method method) {
+		Map<Method, CompensableMethodInvoker> methodMap = this.invokerMap.get(clazz);
+		CompensableMethodInvoker invoker = methodMap == null ? null : methodMap.get(method);
+		return invoker == null ? this.registerInvoker(clazz, method) : invoker;
+	}
+
+	private synchronized CompensableMethodInvoker registerInvoker(Class<?> clazz, Method method) {
+		Map<Method, CompensableMethodInvoker> methodMap = this.invokerMap.get(clazz);
+		CompensableMethodInvoker invoker = methodMap == null ? null : methodMap.get(method);
+		if (invoker != null) {
+			return invoker;
+		}
+
+		invoker = CompensableMethodInvoker.create(method);
+
+		Map<Method, CompensableMethodInvoker> copyMap = methodMap == null //
+				? new HashMap<Method, CompensableMethodInvoker>() : new HashMap<Method, CompensableMethodInvoker>(methodMap);
+		copyMap.put(method, invoker);
+		this.invokerMap.put(clazz, Collections.unmodifiableMap(copyMap));
+
+		return invoker;
+	}
+
+	public synchronized void clear() {
+		this.metadataMap.clear();
+		this.invokerMap.clear();
+	}
+
+}
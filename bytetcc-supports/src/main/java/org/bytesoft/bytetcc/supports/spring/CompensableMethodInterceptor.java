@@ -29,8 +29,6 @@ import org.bytesoft.bytetcc.supports.CompensableSynchronization;
 import org.bytesoft.bytetcc.supports.spring.aware.CompensableBeanNameAware;
 import org.bytesoft.compensable.Compensable;
 import org.bytesoft.compensable.CompensableBeanFactory;
-import org.bytesoft.compensable.CompensableCancel;
-import org.bytesoft.compensable.CompensableConfirm;
 import org.bytesoft.compensable.CompensableInvocation;
 import org.bytesoft.compensable.CompensableInvocationRegistry;
 import org.bytesoft.compensable.CompensableManager;
@@ -119,22 +117,18 @@ public class CompensableMethodInterceptor
 		TransactionManager transactionManager = this.beanFactory.getTransactionManager();
 		CompensableManager compensableManager = this.beanFactory.getCompensableManager();
 
-		Compensable annotation = method.getDeclaringClass().getAnnotation(Compensable.class);
-		Class<?> interfaceClass = annotation.interfaceClass();
-		String methodName = method.getName();
-		Class<?>[] parameterTypes = method.getParameterTypes();
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		Class<?> targetClass = AopUtils.getTargetClass(point.getThis());
+		CompensableMethodMetadata metadata = metadataRegistry.getMetadata(targetClass, method);
 
-		Method interfaceMethod = null;
-		try {
-			interfaceMethod = interfaceClass.getMethod(methodName, parameterTypes);
-		} catch (NoSuchMethodException ex) {
+		Compensable annotation = metadata.getCompensable();
+		Method interfaceMethod = metadata.getInterfaceMethod();
+		if (interfaceMethod == null) {
 			logger.warn("Current compensable-service {} is invoking a non-TCC operation!", method);
 			return point.proceed(); // ignore
 		}
 
-		Transactional clazzAnnotation = method.getDeclaringClass().getAnnotation(Transactional.class);
-		Transactional methodAnnotation = method.getAnnotation(Transactional.class);
-		Transactional transactional = methodAnnotation == null ? clazzAnnotation : methodAnnotation;
+		Transactional transactional = metadata.getTransactional();
 		if (transactional == null) {
 			throw new IllegalStateException(
 					String.format("Compensable-service(%s) does not have a Transactional annotation!", method));
@@ -142,7 +136,7 @@ public class CompensableMethodInterceptor
 
 		CompensableInvocation invocation = null;
 		if (annotation.simplified()) {
-			invocation = this.getCompensableInvocation(identifier, method, args, annotation, point.getThis());
+			invocation = this.getCompensableInvocation(identifier, method, args, metadata);
 		} else {
 			invocation = this.getCompensableInvocation(identifier, interfaceMethod, args, annotation);
 		}
@@ -195,31 +189,20 @@ public class CompensableMethodInterceptor
 
 	/* simplified. */
 	private CompensableInvocation getCompensableInvocation(String identifier, Method method, Object[] args,
-			Compensable annotation, Object target) {
+			CompensableMethodMetadata metadata) {
 		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
 		invocation.setArgs(args);
 
 		invocation.setIdentifier(identifier);
-		invocation.setSimplified(annotation.simplified());
+		invocation.setSimplified(metadata.getCompensable().simplified());
 
 		invocation.setMethod(method); // class-method
 
-		Class<?> currentClazz = AopUtils.getTargetClass(target);
-
-		Method[] methodArray = currentClazz.getDeclaredMethods();
-		boolean confirmFlag = false;
-		boolean cancelFlag = false;
-
-		for (int i = 0; (confirmFlag == false || cancelFlag == false) && i < methodArray.length; i++) {
-			Method element = methodArray[i];
-			if (element.getAnnotation(CompensableConfirm.class) != null) {
-				confirmFlag = true;
-				invocation.setConfirmableKey(identifier);
-			}
-			if (element.getAnnotation(CompensableCancel.class) != null) {
-				cancelFlag = true;
-				invocation.setCancellableKey(identifier);
-			}
+		if (metadata.isConfirmable()) {
+			invocation.setConfirmableKey(identifier);
+		}
+		if (metadata.isCancellable()) {
+			invocation.setCancellableKey(identifier);
 		}
 
 		return invocation;
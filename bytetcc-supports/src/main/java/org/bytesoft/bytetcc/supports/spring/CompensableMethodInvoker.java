@@ -0,0 +1,61 @@
+/**
+ * Copyright 2014-2019 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.spring;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invoker of a confirm/cancel method, resolved once and cached by the CompensableMetadataRegistry. It calls
+ * Method.invoke, a method handle kept in an instance field is not constant-folded by the JIT and gains nothing.
+ */
+public final class CompensableMethodInvoker {
+
+	private final Method method;
+
+	private CompensableMethodInvoker(Method method) {
+		this.method = method;
+	}
+
+	public static CompensableMethodInvoker create(Method method) {
+		if (Modifier.isPublic(method.getModifiers()) == false
+				|| Modifier.isPublic(method.getDeclaringClass().getModifiers()) == false) {
+			method.setAccessible(true);
+		}
+		return new CompensableMethodInvoker(method);
+	}
+
+	/**
+	 * Same contract as Method.invoke, except that an Error thrown by the target method is rethrown unwrapped.
+	 */
+	public Object invoke(Object instance, Object[] args) throws InvocationTargetException, IllegalAccessException {
+		try {
+			return this.method.invoke(instance, args);
+		} catch (InvocationTargetException ex) {
+			Throwable target = ex.getTargetException();
+			if (Error.class.isInstance(target)) {
+				throw (Error) target;
+			}
+			throw ex;
+		}
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2014-2019 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.spring;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import org.bytesoft.compensable.Compensable;
+import org.bytesoft.compensable.CompensableCancel;
+import org.bytesoft.compensable.CompensableConfirm;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Immutable dispatch metadata of a compensable method invoked on a class: the interface method, the transactional
+ * annotation in effect and, for the simplified compensable services, the resolved confirm/cancel methods and their
+ * invokers.
+ */
+public final class CompensableMethodMetadata {
+
+	private final Class<?> clazz;
+	private final Method method;
+	private final Compensable compensable;
+	private final Method interfaceMethod;
+	private final Transactional transactional;
+	private final boolean confirmable;
+	private final boolean cancellable;
+	private final Method confirmMethod;
+	private final Method cancelMethod;
+	private final CompensableMethodInvoker confirmInvoker;
+	private final CompensableMethodInvoker cancelInvoker;
+
+	private CompensableMethodMetadata(Class<?> clazz, Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		this.clazz = clazz;
+		this.method = method;
+		this.compensable = declaringClass.getAnnotation(Compensable.class);
+		this.interfaceMethod = this.compensable == null ? null : getInterfaceMethod(this.compensable, method);
+
+		Transactional clazzAnnotation = declaringClass.getAnnotation(Transactional.class);
+		Transactional methodAnnotation = method.getAnnotation(Transactional.class);
+		this.transactional = methodAnnotation == null ? clazzAnnotation : methodAnnotation;
+
+		boolean confirmFlag = false;
+		boolean cancelFlag = false;
+		Method[] declaredMethods = clazz.getDeclaredMethods();
+		for (int i = 0; (confirmFlag == false || cancelFlag == false) && i < declaredMethods.length; i++) {
+			Method element = declaredMethods[i];
+			confirmFlag = confirmFlag || element.getAnnotation(CompensableConfirm.class) != null;
+			cancelFlag = cancelFlag || element.getAnnotation(CompensableCancel.class) != null;
+		}
+		this.confirmable = confirmFlag;
+		this.cancellable = cancelFlag;
+
+		this.confirmMethod = getCompensateMethod(clazz.getMethods(), declaringClass, CompensableConfirm.class);
+		this.cancelMethod = getCompensateMethod(declaredMethods, declaringClass, CompensableCancel.class);
+		this.confirmInvoker = this.confirmMethod == null ? null : CompensableMethodInvoker.create(this.confirmMethod);
+		this.cancelInvoker = this.cancelMethod == null ? null : CompensableMethodInvoker.create(this.cancelMethod);
+	}
+
+	static CompensableMethodMetadata create(Class<?> clazz, Method method) {
+		return new CompensableMethodMetadata(clazz, method);
+	}
+
+	private static Method getInterfaceMethod(Compensable compensable, Method method) {
+		try {
+			return compensable.interfaceClass().getMethod(method.getName(), method.getParameterTypes());
+		} catch (NoSuchMethodException ex) {
+			return null; // non-TCC operation
+		}
+	}
+
+	/* the method of the bean class whose counterpart declared by the try class is annotated with the specified type. */
+	private static Method getCompensateMethod(Method[] methodArray, Class<?> targetClazz,
+			Class<? extends Annotation> annotationType) {
+		for (int i = 0; i < methodArray.length; i++) {
+			Method element = methodArray[i];
+			Method targetMethod = null;
+			try {
+				targetMethod = targetClazz.getDeclaredMethod(element.getName(), element.getParameterTypes());
+			} catch (NoSuchMethodException ex) {
+				continue;
+			}
+
+			if (targetMethod.getAnnotation(annotationType) != null) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	public Class<?> getClazz() {
+		return clazz;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public Compensable getCompensable() {
+		return compensable;
+	}
+
+	public Method getInterfaceMethod() {
+		return interfaceMethod;
+	}
+
+	public Transactional getTransactional() {
+		return transactional;
+	}
+
+	public boolean isConfirmable() {
+		return confirmable;
+	}
+
+	public boolean isCancellable() {
+		return cancellable;
+	}
+
+	public Method getConfirmMethod() {
+		return confirmMethod;
+	}
+
+	public Method getCancelMethod() {
+		return cancelMethod;
+	}
+
+	public CompensableMethodInvoker getConfirmInvoker() {
+		return confirmInvoker;
+	}
+
+	public CompensableMethodInvoker getCancelInvoker() {
+		return cancelInvoker;
+	}
+
+}
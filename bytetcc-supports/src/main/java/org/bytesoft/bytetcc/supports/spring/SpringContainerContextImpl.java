@@ -17,22 +17,67 @@ package org.bytesoft.bytetcc.supports.spring;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.bytesoft.compensable.CompensableCancel;
-import org.bytesoft.compensable.CompensableConfirm;
+import org.bytesoft.compensable.BatchContainerContext;
+import org.bytesoft.compensable.CompensableBatch;
 import org.bytesoft.compensable.CompensableInvocation;
-import org.bytesoft.compensable.ContainerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
-
-public class SpringContainerContextImpl implements ContainerContext, ApplicationContextAware {
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.util.ClassUtils;
+
+public class SpringContainerContextImpl
+		implements BatchContainerContext, ApplicationContextAware, ApplicationListener<ApplicationContextEvent> {
 	static Logger logger = LoggerFactory.getLogger(SpringContainerContextImpl.class);
+	/* cached for the beans without a batch method, the ConcurrentHashMap does not accept null values. */
+	static final BatchTarget NO_BATCH_TARGET = new BatchTarget();
 
 	private ApplicationContext applicationContext;
 
+	/* resolution caches shared by all the (recovered) invocations, invalidated on context refresh. */
+	private final Map<String, Object> beanMap = new ConcurrentHashMap<String, Object>();
+	private final Map<String, Method> methodMap = new ConcurrentHashMap<String, Method>();
+	private final Map<String, BatchTarget> batchMap = new ConcurrentHashMap<String, BatchTarget>();
+
+	public void onApplicationEvent(ApplicationContextEvent event) {
+		if (ContextRefreshedEvent.class.isInstance(event)) {
+			this.beanMap.clear();
+			this.methodMap.clear();
+			this.batchMap.clear();
+		} else if (ContextClosedEvent.class.isInstance(event) && event.getApplicationContext() == this.applicationContext) {
+			this.beanMap.clear();
+			this.methodMap.clear();
+			this.batchMap.clear();
+			// the static registry would otherwise keep the classes of the closed context, and their class loader
+			CompensableMetadataRegistry.getInstance().clear();
+		}
+	}
+
+	/* only the singletons are cached, the other scopes are resolved by the container each time. */
+	private Object getBean(String beanName) {
+		Object instance = this.beanMap.get(beanName);
+		if (instance != null) {
+			return instance;
+		}
+
+		instance = this.applicationContext.getBean(beanName);
+		if (this.applicationContext.isSingleton(beanName)) {
+			this.beanMap.put(beanName, instance);
+		}
+		return instance;
+	}
+
 	public void confirm(CompensableInvocation invocation) throws RuntimeException {
 		String identifier = (String) invocation.getIdentifier();
 		String confirmableKey = invocation.getConfirmableKey();
@@ -40,34 +85,17 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 		Object[] args = invocation.getArgs();
 
 		if (invocation.isSimplified()) {
-			Object instance = this.applicationContext.getBean(identifier);
+			Object instance = this.getBean(identifier);
 			this.confirmSimplified(method, instance, args);
 		} else {
-			Object instance = this.applicationContext.getBean(confirmableKey);
+			Object instance = this.getBean(confirmableKey);
 			this.confirmComplicated(method, instance, args);
 		}
 	}
 
 	private void confirmSimplified(Method method, Object instance, Object[] args) throws RuntimeException {
-		Class<?> clazz = instance.getClass();
-		Class<?> targetClazz = method.getDeclaringClass();
-
-		Method[] methodArray = clazz.getMethods();
-
-		Method confirmable = null;
-		for (int i = 0; confirmable == null && i < methodArray.length; i++) {
-			Method element = methodArray[i];
-			Class<?>[] paramTypes = element.getParameterTypes();
-			Method targetMethod = null;
-			try {
-				targetMethod = targetClazz.getDeclaredMethod(element.getName(), paramTypes);
-			} catch (NoSuchMethodException ex) {
-				continue;
-			}
-
-			CompensableConfirm annotation = targetMethod.getAnnotation(CompensableConfirm.class);
-			confirmable = annotation == null ? confirmable : element;
-		}
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		CompensableMethodInvoker confirmable = metadataRegistry.getMetadata(instance.getClass(), method).getConfirmInvoker();
 
 		if (confirmable == null) {
 			throw new RuntimeException("Not supported yet!");
@@ -79,6 +107,8 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 			throw new RuntimeException(itex.getTargetException());
 		} catch (RuntimeException rex) {
 			throw rex;
+		} catch (Error error) {
+			throw error;
 		} catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
 		}
@@ -86,12 +116,16 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 	}
 
 	public void confirmComplicated(Method method, Object instance, Object[] args) throws RuntimeException {
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		CompensableMethodInvoker invoker = metadataRegistry.getInvoker(instance.getClass(), method);
 		try {
-			method.invoke(instance, args);
+			invoker.invoke(instance, args);
 		} catch (InvocationTargetException itex) {
 			throw new RuntimeException(itex.getTargetException());
 		} catch (RuntimeException rex) {
 			throw rex;
+		} catch (Error error) {
+			throw error;
 		} catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
 		}
@@ -105,35 +139,18 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 		Object[] args = invocation.getArgs();
 
 		if (invocation.isSimplified()) {
-			Object instance = this.applicationContext.getBean(identifier);
+			Object instance = this.getBean(identifier);
 			this.cancelSimplified(method, instance, args);
 		} else {
-			Object instance = this.applicationContext.getBean(cancellableKey);
+			Object instance = this.getBean(cancellableKey);
 			this.cancelComplicated(method, instance, args);
 		}
 
 	}
 
 	private void cancelSimplified(Method method, Object instance, Object[] args) throws RuntimeException {
-		Class<?> clazz = instance.getClass();
-		Class<?> targetClazz = method.getDeclaringClass();
-
-		Method[] methodArray = clazz.getDeclaredMethods();
-
-		Method cancellable = null;
-		for (int i = 0; cancellable == null && i < methodArray.length; i++) {
-			Method element = methodArray[i];
-			Class<?>[] paramTypes = element.getParameterTypes();
-			Method targetMethod = null;
-			try {
-				targetMethod = targetClazz.getDeclaredMethod(element.getName(), paramTypes);
-			} catch (NoSuchMethodException ex) {
-				continue;
-			}
-
-			CompensableCancel annotation = targetMethod.getAnnotation(CompensableCancel.class);
-			cancellable = annotation == null ? cancellable : element;
-		}
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		CompensableMethodInvoker cancellable = metadataRegistry.getMetadata(instance.getClass(), method).getCancelInvoker();
 
 		if (cancellable == null) {
 			throw new RuntimeException("Not supported yet!");
@@ -145,6 +162,8 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 			throw new RuntimeException(itex.getTargetException());
 		} catch (RuntimeException rex) {
 			throw rex;
+		} catch (Error error) {
+			throw error;
 		} catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
 		}
@@ -152,17 +171,133 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 	}
 
 	public void cancelComplicated(Method method, Object instance, Object[] args) throws RuntimeException {
+		CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+		CompensableMethodInvoker invoker = metadataRegistry.getInvoker(instance.getClass(), method);
 		try {
-			method.invoke(instance, args);
+			invoker.invoke(instance, args);
 		} catch (InvocationTargetException itex) {
 			throw new RuntimeException(itex.getTargetException());
 		} catch (RuntimeException rex) {
 			throw rex;
+		} catch (Error error) {
+			throw error;
 		} catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
 		}
 	}
 
+	public String getBatchKey(CompensableInvocation invocation, boolean positive) {
+		String beanName = invocation.isSimplified() ? (String) invocation.getIdentifier()
+				: (positive ? invocation.getConfirmableKey() : invocation.getCancellableKey());
+		Method method = this.getCompensableMethod(invocation);
+		Object instance = this.getBean(beanName);
+
+		Method compensate = method;
+		if (invocation.isSimplified()) {
+			CompensableMetadataRegistry metadataRegistry = CompensableMetadataRegistry.getInstance();
+			CompensableMethodMetadata metadata = metadataRegistry.getMetadata(instance.getClass(), method);
+			compensate = positive ? metadata.getConfirmMethod() : metadata.getCancelMethod();
+		}
+
+		if (compensate == null) {
+			return null;
+		}
+
+		String batchKey = beanName + "#" + compensate.getName();
+		BatchTarget target = this.batchMap.get(batchKey);
+		if (target == null) {
+			target = this.getBatchTarget(beanName, instance, compensate.getName());
+			this.batchMap.put(batchKey, target);
+		}
+
+		return target == NO_BATCH_TARGET ? null : batchKey;
+	}
+
+	/**
+	 * Looks for the method annotated with @CompensableBatch on the user class, and resolves it against the proxy which it
+	 * is invoked on (e.g. the interface method of a jdk proxy). Returns NO_BATCH_TARGET if there is none.
+	 */
+	private BatchTarget getBatchTarget(String beanName, Object instance, String methodName) {
+		Class<?> userClass = ClassUtils.getUserClass(instance.getClass());
+		Method[] methodArray = userClass.getMethods();
+		for (int i = 0; i < methodArray.length; i++) {
+			Method element = methodArray[i];
+			CompensableBatch batch = element.getAnnotation(CompensableBatch.class);
+			Class<?>[] parameterTypes = element.getParameterTypes();
+			if (batch == null || methodName.equals(batch.value()) == false) {
+				continue;
+			} else if (parameterTypes.length != 1 || parameterTypes[0].isAssignableFrom(List.class) == false) {
+				logger.warn("The batch method({}) must take a single List parameter, it is ignored!", element);
+				continue;
+			}
+
+			Method invocable = null;
+			try {
+				invocable = AopUtils.selectInvocableMethod(element, instance.getClass());
+			} catch (IllegalStateException ex) {
+				logger.warn("The batch method({}) is not exposed by the proxy of bean({}), it is ignored!", //
+						element, beanName);
+				continue;
+			}
+
+			BatchTarget target = new BatchTarget();
+			target.beanName = beanName;
+			target.invoker = CompensableMethodInvoker.create(invocable);
+			target.maxSize = batch.maxSize();
+			return target;
+		}
+
+		return NO_BATCH_TARGET;
+	}
+
+	public int getBatchSize(String batchKey) {
+		BatchTarget target = this.batchMap.get(batchKey);
+		return target == null ? 1 : target.maxSize;
+	}
+
+	public boolean confirm(List<CompensableInvocation> invocations) throws RuntimeException {
+		return this.invokeBatch(invocations, true);
+	}
+
+	public boolean cancel(List<CompensableInvocation> invocations) throws RuntimeException {
+		return this.invokeBatch(invocations, false);
+	}
+
+	/* returns false, without invoking anything, if the batch target has gone (e.g. the context has been refreshed). */
+	private boolean invokeBatch(List<CompensableInvocation> invocations, boolean positive) throws RuntimeException {
+		String batchKey = this.getBatchKey(invocations.get(0), positive);
+		BatchTarget target = batchKey == null ? null : this.batchMap.get(batchKey);
+		if (target == null || target == NO_BATCH_TARGET) {
+			return false;
+		}
+
+		List<Object[]> argsList = new ArrayList<Object[]>(invocations.size());
+		for (int i = 0; i < invocations.size(); i++) {
+			argsList.add(invocations.get(i).getArgs());
+		}
+
+		Object instance = this.getBean(target.beanName);
+		try {
+			target.invoker.invoke(instance, new Object[] { argsList });
+		} catch (InvocationTargetException itex) {
+			throw new RuntimeException(itex.getTargetException());
+		} catch (RuntimeException rex) {
+			throw rex;
+		} catch (Error error) {
+			throw error;
+		} catch (Throwable throwable) {
+			throw new RuntimeException(throwable);
+		}
+
+		return true;
+	}
+
+	static class BatchTarget {
+		String beanName;
+		CompensableMethodInvoker invoker;
+		int maxSize;
+	}
+
 	private Method getCompensableMethod(CompensableInvocation invocation) {
 		if (invocation.getMethod() == null) {
 			this.initCompensableMethod(invocation);
@@ -176,6 +311,13 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 		String methodName = invocation.getMethodName();
 		String[] parameterTypeArray = invocation.getParameterTypeArray();
 
+		String methodKey = declaringClass + "#" + methodName + Arrays.toString(parameterTypeArray);
+		Method cachedMethod = this.methodMap.get(methodKey);
+		if (cachedMethod != null) {
+			invocation.setMethod(cachedMethod);
+			return;
+		}
+
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
 		Class<?> clazz = null;
@@ -224,6 +366,7 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 					, declaringClass, methodName, Arrays.toString(parameterTypeArray)), ex);
 		}
 
+		this.methodMap.put(methodKey, targetMethod);
 		invocation.setMethod(targetMethod);
 	}
 
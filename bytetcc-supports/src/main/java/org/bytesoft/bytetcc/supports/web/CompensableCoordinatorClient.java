@@ -0,0 +1,402 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.web;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * HTTP client of the coordinator requests (prepare/commit/rollback/recover/forget) sent to the remote participants:
+ * keep-alive connections pooled per remote endpoint, and connect/read timeouts chosen by the operation of the request.
+ * The non-blocking variant, used by the asynchronous commit/rollback/forget, has its own pool and is started on demand.
+ */
+public class CompensableCoordinatorClient implements EnvironmentAware, InitializingBean, DisposableBean {
+	static final Logger logger = LoggerFactory.getLogger(CompensableCoordinatorClient.class);
+
+	static final String CONSTANT_PREFIX = "org.bytesoft.bytetcc.coordinator.http";
+	static final String CONSTANT_CONTEXT_PATH = "/org/bytesoft/bytetcc/";
+	/* the name of the ClientHttpRequestFactory bean to be used by the coordinator requests instead of the pooled one. */
+	public static final String REQUEST_FACTORY_QUALIFIER = "compensableClientHttpRequestFactory";
+	static final String[] OPERATIONS = new String[] { "prepare", "commit", "rollback", "recover", "forget" };
+
+	private int maxTotal = 200;
+	private int maxPerRoute = 20;
+	private long idleTimeoutMillis = 1000L * 30;
+	private int validateAfterInactivityMillis = 1000 * 2;
+	private int connectionRequestTimeout = 1000 * 3;
+	private int connectTimeout = 1000 * 3;
+	private int readTimeout = 1000 * 30;
+	private int ioThreads = 2;
+	private final Map<String, Integer> connectTimeouts = new HashMap<String, Integer>();
+	private final Map<String, Integer> readTimeouts = new HashMap<String, Integer>();
+
+	private Environment environment;
+	private PoolingHttpClientConnectionManager connectionManager;
+	private CloseableHttpClient httpClient;
+	private ClientHttpRequestFactory requestFactory;
+	private PoolingNHttpClientConnectionManager asyncConnectionManager;
+	private CloseableHttpAsyncClient asyncHttpClient;
+	private AsyncClientHttpRequestFactory asyncRequestFactory;
+	private final Map<String, RequestConfig> requestConfigs = new HashMap<String, RequestConfig>();
+
+	public CompensableCoordinatorClient() {
+		this.readTimeouts.put("recover", 1000 * 60);
+		this.readTimeouts.put("forget", 1000 * 10);
+	}
+
+	public synchronized void afterPropertiesSet() {
+		if (this.httpClient != null) {
+			return;
+		}
+
+		this.initializeProperties();
+
+		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager.setMaxTotal(this.maxTotal);
+		this.connectionManager.setDefaultMaxPerRoute(this.maxPerRoute);
+		this.connectionManager.setValidateAfterInactivity(this.validateAfterInactivityMillis);
+
+		this.requestConfigs.put(null, this.createRequestConfig(null));
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			this.requestConfigs.put(OPERATIONS[i], this.createRequestConfig(OPERATIONS[i]));
+		}
+
+		this.httpClient = HttpClients.custom() //
+				.setConnectionManager(this.connectionManager) //
+				.setDefaultRequestConfig(this.requestConfigs.get(null)) //
+				.evictExpiredConnections() //
+				.evictIdleConnections(this.idleTimeoutMillis, TimeUnit.MILLISECONDS) //
+				.disableAutomaticRetries() // commit/rollback are not retried behind the caller's back
+				.build();
+
+		this.requestFactory = new HttpComponentsClientHttpRequestFactory(this.httpClient) {
+			protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+				HttpClientContext context = HttpClientContext.create();
+				context.setRequestConfig(getRequestConfig(uri));
+				return context;
+			}
+		};
+	}
+
+	@SuppressWarnings("deprecation")
+	public synchronized AsyncClientHttpRequestFactory getAsyncRequestFactory() {
+		if (this.asyncRequestFactory != null) {
+			return this.asyncRequestFactory;
+		}
+
+		this.afterPropertiesSet();
+
+		IOReactorConfig reactorConfig = IOReactorConfig.custom() //
+				.setIoThreadCount(this.ioThreads) //
+				.setSoKeepAlive(true) //
+				.build();
+		try {
+			this.asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+					new DefaultConnectingIOReactor(reactorConfig));
+		} catch (IOReactorException ex) {
+			throw new IllegalStateException("Error occurred while creating the coordinator io reactor!", ex);
+		}
+		this.asyncConnectionManager.setMaxTotal(this.maxTotal);
+		this.asyncConnectionManager.setDefaultMaxPerRoute(this.maxPerRoute);
+
+		this.asyncHttpClient = HttpAsyncClients.custom() //
+				.setConnectionManager(this.asyncConnectionManager) //
+				.setDefaultRequestConfig(this.requestConfigs.get(null)) //
+				.build();
+		this.asyncHttpClient.start();
+
+		this.asyncRequestFactory = new HttpComponentsAsyncClientHttpRequestFactory(this.httpClient, this.asyncHttpClient) {
+			protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+				HttpClientContext context = HttpClientContext.create();
+				context.setRequestConfig(getRequestConfig(uri));
+				return context;
+			}
+		};
+		return this.asyncRequestFactory;
+	}
+
+	private void initializeProperties() {
+		if (this.environment == null) {
+			return;
+		}
+
+		this.maxTotal = this.getIntProperty("max-total", this.maxTotal);
+		this.maxPerRoute = this.getIntProperty("max-per-route", this.maxPerRoute);
+		this.idleTimeoutMillis = this.getIntProperty("idle-timeout", (int) this.idleTimeoutMillis);
+		this.connectionRequestTimeout = this.getIntProperty("connection-request-timeout", this.connectionRequestTimeout);
+		this.connectTimeout = this.getIntProperty("connect-timeout", this.connectTimeout);
+		this.readTimeout = this.getIntProperty("read-timeout", this.readTimeout);
+		this.ioThreads = this.getIntProperty("io-threads", this.ioThreads);
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			String operation = OPERATIONS[i];
+			Integer connectValue = this.connectTimeouts.get(operation);
+			Integer readValue = this.readTimeouts.get(operation);
+			int connectMillis = this.getIntProperty(operation + ".connect-timeout", //
+					connectValue == null ? -1 : connectValue);
+			int readMillis = this.getIntProperty(operation + ".read-timeout", readValue == null ? -1 : readValue);
+			if (connectMillis >= 0) {
+				this.connectTimeouts.put(operation, connectMillis);
+			}
+			if (readMillis >= 0) {
+				this.readTimeouts.put(operation, readMillis);
+			}
+		}
+	}
+
+	private int getIntProperty(String name, int defaultValue) {
+		String key = String.format("%s.%s", CONSTANT_PREFIX, name);
+		String value = StringUtils.trimToNull(this.environment.getProperty(key));
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value);
+		} catch (NumberFormatException ex) {
+			logger.warn("Invalid value of property {}: {}.", key, value);
+			return defaultValue;
+		}
+	}
+
+	private RequestConfig createRequestConfig(String operation) {
+		Integer connectMillis = operation == null ? null : this.connectTimeouts.get(operation);
+		Integer readMillis = operation == null ? null : this.readTimeouts.get(operation);
+		return RequestConfig.custom() //
+				.setConnectionRequestTimeout(this.connectionRequestTimeout) //
+				.setConnectTimeout(connectMillis == null ? this.connectTimeout : connectMillis) //
+				.setSocketTimeout(readMillis == null ? this.readTimeout : readMillis) //
+				.build();
+	}
+
+	/* the operation is the first path segment following the coordinator context path, or the second one of a batch. */
+	RequestConfig getRequestConfig(URI uri) {
+		String path = uri == null ? null : uri.getPath();
+		int index = path == null ? -1 : path.indexOf(CONSTANT_CONTEXT_PATH);
+		if (index < 0) {
+			return this.requestConfigs.get(null);
+		}
+
+		String[] segments = path.substring(index + CONSTANT_CONTEXT_PATH.length()).split("/");
+		String operation = segments.length > 1 && "batch".equals(segments[0]) ? segments[1] : segments[0];
+		RequestConfig requestConfig = this.requestConfigs.get(operation);
+		return requestConfig == null ? this.requestConfigs.get(null) : requestConfig;
+	}
+
+	/* no connection could be leased from the pool in time, the request has not been sent at all. */
+	public static boolean isPoolTimeout(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+			if (ConnectionPoolTimeoutException.class.isInstance(cause)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized void destroy() {
+		if (this.asyncHttpClient != null) {
+			try {
+				this.asyncHttpClient.close();
+			} catch (IOException ex) {
+				logger.warn("Error occurred while closing the coordinator async http client.", ex);
+			} finally {
+				this.asyncHttpClient = null;
+			}
+		}
+
+		if (this.httpClient != null) {
+			try {
+				this.httpClient.close();
+			} catch (IOException ex) {
+				logger.warn("Error occurred while closing the coordinator http client.", ex);
+			} finally {
+				this.httpClient = null;
+			}
+		}
+	}
+
+	public ClientHttpRequestFactory getRequestFactory() {
+		return this.requestFactory;
+	}
+
+	/* number of the connections in use, of all the endpoints. */
+	public int getLeasedConnections() {
+		return this.connectionManager == null ? 0 : this.connectionManager.getTotalStats().getLeased();
+	}
+
+	/* number of the requests waiting for a connection, of all the endpoints. */
+	public int getPendingConnections() {
+		return this.connectionManager == null ? 0 : this.connectionManager.getTotalStats().getPending();
+	}
+
+	/* number of the idle keep-alive connections, of all the endpoints. */
+	public int getAvailableConnections() {
+		return this.connectionManager == null ? 0 : this.connectionManager.getTotalStats().getAvailable();
+	}
+
+	/* pool statistics per remote endpoint (host:port). */
+	public Map<String, PoolStats> getEndpointStats() {
+		Map<String, PoolStats> stats = new HashMap<String, PoolStats>();
+		if (this.connectionManager == null) {
+			return stats;
+		}
+
+		Set<HttpRoute> routes = this.connectionManager.getRoutes();
+		for (HttpRoute route : routes) {
+			stats.put(route.getTargetHost().toHostString(), this.connectionManager.getStats(route));
+		}
+		return stats;
+	}
+
+	/* number of the connections in use by the asynchronous requests, of all the endpoints. */
+	public int getAsyncLeasedConnections() {
+		return this.asyncConnectionManager == null ? 0 : this.asyncConnectionManager.getTotalStats().getLeased();
+	}
+
+	/* number of the asynchronous requests waiting for a connection, of all the endpoints. */
+	public int getAsyncPendingConnections() {
+		return this.asyncConnectionManager == null ? 0 : this.asyncConnectionManager.getTotalStats().getPending();
+	}
+
+	public int getAsyncAvailableConnections() {
+		return this.asyncConnectionManager == null ? 0 : this.asyncConnectionManager.getTotalStats().getAvailable();
+	}
+
+	public Map<String, PoolStats> getAsyncEndpointStats() {
+		Map<String, PoolStats> stats = new HashMap<String, PoolStats>();
+		if (this.asyncConnectionManager == null) {
+			return stats;
+		}
+
+		Set<HttpRoute> routes = this.asyncConnectionManager.getRoutes();
+		for (HttpRoute route : routes) {
+			stats.put(route.getTargetHost().toHostString(), this.asyncConnectionManager.getStats(route));
+		}
+		return stats;
+	}
+
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public void setMaxPerRoute(int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	public int getValidateAfterInactivityMillis() {
+		return validateAfterInactivityMillis;
+	}
+
+	public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+		this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+	}
+
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	public Map<String, Integer> getConnectTimeouts() {
+		return connectTimeouts;
+	}
+
+	public void setConnectTimeouts(Map<String, Integer> connectTimeouts) {
+		this.connectTimeouts.putAll(connectTimeouts);
+	}
+
+	public Map<String, Integer> getReadTimeouts() {
+		return readTimeouts;
+	}
+
+	public void setReadTimeouts(Map<String, Integer> readTimeouts) {
+		this.readTimeouts.putAll(readTimeouts);
+	}
+
+}
@@ -6,6 +6,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.resource.spi.work.Work;
 import javax.transaction.xa.XAException;
@@ -17,8 +24,10 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
+import org.bytesoft.bytetcc.supports.internal.CompensableInstPartitionManager;
 import org.bytesoft.bytetcc.supports.internal.MongoCompensableLogger;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
+import org.bytesoft.bytetcc.work.WorkCadence;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
@@ -43,19 +52,35 @@ public class CompensableCleanupWork
 	static final String CONSTANTS_TB_REMOVEDRESES = "removedreses";
 	static final String CONSTANTS_FD_GLOBAL = "gxid";
 	static final String CONSTANTS_FD_BRANCH = "bxid";
+	static final String CONSTANTS_FD_PARTITION = "partition";
 
 	static final long CONSTANTS_SECOND_MILLIS = 1000L;
-	static final int CONSTANTS_MAX_HANDLE_RECORDS = 1000;
+	static final int CONSTANTS_MAX_DELETE_RECORDS = 1000;
 
 	@javax.annotation.Resource
 	private MongoClient mongoClient;
 	@javax.inject.Inject
 	private CommandDispatcher commandDispatcher;
+	@javax.inject.Inject
+	private CompensableInstPartitionManager partitionManager;
 	private String endpoint;
 	private boolean released;
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 
+	private int forgetThreads = 4;
+	/* a resource which failed to be cleaned up is left out of the queries for this long, so it can't block the others. */
+	private long resourceRetryMillis = CONSTANTS_SECOND_MILLIS * 30;
+	private final Map<String, Long> suspendedResources = new ConcurrentHashMap<String, Long>();
+	private int minHandleRecords = 100;
+	private int maxHandleRecords = 10000;
+
+	private volatile int handleRecords = 1000;
+	private final WorkCadence cleanupCadence = //
+			new WorkCadence(CONSTANTS_SECOND_MILLIS * 30, CONSTANTS_SECOND_MILLIS, CONSTANTS_SECOND_MILLIS * 60);
+	private long lastRemainingRecords = -1;
+	private ExecutorService executor;
+
 	public void forget(Xid xid, String resourceId) throws RuntimeException {
 		try {
 			String application = CommonUtils.getApplication(this.endpoint);
@@ -66,11 +91,16 @@ public class CompensableCleanupWork
 			byte[] global = xid.getGlobalTransactionId();
 			byte[] branch = xid.getBranchQualifier();
 
+			String globalKey = ByteUtils.byteArrayToString(global);
+
 			Document document = new Document();
-			document.append(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
+			document.append(CONSTANTS_FD_GLOBAL, globalKey);
 			document.append(CONSTANTS_FD_BRANCH, ByteUtils.byteArrayToString(branch));
 			document.append("resource_id", resourceId);
 			document.append("created", this.endpoint);
+			if (this.partitionManager != null) {
+				document.append(CONSTANTS_FD_PARTITION, this.partitionManager.getPartition(globalKey));
+			} // end-if (this.partitionManager != null)
 
 			collection.insertOne(document);
 		} catch (RuntimeException error) {
@@ -79,34 +109,84 @@ public class CompensableCleanupWork
 	}
 
 	public void run() {
+		this.initializeIfNecessary();
+
 		long nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 60;
 		while (this.released == false) {
 			if (System.currentTimeMillis() < nextMillis) {
 				this.waitForMillis(100);
 			} else {
+				final int batchSize = this.handleRecords;
 				int number = 0;
 				try {
-					number = (Integer) this.commandDispatcher.dispatch(new Callable<Object>() {
-						public Object call() throws Exception {
-							return timingExecution(CONSTANTS_MAX_HANDLE_RECORDS);
-						}
-					});
+					if (this.isPartitionEnabled()) {
+						number = this.timingExecution(batchSize);
+					} else {
+						number = (Integer) this.commandDispatcher.dispatch(new Callable<Object>() {
+							public Object call() throws Exception {
+								return timingExecution(batchSize);
+							}
+						});
+					}
 				} catch (SecurityException rex) {
 					logger.debug(rex.getMessage());
+					this.handleRecords = this.minHandleRecords;
+					nextMillis = System.currentTimeMillis() + this.cleanupCadence.getMaxIntervalMillis();
+					continue;
 				} catch (Exception rex) {
 					logger.error("Error occurred while cleaning up resources.", rex);
-					nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
+					this.handleRecords = this.minHandleRecords;
+					nextMillis = System.currentTimeMillis() + this.cleanupCadence.next(0, 0, 1, 0);
 					continue;
 				}
 
-				if (number < CONSTANTS_MAX_HANDLE_RECORDS) {
-					nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
-				} // end-if (number < CONSTANTS_MAX_HANDLE_RECORDS)
+				nextMillis = System.currentTimeMillis() + this.calculateNextInterval(batchSize, number);
 			}
 		}
+
+		this.destroyIfNecessary();
+	}
+
+	/**
+	 * A full batch means the backlog is larger than what one round can handle: grow the batch and run again at once.
+	 * A partial batch means the backlog has been drained: shrink the batch back and let the cadence decide, based on
+	 * how fast new records arrive, when to look again.
+	 */
+	private long calculateNextInterval(int batchSize, int number) {
+		long remaining = this.getRemainingRecords();
+		long growth = this.lastRemainingRecords < 0 ? 0 : Math.max(0, remaining - this.lastRemainingRecords + number);
+		this.lastRemainingRecords = remaining;
+
+		if (number >= batchSize) {
+			this.handleRecords = Math.min(batchSize * 2, this.maxHandleRecords);
+			this.cleanupCadence.next(remaining, number, 0, growth);
+			return 0L;
+		} else if (number > 0) {
+			this.handleRecords = Math.max(batchSize / 2, this.minHandleRecords);
+		} else {
+			this.handleRecords = this.minHandleRecords;
+		}
+
+		long interval = this.cleanupCadence.next(0, number, 0, growth);
+		logger.debug("cleanup-cadence: decision= {}, handled= {}, growth= {}, interval= {} ms",
+				this.cleanupCadence.getLastDecision(), number, growth, interval);
+		return interval;
+	}
+
+	private long getRemainingRecords() {
+		try {
+			String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
+			return mdb.getCollection(CONSTANTS_TB_REMOVEDRESES).estimatedDocumentCount();
+		} catch (RuntimeException rex) {
+			logger.debug("Error occurred while counting the records to be cleaned up.", rex);
+			return Math.max(0, this.lastRemainingRecords);
+		}
 	}
 
 	public int timingExecution(int batchSize) {
+		this.initializeIfNecessary();
+
 		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
 		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
 		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_REMOVEDRESES);
@@ -116,11 +196,14 @@ public class CompensableCleanupWork
 		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
 
 		Map<String, List<Xid>> resource2XidListMap = new HashMap<String, List<Xid>>();
+		Map<String, List<Object>> resource2IdListMap = new HashMap<String, List<Object>>();
+		List<Object> invalidIdList = new ArrayList<Object>();
 		MongoCursor<Document> cursor = null;
 		try {
-			cursor = collection.find().limit(batchSize).iterator();
+			cursor = collection.find(this.getCleanupFilter()).limit(batchSize).iterator();
 			for (; cursor.hasNext(); length++) {
 				Document document = cursor.next();
+				Object identifier = document.get("_id");
 				String globalValue = document.getString(CONSTANTS_FD_GLOBAL);
 				String branchValue = document.getString(CONSTANTS_FD_BRANCH);
 				byte[] global = ByteUtils.stringToByteArray(globalValue);
@@ -131,50 +214,128 @@ public class CompensableCleanupWork
 
 				String resourceId = document.getString("resource_id");
 				if (StringUtils.isBlank(resourceId)) {
+					invalidIdList.add(identifier);
 					continue;
 				}
 
 				List<Xid> xidList = resource2XidListMap.get(resourceId);
+				List<Object> idList = resource2IdListMap.get(resourceId);
 				if (xidList == null) {
 					xidList = new ArrayList<Xid>();
+					idList = new ArrayList<Object>();
 					resource2XidListMap.put(resourceId, xidList);
+					resource2IdListMap.put(resourceId, idList);
 				}
 
 				xidList.add(branchXid);
+				idList.add(identifier);
 			}
 		} finally {
 			IOUtils.closeQuietly(cursor);
 		}
 
+		this.deleteByIdentifiers(collection, invalidIdList);
+
+		Map<String, Future<Boolean>> resource2FutureMap = new HashMap<String, Future<Boolean>>();
 		for (Iterator<Map.Entry<String, List<Xid>>> itr = resource2XidListMap.entrySet().iterator(); itr.hasNext();) {
 			Map.Entry<String, List<Xid>> entry = itr.next();
+			final String resourceId = entry.getKey();
+			final List<Xid> xidList = entry.getValue();
+			Future<Boolean> future = this.executor.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					cleanupByResource(resourceId, xidList);
+					return true;
+				}
+			});
+			resource2FutureMap.put(resourceId, future);
+		}
+
+		List<String> failureList = new ArrayList<String>();
+		int failureRecords = 0;
+		for (Iterator<Map.Entry<String, Future<Boolean>>> itr = resource2FutureMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Future<Boolean>> entry = itr.next();
 			String resourceId = entry.getKey();
-			List<Xid> xidList = entry.getValue();
-			this.cleanupByResource(resourceId, xidList);
+			Future<Boolean> future = entry.getValue();
+			try {
+				future.get();
+				this.deleteByIdentifiers(collection, resource2IdListMap.get(resourceId));
+				this.suspendedResources.remove(resourceId);
+			} catch (InterruptedException ex) {
+				failureList.add(resourceId);
+				failureRecords += resource2IdListMap.get(resourceId).size();
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException ex) {
+				failureList.add(resourceId);
+				failureRecords += resource2IdListMap.get(resourceId).size();
+				logger.error("Error occurred while cleaning up resource({}).", resourceId, ex.getCause());
+			}
 		}
 
-		for (Iterator<Map.Entry<String, List<Xid>>> itr = resource2XidListMap.entrySet().iterator(); itr.hasNext();) {
-			Map.Entry<String, List<Xid>> entry = itr.next();
-			List<Xid> xidList = entry.getValue();
-			for (int i = 0; i < xidList.size(); i++) {
-				Xid transactionXid = xidList.get(i);
-				byte[] global = transactionXid.getGlobalTransactionId();
-				byte[] branch = transactionXid.getBranchQualifier();
+		long retryAt = System.currentTimeMillis() + this.resourceRetryMillis;
+		for (int i = 0; i < failureList.size(); i++) {
+			this.suspendedResources.put(failureList.get(i), retryAt);
+		}
+
+		if (failureList.isEmpty() == false && failureList.size() == resource2FutureMap.size()) {
+			throw new IllegalStateException(String.format("Error occurred while cleaning up resources: %s.", failureList));
+		} else if (failureList.isEmpty() == false) {
+			logger.warn("Resources {} could not be cleaned up, their records will be retried in {} ms.", failureList,
+					this.resourceRetryMillis);
+		}
+
+		return length - failureRecords; // the records of the failed resources are not counted as handled
+	}
 
-				Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
-				Bson branchFilter = Filters.eq(CONSTANTS_FD_BRANCH, ByteUtils.byteArrayToString(branch));
+	/* the records of the owned partitions, except those of the resources which failed recently. */
+	private Bson getCleanupFilter() {
+		Bson partitionFilter = this.getPartitionFilter();
 
-				collection.deleteOne(Filters.and(globalFilter, branchFilter));
+		long now = System.currentTimeMillis();
+		List<String> suspended = new ArrayList<String>();
+		for (Iterator<Map.Entry<String, Long>> itr = this.suspendedResources.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Long> entry = itr.next();
+			if (entry.getValue() <= now) {
+				itr.remove();
+			} else {
+				suspended.add(entry.getKey());
 			}
 		}
 
-		return length;
+		return suspended.isEmpty() ? partitionFilter : Filters.and(partitionFilter, Filters.nin("resource_id", suspended));
+	}
+
+	private boolean isPartitionEnabled() {
+		return this.partitionManager != null && this.partitionManager.isPartitionEnabled();
+	}
+
+	/**
+	 * With partitions enabled every instance cleans up the records of the partitions it owns, the owner of partition 0
+	 * also takes the records written before partitioning was enabled.
+	 */
+	private Bson getPartitionFilter() {
+		if (this.isPartitionEnabled() == false) {
+			return new Document();
+		}
+
+		List<Integer> partitions = this.partitionManager.getOwnedPartitions();
+		Bson filter = Filters.in(CONSTANTS_FD_PARTITION, partitions);
+		if (partitions.contains(0)) {
+			filter = Filters.or(filter, Filters.exists(CONSTANTS_FD_PARTITION, false));
+		}
+		return filter;
+	}
+
+	private void deleteByIdentifiers(MongoCollection<Document> collection, List<Object> identifiers) {
+		for (int i = 0; identifiers != null && i < identifiers.size(); i += CONSTANTS_MAX_DELETE_RECORDS) {
+			int endIndex = Math.min(i + CONSTANTS_MAX_DELETE_RECORDS, identifiers.size());
+			collection.deleteMany(Filters.in("_id", identifiers.subList(i, endIndex)));
+		}
 	}
 
 	private void cleanupByResource(String resourceId, List<Xid> xidList) throws RuntimeException {
 		XAResourceDeserializer resourceDeserializer = this.beanFactory.getResourceDeserializer();
 		if (StringUtils.isBlank(resourceId)) {
-			throw new IllegalStateException();
+			throw new IllegalStateException("The resource to be cleaned up is not specified!");
 		}
 
 		Xid[] xidArray = new Xid[xidList.size()];
@@ -192,12 +353,34 @@ public class CompensableCleanupWork
 				break;
 			case XAException.XAER_RMERR:
 			case XAException.XAER_RMFAIL:
-				throw new IllegalStateException();
+				String message = String.format("Error occurred while forgetting resource(%s): %s.", //
+						resourceId, xaex.errorCode);
+				throw new IllegalStateException(message, xaex);
 			}
 		}
 
 	}
 
+	private synchronized void initializeIfNecessary() {
+		if (this.executor == null) {
+			this.executor = Executors.newFixedThreadPool(this.forgetThreads, new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, String.format("bytetcc-forget-%s", index.incrementAndGet()));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	private synchronized void destroyIfNecessary() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
 	private void waitForMillis(long millis) {
 		try {
 			Thread.sleep(millis);
@@ -226,6 +409,74 @@ public class CompensableCleanupWork
 		this.endpoint = identifier;
 	}
 
+	public int getHandleRecords() {
+		return handleRecords;
+	}
+
+	public long getIntervalMillis() {
+		return this.cleanupCadence.getIntervalMillis();
+	}
+
+	public WorkCadence getCleanupCadence() {
+		return this.cleanupCadence;
+	}
+
+	public int getForgetThreads() {
+		return forgetThreads;
+	}
+
+	public void setForgetThreads(int forgetThreads) {
+		this.forgetThreads = forgetThreads;
+	}
+
+	public long getResourceRetryMillis() {
+		return resourceRetryMillis;
+	}
+
+	public void setResourceRetryMillis(long resourceRetryMillis) {
+		this.resourceRetryMillis = resourceRetryMillis;
+	}
+
+	public int getMinHandleRecords() {
+		return minHandleRecords;
+	}
+
+	public void setMinHandleRecords(int minHandleRecords) {
+		this.minHandleRecords = minHandleRecords;
+	}
+
+	public int getMaxHandleRecords() {
+		return maxHandleRecords;
+	}
+
+	public void setMaxHandleRecords(int maxHandleRecords) {
+		this.maxHandleRecords = maxHandleRecords;
+	}
+
+	public long getMinIntervalMillis() {
+		return this.cleanupCadence.getMinIntervalMillis();
+	}
+
+	public void setMinIntervalMillis(long minIntervalMillis) {
+		this.cleanupCadence.setMinIntervalMillis(minIntervalMillis);
+	}
+
+	public long getMaxIntervalMillis() {
+		return this.cleanupCadence.getMaxIntervalMillis();
+	}
+
+	public void setMaxIntervalMillis(long maxIntervalMillis) {
+		this.cleanupCadence.setMaxIntervalMillis(maxIntervalMillis);
+	}
+
+	public CompensableInstPartitionManager getPartitionManager() {
+		return partitionManager;
+	}
+
+	public void setPartitionManager(CompensableInstPartitionManager partitionManager) {
+		this.partitionManager = partitionManager;
+	}
+
 	public CommandDispatcher getCommandDispatcher() {
 		return commandDispatcher;
 	}